@@ -0,0 +1,107 @@
+#!/usr/bin/env python
+# Copyright 2016 The Chromium Authors
+# Use of this source code is governed by a BSD-style license that can be
+# found in the LICENSE file.
+
+import argparse
+import json
+import sys
+
+# The features DistillabilityDetector computes, by index. Keep in sync with
+# FEATURE_NAMES in java/org/chromium/distiller/DistillabilityDetector.java.
+FEATURE_NAMES = [
+  'openGraph',
+
+  'forum',
+  'index',
+  'search',
+  'view',
+  'archive',
+  'asp',
+  'phpbb',
+  'php',
+  'pathLength',
+  'domain',
+  'pathComponents',
+  'slugDetector',
+  'pathNumbers',
+  'lastSegmentLength',
+
+  'visibleRatio',
+  'visiblePPRERatio',
+  'PPRERatio',
+  'anchorPPRERatio',
+
+  'textCount',
+  'passwordCount',
+  'formCount',
+  'anchorCount',
+  'elementCount',
+  'anchorRatio',
+
+  'mozScore',
+  'mozScoreAllLinear',
+  'mozScoreAllSqrt',
+  'numAnchors',
+  'numElements',
+  'numForms',
+  'numPPRE',
+  'numPasswordInput',
+  'numTextInput',
+]
+
+def convert_model(model):
+  """Convert a model trained on the derived features to a DistillabilityModel.
+
+  Args:
+    model (dict): The model, with the stumps keyed by the names the features
+      have in calculate_derived_features.py, like:
+      {"threshold": 0, "stumps": [
+        {"feature": "mozScore", "split": 10, "left": -1, "right": 1}]}
+
+  Returns:
+    dict: The DistillabilityModel in JSON form, keyed by field number.
+
+  Raises:
+    ValueError: If a stump uses a feature DistillabilityDetector doesn't
+      compute.
+
+  Examples:
+    >>> convert_model({'threshold': 0.5, 'stumps': [
+    ...   {'feature': 'domain', 'split': 0.5, 'left': 1, 'right': -1}]})
+    {'1': [{'1': 10, '2': 0.5, '3': 1, '4': -1}], '2': 0.5}
+    >>> convert_model({'stumps': [
+    ...   {'feature': 'innerTextLength', 'split': 1, 'left': 1, 'right': -1}]})
+    Traceback (most recent call last):
+    ...
+    ValueError: Unsupported feature: innerTextLength
+  """
+
+  stumps = []
+  for stump in model['stumps']:
+    if stump['feature'] not in FEATURE_NAMES:
+      raise ValueError('Unsupported feature: ' + stump['feature'])
+    stumps.append({
+      '1': FEATURE_NAMES.index(stump['feature']),
+      '2': stump['split'],
+      '3': stump['left'],
+      '4': stump['right'],
+    })
+  return {'1': stumps, '2': model.get('threshold', 0)}
+
+def main(argv):
+  parser = argparse.ArgumentParser()
+  parser.add_argument('--model', required=True, help="filename of the trained model")
+  parser.add_argument('--out', required=True, help="filename of output")
+  options = parser.parse_args(argv)
+
+  with open(options.model) as model:
+    model = json.load(model)
+
+  with open(options.out, 'w') as out:
+    json.dump(convert_model(model), out, indent=1, sort_keys=True)
+
+  return 0
+
+if __name__ == '__main__':
+  sys.exit(main(sys.argv[1:]))
@@ -0,0 +1,171 @@
+// Copyright 2016 The Chromium Authors
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.distiller;
+
+import com.google.gwt.dom.client.AnchorElement;
+import com.google.gwt.dom.client.Element;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The anchors of a document, in document order, with the properties the pagination finders read
+ * from them. The index is built once, and both PagingLinksFinder (in either direction) and
+ * PageParameterParser query it, so running several of them costs little more than running one.
+ *
+ * The properties are computed the first time they are read and kept, since each finder only reads
+ * them from the anchors its cheaper checks let through.
+ */
+public class AnchorIndex {
+    /**
+     * An anchor of the document.
+     */
+    public static class Anchor {
+        private static final int UNKNOWN = 0;
+        private static final int VISIBLE = 1;
+        private static final int INVISIBLE = 2;
+
+        private final AnchorElement element;
+        private final int position;
+        private final String baseUrl;
+        private String href;
+        private String resolvedHref;
+        private String text;
+        private String trimmedText;
+        private String classAndId;
+        private int pageNumber;
+        private boolean hasPageNumber = false;
+        private int visibility = UNKNOWN;
+
+        private Anchor(Element element, int position, String baseUrl) {
+            this.element = AnchorElement.as(element);
+            this.position = position;
+            this.baseUrl = baseUrl;
+        }
+
+        public AnchorElement getElement() {
+            return element;
+        }
+
+        /**
+         * @return The index of the anchor in the document order, or -1 if it isn't indexed.
+         */
+        public int getPosition() {
+            return position;
+        }
+
+        /**
+         * @return The "href" attribute as is.
+         */
+        public String getHref() {
+            if (href == null) href = element.getAttribute("href");
+            return href;
+        }
+
+        /**
+         * @return The "href" attribute resolved against the base URL of the document. An empty
+         * href resolves to the base URL.
+         */
+        public String getResolvedHref() {
+            if (resolvedHref == null) resolvedHref = UrlCache.resolve(baseUrl, getHref());
+            return resolvedHref;
+        }
+
+        /**
+         * @return The visible text, i.e. the javascript innerText.
+         */
+        public String getText() {
+            if (text == null) text = DomUtil.getInnerText(element);
+            return text;
+        }
+
+        public String getTrimmedText() {
+            if (trimmedText == null) trimmedText = StringUtil.jsTrim(getText());
+            return trimmedText;
+        }
+
+        /**
+         * @return The class name and the id, separated by a space.
+         */
+        public String getClassAndId() {
+            if (classAndId == null) {
+                classAndId = element.getAttribute("class") + " " + element.getId();
+            }
+            return classAndId;
+        }
+
+        /**
+         * @return The number in the text, ignoring brackets, or -1 if the text isn't a number.
+         */
+        public int getPageNumber() {
+            if (!hasPageNumber) {
+                String number = getTrimmedText().replaceAll("[()\\[\\]{}]", "");
+                // Remove leading and trailing white spaces.
+                pageNumber = StringUtil.toNumber(number.trim());
+                hasPageNumber = true;
+            }
+            return pageNumber;
+        }
+
+        public boolean isVisible() {
+            if (visibility == UNKNOWN) {
+                visibility = DomUtil.isVisible(element) ? VISIBLE : INVISIBLE;
+            }
+            return visibility == VISIBLE;
+        }
+    }
+
+    private final String baseUrl;
+    private final List<Anchor> anchors;
+    private final Map<Element, Anchor> anchorsByElement;
+
+    /**
+     * Indexes the anchors in the document rooted at |root|, which was loaded from |originalUrl|.
+     * The anchors and BASE element are taken from |scanner| if it's not null, instead of querying
+     * the document for them.
+     */
+    public static AnchorIndex create(Element root, String originalUrl, PageScanner scanner) {
+        String baseUrl = scanner != null
+                ? PagingLinksFinder.getBaseUrlForBaseElement(
+                        scanner.getFirstBaseElement(), originalUrl)
+                : PagingLinksFinder.getBaseUrlForRelative(root, originalUrl);
+        List<Element> elements =
+                scanner != null ? scanner.getAnchors() : PagingLinksFinder.getAllLinks(root);
+        return new AnchorIndex(baseUrl, elements);
+    }
+
+    private AnchorIndex(String baseUrl, List<Element> elements) {
+        this.baseUrl = baseUrl;
+        anchors = new ArrayList<>(elements.size());
+        anchorsByElement = new HashMap<>();
+        for (Element e : elements) {
+            Anchor anchor = new Anchor(e, anchors.size(), baseUrl);
+            anchors.add(anchor);
+            anchorsByElement.put(e, anchor);
+        }
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public int size() {
+        return anchors.size();
+    }
+
+    public Anchor get(int position) {
+        return anchors.get(position);
+    }
+
+    /**
+     * @return The Anchor of |e|. Anchors that weren't indexed get a new one, at position -1.
+     */
+    public Anchor get(Element e) {
+        Anchor anchor = anchorsByElement.get(e);
+        return anchor != null ? anchor : new Anchor(e, -1, baseUrl);
+    }
+}
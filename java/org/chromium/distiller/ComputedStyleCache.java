@@ -0,0 +1,131 @@
+// Copyright 2016 The Chromium Authors
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.distiller;
+
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.Style;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Caches the few computed style properties the distiller reads, so that each element costs at
+ * most one getComputedStyle() call per distillation. The cache is only active between begin() and
+ * end(); outside of that, get() reads the computed style every time.
+ *
+ * The page isn't modified while distilling, so the snapshots stay valid for the whole run.
+ *
+ * The snapshots are read from the computed style by default. Hosts without a layout engine can
+ * provide them from another Source, see DeclaredStyleSource.
+ */
+public class ComputedStyleCache {
+    /**
+     * Where the snapshots come from.
+     */
+    public interface Source {
+        Snapshot read(Element e);
+    }
+
+    /**
+     * The computed style properties of an element that the distiller uses.
+     */
+    public static class Snapshot {
+        public final String display;
+        public final String visibility;
+        public final double opacity;
+        public final String direction;
+        public final String cssFloat;
+
+        public Snapshot(String display, String visibility, double opacity, String direction,
+                String cssFloat) {
+            this.display = display;
+            this.visibility = visibility;
+            this.opacity = opacity;
+            this.direction = direction;
+            this.cssFloat = cssFloat;
+        }
+
+        private static Snapshot fromComputedStyle(Element e) {
+            Style style = DomUtil.getComputedStyle(e);
+            return new Snapshot(style.getDisplay(), style.getVisibility(),
+                    JavaScript.parseFloat(style.getOpacity()), style.getProperty("direction"),
+                    style.getProperty("float"));
+        }
+
+        public boolean isVisible() {
+            return !(display.equals("none") || visibility.equals("hidden") || opacity == 0.0F);
+        }
+    }
+
+    private static Map<Element, Snapshot> sCache;
+    // Number of nested begin() calls, so that e.g. DomDistiller and ContentExtractor can both
+    // scope a run.
+    private static int sDepth = 0;
+    // Null for the computed style.
+    private static Source sSource;
+
+    /**
+     * Sets where the snapshots come from, or null for the computed style. This should be set
+     * outside of a run, since the cached snapshots aren't dropped.
+     */
+    public static void setSource(Source source) {
+        sSource = source;
+    }
+
+    public static Source getSource() {
+        return sSource;
+    }
+
+    static void swapState(DistillerContext context) {
+        Map<Element, Snapshot> cache = sCache;
+        sCache = context.styleCache;
+        context.styleCache = cache;
+
+        int depth = sDepth;
+        sDepth = context.styleDepth;
+        context.styleDepth = depth;
+
+        Source source = sSource;
+        sSource = context.styleSource;
+        context.styleSource = source;
+    }
+
+    /**
+     * Starts caching, or joins the current run if one is already started.
+     */
+    public static void begin() {
+        if (sDepth++ == 0) sCache = new HashMap<>();
+    }
+
+    /**
+     * Ends the run started by the matching begin(). The cache is dropped when the outermost run
+     * ends.
+     */
+    public static void end() {
+        assert sDepth > 0;
+        if (--sDepth == 0) sCache = null;
+    }
+
+    public static boolean isActive() {
+        return sCache != null;
+    }
+
+    public static Snapshot get(Element e) {
+        if (sCache == null) return read(e);
+        Snapshot snapshot = sCache.get(e);
+        if (snapshot == null) {
+            snapshot = read(e);
+            sCache.put(e, snapshot);
+        }
+        return snapshot;
+    }
+
+    private static Snapshot read(Element e) {
+        return sSource == null ? Snapshot.fromComputedStyle(e) : sSource.read(e);
+    }
+
+    private ComputedStyleCache() {
+    }
+}
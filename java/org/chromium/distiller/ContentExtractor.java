@@ -7,12 +7,15 @@ package org.chromium.distiller;
 import org.chromium.distiller.document.TextDocument;
 import org.chromium.distiller.document.TextDocumentStatistics;
 import org.chromium.distiller.extractors.ArticleExtractor;
+import org.chromium.distiller.proto.DomDistillerProtos.InstrumentationInfo;
+import org.chromium.distiller.proto.DomDistillerProtos.StageInfo;
 import org.chromium.distiller.proto.DomDistillerProtos.StatisticsInfo;
 import org.chromium.distiller.proto.DomDistillerProtos.TimingEntry;
 import org.chromium.distiller.proto.DomDistillerProtos.TimingInfo;
 import org.chromium.distiller.webdocument.DomConverter;
 import org.chromium.distiller.webdocument.WebDocument;
 import org.chromium.distiller.webdocument.WebDocumentBuilder;
+import org.chromium.distiller.webdocument.WebDocumentCache;
 import org.chromium.distiller.webdocument.WebImage;
 import org.chromium.distiller.webdocument.filters.RelevantElements;
 import org.chromium.distiller.webdocument.filters.LeadImageFinder;
@@ -20,38 +23,88 @@ import org.chromium.distiller.webdocument.filters.NestedElementRetainer;
 
 import com.google.gwt.dom.client.Document;
 import com.google.gwt.dom.client.Element;
-import com.google.gwt.dom.client.Node;
 import com.google.gwt.dom.client.NodeList;
 
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
 
 public class ContentExtractor {
+    // The phases of an Extraction.
+    private static final int PHASE_WALK = 0;
+    private static final int PHASE_PROCESS = 1;
+    private static final int PHASE_OUTPUT = 2;
+    private static final int PHASE_FINISHED = 3;
+
     private final Element documentElement;
     private final List<String> candidateTitles;
     private final TimingInfo mTimingInfo;
     private final StatisticsInfo mStatisticsInfo;
-    private final MarkupParser parser;
+    private final InstrumentationInfo mInstrumentationInfo;
+    private final boolean fusedTraversal;
+    private MarkupParser parser;
+    private PageScanner scanner;
+    private WebDocumentCache webDocumentCache;
+    private DistillerBudget budget;
+    private DomConverter.HiddenElementConsumer hiddenElementConsumer;
     private List<String> imageUrls;
     private String textDirection;
+    private boolean walkInterrupted;
 
-    private class WebDocumentInfo {
-        WebDocument document;
-        Set<Node> hiddenElements;
+    public ContentExtractor(Element root) {
+        this(root, false);
     }
 
-    public ContentExtractor(Element root) {
+    /**
+     * @param fusedTraversal Whether to collect the inputs of the markup parsers, the pagination
+     * finders and the word counter selection in the same DOM walk that builds the WebDocument. In
+     * that case, the MarkupParser is only created once extractContent() has walked the document,
+     * and the word counter is selected by that walk.
+     */
+    public ContentExtractor(Element root, boolean fusedTraversal) {
         documentElement = root;
+        this.fusedTraversal = fusedTraversal;
         candidateTitles = new LinkedList<>();
         mTimingInfo = TimingInfo.create();
         mStatisticsInfo = StatisticsInfo.create();
+        mInstrumentationInfo = InstrumentationInfo.create();
+
+        if (!fusedTraversal) {
+            createMarkupParser();
+        }
+        textDirection = "";
+    }
 
+    /**
+     * Lets extractContent() reuse the parts of the WebDocument of a previous run over the same
+     * page that |cache| still holds, and record this run's for the next one.
+     */
+    public void setWebDocumentCache(WebDocumentCache cache) {
+        webDocumentCache = cache;
+    }
+
+    /**
+     * Bounds the DOM walk of extractContent() by |budget|. If it runs out, the content is
+     * extracted from the part of the page that was walked.
+     */
+    public void setBudget(DistillerBudget budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Passes the hidden elements that extractContent() leaves out of the content to |consumer|,
+     * e.g. to recover collapsed sections of the article. Only the walked elements are passed: not
+     * the ones past the end of the budget, nor the ones in subtrees reused from the
+     * WebDocumentCache.
+     */
+    public void setHiddenElementConsumer(DomConverter.HiddenElementConsumer consumer) {
+        hiddenElementConsumer = consumer;
+    }
+
+    private void createMarkupParser() {
         double startTime = DomUtil.getTime();
-        parser = new MarkupParser(root, mTimingInfo);
+        parser = new MarkupParser(documentElement, scanner, mTimingInfo);
         mTimingInfo.setMarkupParsingTime(DomUtil.getTime() - startTime);
-        textDirection = "";
     }
 
     // Grabs a list of candidate titles in descending priority order:
@@ -61,18 +114,33 @@ public class ContentExtractor {
     private void ensureTitleInitialized() {
         if (candidateTitles.size() > 0) return;
 
-        String title = parser.getTitle();
+        String title = getMarkupParser().getTitle();
         if (!title.isEmpty()) {
             candidateTitles.add(title);
         }
+        Document document = documentElement.getOwnerDocument();
         candidateTitles.add(DocumentTitleGetter.getDocumentTitle(
-                    Document.get().getTitle(), Document.get().getDocumentElement()));
-        if (Document.get().getTitle().getClass() == String.class) {
-            candidateTitles.add(Document.get().getTitle());
+                    document.getTitle(), document.getDocumentElement()));
+        if (document.getTitle().getClass() == String.class) {
+            candidateTitles.add(document.getTitle());
         }
     }
 
-    public MarkupParser getMarkupParser() { return parser; }
+    public MarkupParser getMarkupParser() {
+        // In fused mode, this is only null if the content hasn't been extracted yet. Fall back to
+        // parsing the markup with its own queries.
+        if (parser == null) createMarkupParser();
+        return parser;
+    }
+
+    /**
+     * Returns the elements collected by the fused DOM walk, for the pagination finders.
+     * @return The PageScanner, or null if fused traversal is off or the content hasn't been
+     * extracted yet.
+     */
+    public PageScanner getPageScanner() {
+        return scanner;
+    }
 
     public String extractTitle() {
         ensureTitleInitialized();
@@ -85,29 +153,244 @@ public class ContentExtractor {
     }
 
     public String extractContent(boolean textOnly) {
-        double now = DomUtil.getTime();
-        WebDocumentInfo documentInfo = createWebDocumentInfoFromPage();
-        mTimingInfo.setDocumentConstructionTime(DomUtil.getTime() - now);
+        final StringBuilder output = new StringBuilder();
+        extractContent(textOnly, new WebDocument.OutputSink() {
+            @Override
+            public void onChunk(int index, String html) {
+                output.append(html);
+            }
+        });
+        return output.toString();
+    }
+
+    /**
+     * Extracts the content like extractContent(), but passes the output of each content element
+     * to |sink| as soon as it is generated instead of returning the concatenated output.
+     * @return The number of chunks passed to |sink|.
+     */
+    public int extractContent(boolean textOnly, WebDocument.OutputSink sink) {
+        Extraction extraction = new Extraction(textOnly, sink, Integer.MAX_VALUE);
+        while (!extraction.step()) {}
+        return extraction.getNumChunks();
+    }
+
+    /**
+     * Starts extracting the content like extractContent(textOnly, sink), but the work is done by
+     * Extraction.step(), a bounded amount at a time, so that the caller can yield in between.
+     * @param workPerStep The number of nodes walked, or content elements output, per step.
+     */
+    public Extraction startExtraction(boolean textOnly, WebDocument.OutputSink sink,
+            int workPerStep) {
+        return new Extraction(textOnly, sink, workPerStep);
+    }
+
+    /**
+     * An extraction of the content that is split into steps. The DOM walk and the output
+     * generation are done a few nodes or elements per step, and the filters one per step. Each
+     * step must be done in the same DistillerContext as the extraction was started in.
+     */
+    public class Extraction {
+        private final boolean textOnly;
+        private final WebDocument.OutputSink sink;
+        private final int workPerStep;
+        private int phase = PHASE_WALK;
+
+        private DomWalker walker;
+        private String walkerStageName;
+        private WebDocumentBuilder documentBuilder;
+        private DomConverter converter;
+        private WebDocument document;
+        private TextDocument textDocument;
+        private ArticleExtractor.Run articleRun;
+        private WebDocument.OutputGenerator outputGenerator;
+
+        private double documentConstructionTime = 0;
+        private double articleProcessingTime = 0;
+        private double formattingTime = 0;
+
+        private Extraction(boolean textOnly, WebDocument.OutputSink sink, int workPerStep) {
+            this.textOnly = textOnly;
+            this.sink = sink;
+            this.workPerStep = workPerStep;
+            // Each element's computed style is read at most once, by whichever of the converter
+            // and the output generation gets to it first.
+            ComputedStyleCache.begin();
+            StageInstrumentation.begin();
+            boolean started = false;
+            try {
+                double now = DomUtil.getTime();
+                startWalk();
+                documentConstructionTime += DomUtil.getTime() - now;
+                started = true;
+            } finally {
+                if (!started) end();
+            }
+        }
 
-        now = DomUtil.getTime();
-        processDocument(documentInfo.document);
-        RelevantElements.process(documentInfo.document);
-        LeadImageFinder.process(documentInfo.document);
-        NestedElementRetainer.process(documentInfo.document);
+        /**
+         * Does the next part of the extraction.
+         * @return Whether the extraction is finished.
+         */
+        public boolean step() {
+            assert phase != PHASE_FINISHED;
+            // The caches are ended once the extraction is finished, or if a step throws.
+            boolean ended = true;
+            try {
+                double now = DomUtil.getTime();
+                switch (phase) {
+                    case PHASE_WALK:
+                        walk();
+                        documentConstructionTime += DomUtil.getTime() - now;
+                        mTimingInfo.setDocumentConstructionTime(documentConstructionTime);
+                        break;
+                    case PHASE_PROCESS:
+                        process();
+                        articleProcessingTime += DomUtil.getTime() - now;
+                        mTimingInfo.setArticleProcessingTime(articleProcessingTime);
+                        break;
+                    case PHASE_OUTPUT:
+                        output();
+                        formattingTime += DomUtil.getTime() - now;
+                        mTimingInfo.setFormattingTime(formattingTime);
+                        break;
+                }
+                ended = phase == PHASE_FINISHED;
+            } finally {
+                if (ended) end();
+            }
+            if (ended) finish();
+            return ended;
+        }
+
+        /**
+         * @return The number of chunks passed to the sink so far.
+         */
+        public int getNumChunks() {
+            return outputGenerator == null ? 0 : outputGenerator.getNumChunks();
+        }
+
+        /**
+         * Sets up the DOM walk that converts the original HTML page into a WebDocument for
+         * analysis.
+         */
+        private void startWalk() {
+            documentBuilder = new WebDocumentBuilder();
+
+            NodeList<Element> mobileViewport = DomUtil.querySelectorAll(documentElement,
+                    "meta[name=\"viewport\"][content*=\"width=device-width\"]");
+            converter = new DomConverter(documentBuilder);
+            converter.setIsMobileFriendly(mobileViewport.getLength() > 0);
+            converter.setHiddenElementConsumer(hiddenElementConsumer);
 
-        mTimingInfo.setArticleProcessingTime(DomUtil.getTime() - now);
+            Element walkerRoot = DomUtil.getArticleElement(documentElement);
+            converter.setHasArticleElement(walkerRoot != null);
 
-        now = DomUtil.getTime();
-        String html = documentInfo.document.generateOutput(textOnly);
-        mTimingInfo.setFormattingTime(DomUtil.getTime() - now);
+            if (walkerRoot != null) {
+                if (LogUtil.isLoggable(LogUtil.DEBUG_LEVEL_BOILER_PIPE_PHASES)) {
+                    LogUtil.logToConsole("Extracted article element: " + walkerRoot);
+                }
+            } else {
+                walkerRoot = documentElement;
+            }
+            if (webDocumentCache != null) {
+                webDocumentCache.startRun(walkerRoot, mobileViewport.getLength() > 0,
+                        walkerRoot != documentElement);
+                documentBuilder.setWebDocumentCache(webDocumentCache);
+            }
+            if (fusedTraversal) {
+                // A single walk of the whole document collects the markup and pagination inputs,
+                // selects the word counter, and converts the content under |walkerRoot|. The
+                // scanner goes first, so that the word counter is updated before text is counted.
+                scanner = new PageScanner(documentElement);
+                scanner.resetWordCounter();
+                FanOutVisitor visitor = new FanOutVisitor();
+                visitor.addVisitor(scanner);
+                visitor.addVisitor(converter, walkerRoot);
+                walker = new DomWalker(visitor, budget);
+                walker.start(documentElement);
+                walkerStageName = "DomWalker: Fused";
+            } else {
+                walker = new DomWalker(converter, budget);
+                walker.start(walkerRoot);
+                walkerStageName = "DomWalker: DomConverter";
+            }
+        }
 
-        imageUrls = documentInfo.document.getImageUrls();
+        private void walk() {
+            StageInstrumentation.start(walkerStageName);
+            boolean walked = walker.resume(workPerStep);
+            StageInstrumentation.stop();
+            if (!walked) return;
 
-        if (LogUtil.isLoggable(LogUtil.DEBUG_LEVEL_TIMING_INFO)) {
+            if (fusedTraversal && parser == null) createMarkupParser();
+            walkInterrupted = walker.wasInterrupted();
+            document = documentBuilder.toWebDocument();
+            if (webDocumentCache != null) {
+                webDocumentCache.finishRun();
+                // The elements the walk didn't get to would be missing from the reused subtrees.
+                if ((budget != null && budget.isExhausted()) || walkInterrupted) {
+                    webDocumentCache.clear();
+                }
+            }
+            ensureTitleInitialized();
+            phase = PHASE_PROCESS;
+        }
+
+        /**
+         * Implements the actual analysis of the page content, identifying the core elements of
+         * the page. The filters of the ArticleExtractor are applied one per step.
+         */
+        private void process() {
+            if (textDocument == null) {
+                StageInstrumentation.start("WebDocument.createTextDocumentView");
+                textDocument = document.createTextDocumentView();
+                StageInstrumentation.stop();
+                articleRun = ArticleExtractor.INSTANCE.start(textDocument, candidateTitles);
+                return;
+            }
+            if (!articleRun.step()) return;
+
+            mStatisticsInfo.setWordCount(TextDocumentStatistics.countWordsInContent(textDocument));
+            textDocument.applyToModel();
+            StageInstrumentation.start("RelevantElements");
+            RelevantElements.process(document);
+            StageInstrumentation.stop();
+            StageInstrumentation.start("LeadImageFinder");
+            LeadImageFinder.process(document);
+            StageInstrumentation.stop();
+            StageInstrumentation.start("NestedElementRetainer");
+            NestedElementRetainer.process(document);
+            StageInstrumentation.stop();
+            outputGenerator = document.startOutput(textOnly, sink);
+            phase = PHASE_OUTPUT;
+        }
+
+        private void output() {
+            if (!outputGenerator.resume(workPerStep)) return;
+            imageUrls = document.getImageUrls();
+            phase = PHASE_FINISHED;
+        }
+
+        private void end() {
+            StageInstrumentation.end(mInstrumentationInfo);
+            ComputedStyleCache.end();
+        }
+
+        private void finish() {
+            if (!LogUtil.isLoggable(LogUtil.DEBUG_LEVEL_TIMING_INFO)) return;
             for (int i = 0; i < mTimingInfo.getOtherTimesCount(); i++) {
                 TimingEntry entry =  mTimingInfo.getOtherTimes(i);
                 LogUtil.logToConsole("Timing: " + entry.getName() + " = " + entry.getTime());
             }
+            for (int i = 0; i < mInstrumentationInfo.getStagesCount(); i++) {
+                StageInfo stage = mInstrumentationInfo.getStages(i);
+                LogUtil.logToConsole("Stage: " + stage.getName() + " = " + stage.getTime() +
+                        " (runs: " + stage.getRuns() +
+                        ", nodes visited: " + stage.getNodesVisited() +
+                        ", blocks merged: " + stage.getBlocksMerged() +
+                        ", clones produced: " + stage.getClonesProduced() +
+                        ", hits: " + stage.getHits() + ")");
+            }
 
             LogUtil.logToConsole(
                     "Timing: MarkupParsingTime = " +
@@ -120,7 +403,6 @@ public class ContentExtractor {
                     mTimingInfo.getFormattingTime()
                     );
         }
-        return html;
     }
 
     /**
@@ -131,6 +413,14 @@ public class ContentExtractor {
         return mTimingInfo;
     }
 
+    /**
+     * Returns the cost of each stage of the most recent extraction run.
+     * @return an instance of DomDistillerProtos.InstrumentationInfo.
+     */
+    public InstrumentationInfo getInstrumentationInfo() {
+        return mInstrumentationInfo;
+    }
+
     /**
      * Returns statistical information about the most recent extraction run.
      * @return an instance of DomDistillerProtos.StatisticsInfo with detailed statistics.
@@ -151,53 +441,18 @@ public class ContentExtractor {
     }
 
     /**
-     * Get a list of the content image URLs in the provided document.
-     * @return A list of image URLs.
-     */
-    public List<String> getImageUrls() {
-        return imageUrls;
-    }
-
-    /**
-     * Converts the original HTML page into a WebDocument for analysis.
+     * @return Whether the DOM walk of the most recent extraction run was cut short because the
+     * page changed between two steps, so that only part of it was looked at.
      */
-    private WebDocumentInfo createWebDocumentInfoFromPage() {
-        WebDocumentInfo info = new WebDocumentInfo();
-        WebDocumentBuilder documentBuilder = new WebDocumentBuilder();
-
-        NodeList<Element> mobileViewport = DomUtil.querySelectorAll(documentElement,
-                "meta[name=\"viewport\"][content*=\"width=device-width\"]");
-        DomConverter converter = new DomConverter(documentBuilder);
-        converter.setIsMobileFriendly(mobileViewport.getLength() > 0);
-
-        Element walkerRoot = DomUtil.getArticleElement(documentElement);
-        converter.setHasArticleElement(walkerRoot != null);
-
-        if (walkerRoot != null) {
-            if (LogUtil.isLoggable(LogUtil.DEBUG_LEVEL_BOILER_PIPE_PHASES)) {
-                LogUtil.logToConsole("Extracted article element: " + walkerRoot);
-            }
-        } else {
-            walkerRoot = documentElement;
-        }
-        new DomWalker(converter).walk(walkerRoot);
-        info.document = documentBuilder.toWebDocument();
-        ensureTitleInitialized();
-        info.hiddenElements = converter.getHiddenElements();
-
-        return info;
+    public boolean isWalkInterrupted() {
+        return walkInterrupted;
     }
 
     /**
-     * Implements the actual analysis of the page content, identifying the core elements of the
-     * page.
-     *
-     * @param document the WebDocument representation of the page extracted from the DOM.
+     * Get a list of the content image URLs in the provided document.
+     * @return A list of image URLs.
      */
-    private void processDocument(WebDocument document) {
-        TextDocument textDocument = document.createTextDocumentView();
-        ArticleExtractor.INSTANCE.process(textDocument, candidateTitles);
-        mStatisticsInfo.setWordCount(TextDocumentStatistics.countWordsInContent(textDocument));
-        textDocument.applyToModel();
+    public List<String> getImageUrls() {
+        return imageUrls;
     }
 }
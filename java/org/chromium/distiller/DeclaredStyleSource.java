@@ -0,0 +1,152 @@
+// Copyright 2016 The Chromium Authors
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.distiller;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.core.client.JsArray;
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.Style;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Approximates the style properties the distiller uses from what the page declares, for hosts
+ * without a layout engine (e.g. a DOM implementation running on a server) where
+ * getComputedStyle() is missing or doesn't cascade.
+ *
+ * An element starts with the default display of its tag, and inherits visibility and direction
+ * from its parent. The style rules of the page's style sheets that match the element are then
+ * applied in document order, and its inline style last. Specificity, !important, media queries
+ * and other at-rules are ignored.
+ */
+public class DeclaredStyleSource implements ComputedStyleCache.Source {
+    /**
+     * A CSSStyleRule.
+     */
+    private static class StyleRule extends JavaScriptObject {
+        protected StyleRule() {}
+
+        final native String getSelectorText() /*-{
+            return this.selectorText;
+        }-*/;
+
+        final native Style getStyle() /*-{
+            return this.style;
+        }-*/;
+    }
+
+    private static Map<String, String> sDefaultDisplays;
+
+    private final JsArray<StyleRule> rules;
+
+    public DeclaredStyleSource(Document document) {
+        rules = getStyleRules(document);
+    }
+
+    @Override
+    public ComputedStyleCache.Snapshot read(Element e) {
+        String display = getDefaultDisplay(e.getTagName());
+        if (e.hasAttribute("hidden")) display = "none";
+        String visibility = "visible";
+        double opacity = 1.0;
+        String direction = "ltr";
+        String cssFloat = "none";
+
+        Element parent = e.getParentElement();
+        if (parent != null) {
+            ComputedStyleCache.Snapshot parentStyle = ComputedStyleCache.get(parent);
+            visibility = parentStyle.visibility;
+            direction = parentStyle.direction;
+        }
+        String dir = e.getAttribute("dir").toLowerCase();
+        if (dir.equals("ltr") || dir.equals("rtl")) direction = dir;
+
+        for (int i = 0; i <= rules.length(); i++) {
+            Style style;
+            if (i < rules.length()) {
+                if (!matches(e, rules.get(i).getSelectorText())) continue;
+                style = rules.get(i).getStyle();
+            } else {
+                style = e.getStyle();
+            }
+            display = override(display, style.getDisplay());
+            visibility = override(visibility, style.getVisibility());
+            String declaredOpacity = style.getOpacity();
+            if (!declaredOpacity.isEmpty()) opacity = JavaScript.parseFloat(declaredOpacity);
+            direction = override(direction, style.getProperty("direction"));
+            cssFloat = override(cssFloat, style.getProperty("float"));
+        }
+        return new ComputedStyleCache.Snapshot(display, visibility, opacity, direction, cssFloat);
+    }
+
+    private static String override(String value, String declared) {
+        return declared == null || declared.isEmpty() ? value : declared;
+    }
+
+    private static String getDefaultDisplay(String tagName) {
+        if (sDefaultDisplays == null) {
+            sDefaultDisplays = new HashMap<>();
+            for (String tag : new String[] {"HTML", "BODY", "DIV", "P", "H1", "H2", "H3", "H4",
+                    "H5", "H6", "UL", "OL", "DL", "DT", "DD", "MENU", "SECTION", "ARTICLE",
+                    "ASIDE", "NAV", "HEADER", "FOOTER", "MAIN", "BLOCKQUOTE", "PRE", "FIGURE",
+                    "FIGCAPTION", "FORM", "HR", "ADDRESS", "FIELDSET", "LEGEND", "DETAILS",
+                    "CENTER"}) {
+                sDefaultDisplays.put(tag, "block");
+            }
+            for (String tag : new String[] {"HEAD", "TITLE", "META", "LINK", "BASE", "STYLE",
+                    "SCRIPT", "NOSCRIPT", "TEMPLATE"}) {
+                sDefaultDisplays.put(tag, "none");
+            }
+            sDefaultDisplays.put("LI", "list-item");
+            sDefaultDisplays.put("SUMMARY", "list-item");
+            sDefaultDisplays.put("TABLE", "table");
+            sDefaultDisplays.put("CAPTION", "table-caption");
+            sDefaultDisplays.put("THEAD", "table-header-group");
+            sDefaultDisplays.put("TBODY", "table-row-group");
+            sDefaultDisplays.put("TFOOT", "table-footer-group");
+            sDefaultDisplays.put("TR", "table-row");
+            sDefaultDisplays.put("TD", "table-cell");
+            sDefaultDisplays.put("TH", "table-cell");
+            sDefaultDisplays.put("BUTTON", "inline-block");
+            sDefaultDisplays.put("INPUT", "inline-block");
+            sDefaultDisplays.put("SELECT", "inline-block");
+            sDefaultDisplays.put("TEXTAREA", "inline-block");
+        }
+        String display = sDefaultDisplays.get(tagName.toUpperCase());
+        return display == null ? "inline" : display;
+    }
+
+    private static native JsArray<StyleRule> getStyleRules(Document document) /*-{
+        var rules = [];
+        var sheets = document.styleSheets || [];
+        for (var i = 0; i < sheets.length; i++) {
+            var sheetRules;
+            try {
+                sheetRules = sheets[i].cssRules;
+            } catch (e) {
+                // Rules of cross-origin style sheets aren't accessible.
+                continue;
+            }
+            if (!sheetRules) continue;
+            for (var j = 0; j < sheetRules.length; j++) {
+                // CSSRule.STYLE_RULE
+                if (sheetRules[j].type == 1) rules.push(sheetRules[j]);
+            }
+        }
+        return rules;
+    }-*/;
+
+    private static native boolean matches(Element e, String selector) /*-{
+        try {
+            var matches = e.matches || e.webkitMatchesSelector;
+            return !!matches && matches.call(e, selector);
+        } catch (err) {
+            // Selectors the implementation doesn't support don't match.
+            return false;
+        }
+    }-*/;
+}
@@ -0,0 +1,384 @@
+// Copyright 2016 The Chromium Authors
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.distiller;
+
+import org.chromium.distiller.proto.DomDistillerProtos.DistillabilityModel;
+import org.chromium.distiller.proto.DomDistillerProtos.DistillabilityResult;
+
+import com.google.gwt.core.client.js.JsExport;
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.NodeList;
+import com.google.gwt.regexp.shared.RegExp;
+
+/**
+ * Decides whether a page is worth distilling without running the distiller, by scoring features
+ * of the page with an AdaBoost model. The features are the ones calculate_derived_features.py in
+ * heuristics/distillable derives from the output of extract_features.js, in the same order,
+ * except for "id", "sin" and the ones that need the whole text of the page (the innerText,
+ * textContent and innerHTML lengths and word counts). FEATURE_NAMES has the name of each feature in
+ * that pipeline, and convert_model.py there turns a model trained on those names into a
+ * DistillabilityModel.
+ *
+ * The element counts come from native queries, and the paragraphs are visited once for the
+ * mozScores and the visible paragraph ratio. As those only grow, the walk stops as soon as the
+ * paragraphs that are left can't change the outcome. The visible element ratio needs the style of
+ * every element, so it's only computed for the models that use it, and is -1 otherwise.
+ */
+@JsExport("DistillabilityDetector")
+public class DistillabilityDetector {
+    // The derived features, in the order of DistillabilityResult.features.
+    public static final int OPEN_GRAPH = 0;
+    public static final int PATH_FORUM = 1;
+    public static final int PATH_INDEX = 2;
+    public static final int PATH_SEARCH = 3;
+    public static final int PATH_VIEW = 4;
+    public static final int PATH_ARCHIVE = 5;
+    public static final int PATH_ASP = 6;
+    public static final int PATH_PHPBB = 7;
+    public static final int PATH_PHP = 8;
+    public static final int PATH_LENGTH = 9;
+    public static final int DOMAIN = 10;
+    public static final int PATH_COMPONENTS = 11;
+    public static final int SLUG_DETECTOR = 12;
+    public static final int PATH_NUMBERS = 13;
+    public static final int LAST_SEGMENT_LENGTH = 14;
+    public static final int VISIBLE_RATIO = 15;
+    public static final int VISIBLE_PPRE_RATIO = 16;
+    public static final int PPRE_RATIO = 17;
+    public static final int ANCHOR_PPRE_RATIO = 18;
+    public static final int TEXT_COUNT = 19;
+    public static final int PASSWORD_COUNT = 20;
+    public static final int FORM_COUNT = 21;
+    public static final int ANCHOR_COUNT = 22;
+    public static final int ELEMENT_COUNT = 23;
+    public static final int ANCHOR_RATIO = 24;
+    // The raw features appended by calculate_derived_features.py, sorted by name.
+    public static final int MOZ_SCORE = 25;
+    public static final int MOZ_SCORE_ALL_LINEAR = 26;
+    public static final int MOZ_SCORE_ALL_SQRT = 27;
+    public static final int NUM_ANCHORS = 28;
+    public static final int NUM_ELEMENTS = 29;
+    public static final int NUM_FORMS = 30;
+    public static final int NUM_PPRE = 31;
+    public static final int NUM_PASSWORD_INPUT = 32;
+    public static final int NUM_TEXT_INPUT = 33;
+    public static final int NUM_FEATURES = 34;
+
+    // The names of the features in calculate_derived_features.py, by index.
+    public static final String[] FEATURE_NAMES = {
+        "openGraph", "forum", "index", "search", "view", "archive", "asp", "phpbb", "php",
+        "pathLength", "domain", "pathComponents", "slugDetector", "pathNumbers",
+        "lastSegmentLength", "visibleRatio", "visiblePPRERatio", "PPRERatio", "anchorPPRERatio",
+        "textCount", "passwordCount", "formCount", "anchorCount", "elementCount", "anchorRatio",
+        "mozScore", "mozScoreAllLinear", "mozScoreAllSqrt", "numAnchors", "numElements",
+        "numForms", "numPPRE", "numPasswordInput", "numTextInput",
+    };
+
+    // The saturation of the length of a paragraph, and of each mozScore.
+    private static final int MAX_PARAGRAPH_LENGTH = 1000;
+    private static final int MOZ_SCORE_CUT = 140;
+    private static final double MAX_MOZ_SCORE = 6 * Math.sqrt(1000 - MOZ_SCORE_CUT);
+    private static final double MAX_MOZ_SCORE_ALL_SQRT = 6 * Math.sqrt(1000);
+    private static final double MAX_MOZ_SCORE_ALL_LINEAR = 6 * 1000;
+
+    // How many paragraphs to visit between the checks for whether the result is decided.
+    private static final int CHECK_INTERVAL = 8;
+
+    private static final RegExp UNLIKELY_CANDIDATES = RegExp.compile(
+            "banner|combx|comment|community|disqus|extra|foot|header|menu|related|remark|rss|" +
+            "share|shoutbox|sidebar|skyscraper|sponsor|ad-break|agegate|pagination|pager|popup",
+            "i");
+    private static final RegExp OK_MAYBE_ITS_A_CANDIDATE =
+            RegExp.compile("and|article|body|column|main|shadow", "i");
+
+    private final DistillabilityModel model;
+    private final boolean usesVisibleRatio;
+
+    /**
+     * @throws IllegalArgumentException If a stump of |model| has no valid feature index.
+     */
+    public DistillabilityDetector(DistillabilityModel model) {
+        boolean usesVisibleRatio = false;
+        for (int i = 0; i < model.getStumpsCount(); i++) {
+            DistillabilityModel.Stump stump = model.getStumps(i);
+            if (!stump.hasFeature() || stump.getFeature() < 0 ||
+                    stump.getFeature() >= NUM_FEATURES) {
+                throw new IllegalArgumentException("Invalid feature in stump " + i);
+            }
+            if (stump.getFeature() == VISIBLE_RATIO) usesVisibleRatio = true;
+        }
+        this.model = model;
+        this.usesVisibleRatio = usesVisibleRatio;
+    }
+
+    /**
+     * @return The index of the feature called |name| in calculate_derived_features.py, or -1 if
+     * the detector doesn't compute it.
+     */
+    public static int getFeatureIndex(String name) {
+        for (int i = 0; i < NUM_FEATURES; i++) {
+            if (FEATURE_NAMES[i].equals(name)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Scores the current document with |model|.
+     */
+    @JsExport
+    public static DistillabilityResult apply(DistillabilityModel model) {
+        Document document = Document.get();
+        return new DistillabilityDetector(model).detect(
+                document.getDocumentElement(), document.getURL());
+    }
+
+    /**
+     * Scores the document rooted at |root|, which was loaded from |url|.
+     */
+    public DistillabilityResult detect(Element root, String url) {
+        double[] features = new double[NUM_FEATURES];
+        features[OPEN_GRAPH] = hasOpenGraphArticle(root) ? 1 : 0;
+        ParsedUrl parsedUrl = ParsedUrl.create(url);
+        setPathFeatures(features, parsedUrl == null ? "" : parsedUrl.getPath());
+
+        Element body = DomUtil.getFirstElementByTagNameInc(root, "BODY");
+        if (body == null) body = root;
+        NodeList<Element> elements = body.getElementsByTagName("*");
+        NodeList<Element> paragraphs = DomUtil.querySelectorAll(body, "p, pre");
+        int numElements = elements.getLength();
+        int numAnchors = body.getElementsByTagName("A").getLength();
+        int numForms = body.getElementsByTagName("FORM").getLength();
+        int numPPRE = paragraphs.getLength();
+        int numTextInput = DomUtil.querySelectorAll(body, "input[type=\"text\"]").getLength();
+        int numPasswordInput =
+                DomUtil.querySelectorAll(body, "input[type=\"password\"]").getLength();
+        features[VISIBLE_RATIO] =
+                usesVisibleRatio ? (double) countVisible(elements) / Math.max(1, numElements) : -1;
+        features[PPRE_RATIO] = (double) numPPRE / Math.max(1, numElements);
+        features[ANCHOR_PPRE_RATIO] = (double) numAnchors / Math.max(1, numPPRE);
+        features[TEXT_COUNT] = numTextInput;
+        features[PASSWORD_COUNT] = numPasswordInput;
+        features[FORM_COUNT] = numForms;
+        features[ANCHOR_COUNT] = numAnchors;
+        features[ELEMENT_COUNT] = numElements;
+        features[ANCHOR_RATIO] = (double) numAnchors / Math.max(1, numElements);
+        features[NUM_ANCHORS] = numAnchors;
+        features[NUM_ELEMENTS] = numElements;
+        features[NUM_FORMS] = numForms;
+        features[NUM_PPRE] = numPPRE;
+        features[NUM_PASSWORD_INPUT] = numPasswordInput;
+        features[NUM_TEXT_INPUT] = numTextInput;
+
+        double mozScore = 0;
+        double mozScoreAllSqrt = 0;
+        double mozScoreAllLinear = 0;
+        int numVisiblePPRE = 0;
+        int numVisited = 0;
+        boolean stoppedEarly = false;
+        for (; numVisited < numPPRE; numVisited++) {
+            if (numVisited % CHECK_INTERVAL == 0) {
+                // Each paragraph that is left may still be visible.
+                double maxVisiblePPRERatio =
+                        (double) (numVisiblePPRE + numPPRE - numVisited) / Math.max(1, numPPRE);
+                if (isDecided(features, maxVisiblePPRERatio)) {
+                    stoppedEarly = true;
+                    break;
+                }
+            }
+            Element e = paragraphs.getItem(numVisited);
+            if (!isVisible(e)) continue;
+            numVisiblePPRE++;
+            features[VISIBLE_PPRE_RATIO] = (double) numVisiblePPRE / Math.max(1, numPPRE);
+            int length = getScoredLength(e);
+            if (length < 0) continue;
+            if (length >= MOZ_SCORE_CUT) mozScore += Math.sqrt(length - MOZ_SCORE_CUT);
+            mozScoreAllSqrt += Math.sqrt(length);
+            mozScoreAllLinear += length;
+            features[MOZ_SCORE] = Math.min(MAX_MOZ_SCORE, mozScore);
+            features[MOZ_SCORE_ALL_SQRT] = Math.min(MAX_MOZ_SCORE_ALL_SQRT, mozScoreAllSqrt);
+            features[MOZ_SCORE_ALL_LINEAR] = Math.min(MAX_MOZ_SCORE_ALL_LINEAR, mozScoreAllLinear);
+        }
+
+        double score = getScore(features);
+        DistillabilityResult result = DistillabilityResult.create();
+        result.setDistillable(score > getThreshold());
+        result.setScore(score);
+        for (double feature : features) {
+            result.addFeatures(feature);
+        }
+        result.setStoppedEarly(stoppedEarly);
+        result.setParagraphsVisited(numVisited);
+        return result;
+    }
+
+    /**
+     * @return The score of |features| with the model, i.e. the sum of the values of its stumps.
+     */
+    public double getScore(double[] features) {
+        double score = 0;
+        for (int i = 0; i < model.getStumpsCount(); i++) {
+            DistillabilityModel.Stump stump = model.getStumps(i);
+            score += features[stump.getFeature()] > stump.getSplit() ?
+                    stump.getRightValue() : stump.getLeftValue();
+        }
+        return score;
+    }
+
+    /**
+     * Returns whether the paragraphs that haven't been visited can't change whether the score is
+     * above the threshold. Only the mozScores and the visible paragraph ratio change during the
+     * walk, and they never decrease. The ratio can't grow past |maxVisiblePPRERatio|.
+     */
+    private boolean isDecided(double[] features, double maxVisiblePPRERatio) {
+        double minScore = 0;
+        double maxScore = 0;
+        for (int i = 0; i < model.getStumpsCount(); i++) {
+            DistillabilityModel.Stump stump = model.getStumps(i);
+            double value = features[stump.getFeature()];
+            if (value > stump.getSplit()) {
+                minScore += stump.getRightValue();
+                maxScore += stump.getRightValue();
+            } else if (canExceed(stump.getFeature(), stump.getSplit(), maxVisiblePPRERatio)) {
+                minScore += Math.min(stump.getLeftValue(), stump.getRightValue());
+                maxScore += Math.max(stump.getLeftValue(), stump.getRightValue());
+            } else {
+                minScore += stump.getLeftValue();
+                maxScore += stump.getLeftValue();
+            }
+        }
+        double threshold = getThreshold();
+        return minScore > threshold || maxScore <= threshold;
+    }
+
+    private double getThreshold() {
+        return model.hasThreshold() ? model.getThreshold() : 0;
+    }
+
+    /**
+     * Returns whether |feature| can still grow above |split| during the walk.
+     */
+    private static boolean canExceed(int feature, double split, double maxVisiblePPRERatio) {
+        switch (feature) {
+            case VISIBLE_PPRE_RATIO:
+                return maxVisiblePPRERatio > split;
+            case MOZ_SCORE:
+                return MAX_MOZ_SCORE > split;
+            case MOZ_SCORE_ALL_SQRT:
+                return MAX_MOZ_SCORE_ALL_SQRT > split;
+            case MOZ_SCORE_ALL_LINEAR:
+                return MAX_MOZ_SCORE_ALL_LINEAR > split;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns the saturated length of the text of a visible paragraph that counts towards the
+     * mozScores, or -1 if it doesn't count.
+     */
+    private static int getScoredLength(Element e) {
+        String matchString = e.getClassName() + " " + e.getId();
+        if (UNLIKELY_CANDIDATES.test(matchString) && !OK_MAYBE_ITS_A_CANDIDATE.test(matchString)) {
+            return -1;
+        }
+        if (e.getTagName().equals("P") && hasListItemAncestor(e)) return -1;
+        return Math.min(MAX_PARAGRAPH_LENGTH, DomUtil.javascriptTextContent(e).length());
+    }
+
+    /**
+     * Same as isVisible() in extract_features.js.
+     */
+    private static boolean isVisible(Element e) {
+        return DomUtil.isVisible(e) && !hasEmptyBounds(e);
+    }
+
+    /**
+     * Unlike the offset size, the bounding rect is fractional and includes the CSS transforms,
+     * like in extract_features.js.
+     */
+    private static native boolean hasEmptyBounds(Element e) /*-{
+        var bounds = e.getBoundingClientRect();
+        return bounds.height == 0 && bounds.width == 0;
+    }-*/;
+
+    private static int countVisible(NodeList<Element> elements) {
+        int count = 0;
+        for (int i = 0; i < elements.getLength(); i++) {
+            if (isVisible(elements.getItem(i))) count++;
+        }
+        return count;
+    }
+
+    private static boolean hasListItemAncestor(Element e) {
+        for (Element parent = e.getParentElement(); parent != null;
+                parent = parent.getParentElement()) {
+            if (parent.getTagName().equals("LI")) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Like extract_features.js, only the <head> is searched.
+     */
+    private static boolean hasOpenGraphArticle(Element root) {
+        Element head = DomUtil.getFirstElementByTagNameInc(root, "HEAD");
+        if (head == null) return false;
+        NodeList<Element> metas = DomUtil.querySelectorAll(head,
+                "meta[property=\"og:type\"], meta[name=\"og:type\"]");
+        for (int i = 0; i < metas.getLength(); i++) {
+            if (metas.getItem(i).getAttribute("content").toUpperCase().equals("ARTICLE")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void setPathFeatures(double[] features, String path) {
+        features[PATH_FORUM] = path.contains("forum") ? 1 : 0;
+        features[PATH_INDEX] = path.contains("index") ? 1 : 0;
+        features[PATH_SEARCH] = path.contains("search") ? 1 : 0;
+        features[PATH_VIEW] = path.contains("view") ? 1 : 0;
+        features[PATH_ARCHIVE] = path.contains("archive") ? 1 : 0;
+        features[PATH_ASP] = path.contains(".asp") ? 1 : 0;
+        features[PATH_PHPBB] = path.contains("phpbb") ? 1 : 0;
+        features[PATH_PHP] = path.endsWith(".php") ? 1 : 0;
+        features[PATH_LENGTH] = path.length();
+        features[DOMAIN] = path.length() < 2 ? 1 : 0;
+
+        // The matches of /\/./g, [^\w\/] and /\d+/g.
+        int numComponents = 0;
+        int numSlugChars = 0;
+        int numNumbers = 0;
+        for (int i = 0; i < path.length(); i++) {
+            if (path.charAt(i) == '/' && i + 1 < path.length()) {
+                numComponents++;
+                // The matches don't overlap.
+                i++;
+            }
+        }
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            boolean isDigit = c >= '0' && c <= '9';
+            if (!isDigit && !(c >= 'a' && c <= 'z') && !(c >= 'A' && c <= 'Z') && c != '_' &&
+                    c != '/') {
+                numSlugChars++;
+            }
+            if (isDigit && (i == 0 || !isDigitAt(path, i - 1))) numNumbers++;
+        }
+        features[PATH_COMPONENTS] = numComponents;
+        features[SLUG_DETECTOR] = numSlugChars;
+        features[PATH_NUMBERS] = numNumbers;
+
+        // The last segment, with at most one trailing slash.
+        int start = path.endsWith("/") ? path.length() - 1 : path.length();
+        while (start > 0 && path.charAt(start - 1) != '/') start--;
+        features[LAST_SEGMENT_LENGTH] = path.length() - start;
+    }
+
+    private static boolean isDigitAt(String s, int i) {
+        return s.charAt(i) >= '0' && s.charAt(i) <= '9';
+    }
+}
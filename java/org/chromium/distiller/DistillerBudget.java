@@ -0,0 +1,62 @@
+// Copyright 2016 The Chromium Authors
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.distiller;
+
+/**
+ * Bounds the work of a distillation by the number of nodes it visits and by wall-clock time.
+ * The DOM walks and the loops over the links that are given a budget stop early once it's used
+ * up, and the result is built from what they visited until then.
+ */
+public class DistillerBudget {
+    // How many nodes to visit between two reads of the clock.
+    private static final int TIME_CHECK_INTERVAL = 256;
+
+    private final int maxNodes;
+    private final double deadline;
+    private int numNodes = 0;
+    private int nodesUntilTimeCheck = TIME_CHECK_INTERVAL;
+    private boolean exhausted = false;
+
+    /**
+     * @param maxNodes The maximum number of nodes to visit, or 0 for no limit.
+     * @param maxTime The time in milliseconds from now after which to stop, or 0 for no limit.
+     */
+    public DistillerBudget(int maxNodes, double maxTime) {
+        this.maxNodes = maxNodes;
+        deadline = maxTime > 0 ? DomUtil.getTime() + maxTime : 0;
+    }
+
+    /**
+     * Spends the visit of one node.
+     * @return Whether the node can be visited. Once this returns false, it always does.
+     */
+    public boolean visitNode() {
+        if (exhausted) return false;
+        if (maxNodes > 0 && numNodes >= maxNodes) {
+            exhausted = true;
+            return false;
+        }
+        if (deadline > 0 && --nodesUntilTimeCheck == 0) {
+            nodesUntilTimeCheck = TIME_CHECK_INTERVAL;
+            if (DomUtil.getTime() > deadline) {
+                exhausted = true;
+                return false;
+            }
+        }
+        numNodes++;
+        return true;
+    }
+
+    /**
+     * @return Whether a walk stopped early because the budget was used up.
+     */
+    public boolean isExhausted() {
+        return exhausted;
+    }
+
+    public int getNumNodesVisited() {
+        return numNodes;
+    }
+}
@@ -0,0 +1,70 @@
+// Copyright 2016 The Chromium Authors
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.distiller;
+
+import com.google.gwt.dom.client.Element;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The state a distillation keeps in static fields: the word counter, the debug level and log,
+ * the computed style cache, the paging link debug info and the recorded stages. Each DomDistiller
+ * run uses its own context, so that runs that are interleaved don't see each other's state, and
+ * the state of the caller is left as it was.
+ *
+ * enter() swaps the state held by the context into the static fields, and exit() swaps it back
+ * out, so the code of a run reads and writes the static fields as before.
+ */
+public class DistillerContext {
+    StringUtil.WordCounter wordCounter = StringUtil.getDefaultWordCounter();
+
+    int debugLevel = LogUtil.DEBUG_LEVEL_NONE;
+    String log = "";
+
+    Map<Element, ComputedStyleCache.Snapshot> styleCache;
+    int styleDepth = 0;
+    ComputedStyleCache.Source styleSource;
+
+    Map<Element, String> linkDebugInfo = new HashMap<>();
+
+    Map<String, StageInstrumentation.Stage> stages;
+    List<StageInstrumentation.RunningStage> runningStages;
+
+    private boolean entered;
+
+    /**
+     * Makes this the current context. The state of the previous one is kept in this context until
+     * exit().
+     */
+    public void enter() {
+        assert !entered;
+        swapState();
+        entered = true;
+    }
+
+    /**
+     * Restores the context that was current before enter(). The state of this context is kept for
+     * the next enter().
+     */
+    public void exit() {
+        assert entered;
+        swapState();
+        entered = false;
+    }
+
+    public boolean isEntered() {
+        return entered;
+    }
+
+    private void swapState() {
+        StringUtil.swapState(this);
+        LogUtil.swapState(this);
+        ComputedStyleCache.swapState(this);
+        PagingLinksFinder.swapState(this);
+        StageInstrumentation.swapState(this);
+    }
+}
@@ -9,12 +9,45 @@ import org.chromium.distiller.proto.DomDistillerProtos.DebugInfo;
 import org.chromium.distiller.proto.DomDistillerProtos.TimingInfo;
 import org.chromium.distiller.DomUtil;
 import org.chromium.distiller.StringUtil;
+import org.chromium.distiller.webdocument.WebDocument;
+import org.chromium.distiller.webdocument.WebDocumentCache;
 
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.core.client.JsArray;
+import com.google.gwt.core.client.Scheduler;
 import com.google.gwt.core.client.js.JsExport;
 import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.Element;
 
 @JsExport("DomDistiller")
 public class DomDistiller {
+    // The number of nodes walked, or content elements output, between two checks of the time of
+    // a slice of applyAsync(), and the time in milliseconds after which a slice yields.
+    private static final int ASYNC_WORK_PER_STEP = 100;
+    private static final double ASYNC_SLICE_TIME = 8;
+
+    private static WebDocumentCache sWebDocumentCache;
+
+    /**
+     * Passes each chunk of the output to a javascript function(index, html).
+     */
+    private static class JsOutputSink implements WebDocument.OutputSink {
+        private final JavaScriptObject callback;
+
+        JsOutputSink(JavaScriptObject callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public void onChunk(int index, String html) {
+            invoke(callback, index, html);
+        }
+
+        private static native void invoke(JavaScriptObject callback, int index, String html) /*-{
+            callback(index, html);
+        }-*/;
+    }
+
     @JsExport
     public static DomDistillerProtos.DomDistillerResult apply() {
         return applyWithOptions(DomDistillerProtos.DomDistillerOptions.create());
@@ -23,61 +56,306 @@ public class DomDistiller {
     @JsExport
     public static DomDistillerProtos.DomDistillerResult applyWithOptions(
             DomDistillerProtos.DomDistillerOptions options) {
-        double startTime = DomUtil.getTime();
-        StringUtil.setWordCounter(
-                DomUtil.javascriptTextContent(Document.get().getDocumentElement()));
-        DomDistillerProtos.DomDistillerResult result =
-                DomDistillerProtos.DomDistillerResult.create();
-        ContentExtractor contentExtractor =
-                new ContentExtractor(Document.get().getDocumentElement());
-        result.setTitle(contentExtractor.extractTitle());
-
-        LogUtil.setDebugLevel(
-                options.hasDebugLevel() ? options.getDebugLevel() : LogUtil.DEBUG_LEVEL_NONE);
-        LogUtil.logToConsole("DomDistiller debug level: " + LogUtil.getDebugLevel());
-
-        DomDistillerProtos.DistilledContent content = DomDistillerProtos.DistilledContent.create();
-        boolean textOnly = options.hasExtractTextOnly() && options.getExtractTextOnly();
-        content.setHtml(contentExtractor.extractContent(textOnly));
-        result.setDistilledContent(content);
-        result.setTextDirection(contentExtractor.getTextDirection());
-
-        for (String url : contentExtractor.getImageUrls()) {
-            result.addContentImages().setUrl(url);
+        return distill(Document.get().getDocumentElement(), options, null, null);
+    }
+
+    /**
+     * Distills the current document like applyWithOptions(), but passes the distilled content to
+     * |callback| one content element at a time, as function(index, html), while it is generated.
+     * The html of the returned result's distilled content is left empty.
+     */
+    @JsExport
+    public static DomDistillerProtos.DomDistillerResult applyStreaming(
+            DomDistillerProtos.DomDistillerOptions options, JavaScriptObject callback) {
+        return distill(Document.get().getDocumentElement(), options, null,
+                new JsOutputSink(callback));
+    }
+
+    /**
+     * Distills the current document again after it changed, reusing the parts of the previous
+     * incremental run whose DOM subtrees aren't touched by |mutations|. These are the records a
+     * MutationObserver collected since then, observing the document with childList, attributes,
+     * characterData and subtree. A null |mutations| starts over, as for the first call.
+     */
+    @JsExport
+    public static DomDistillerProtos.DomDistillerResult applyIncrementally(
+            DomDistillerProtos.DomDistillerOptions options,
+            JsArray<WebDocumentCache.MutationRecord> mutations) {
+        if (sWebDocumentCache == null) sWebDocumentCache = new WebDocumentCache();
+        if (mutations == null) {
+            sWebDocumentCache.clear();
+        } else {
+            sWebDocumentCache.invalidate(mutations);
         }
+        return distill(Document.get().getDocumentElement(), options, sWebDocumentCache, null);
+    }
 
-        // iOS doesn't support reading window.location.href, so we use document.URL instead.
-        String originalUrl =
-                options.hasOriginalUrl() ? options.getOriginalUrl() : Document.get().getURL();
-        TimingInfo timingInfo = contentExtractor.getTimingInfo();
-        double stPaging = DomUtil.getTime();
-        String paginationAlgo = options.hasPaginationAlgo() ? options.getPaginationAlgo() : "next";
-        if (paginationAlgo.equals("pagenum")) {
-            PageParamInfo paramInfo = PageParameterParser.parse(originalUrl, timingInfo);
-            DomDistillerProtos.PaginationInfo info = DomDistillerProtos.PaginationInfo.create();
-            String next = paramInfo.mNextPagingUrl;
-            if (!next.isEmpty()) {
-                info.setNextPage(next);
+    /**
+     * Distills a batch of documents in a single call. Each entry of |roots| is the document
+     * element of a page to distill, and the entry of |options| at the same index (if any) holds
+     * its options. Missing or null options fall back to the defaults.
+     * @return One result per root, in the same order.
+     */
+    @JsExport
+    public static JsArray<DomDistillerProtos.DomDistillerResult> applyBatch(
+            JsArray<Element> roots, JsArray<DomDistillerProtos.DomDistillerOptions> options) {
+        JsArray<DomDistillerProtos.DomDistillerResult> results =
+                JsArray.createArray().<JsArray<DomDistillerProtos.DomDistillerResult>>cast();
+        for (int i = 0; i < roots.length(); i++) {
+            DomDistillerProtos.DomDistillerOptions documentOptions =
+                    options != null && i < options.length() ? options.get(i) : null;
+            if (documentOptions == null) {
+                documentOptions = DomDistillerProtos.DomDistillerOptions.create();
             }
-            result.setPaginationInfo(info);
-            if (LogUtil.isLoggable(LogUtil.DEBUG_LEVEL_PAGING_INFO)) {
-                LogUtil.logToConsole("paging by pagenum: " + paramInfo.toString());
+            results.push(distill(roots.get(i), documentOptions, null, null));
+        }
+        return results;
+    }
+
+    /**
+     * Distills the current document like applyWithOptions(), but in slices of a few milliseconds
+     * that are run from the event loop, so that the page stays responsive meanwhile. The result is
+     * passed to |callback| as function(result, error) once it's done. If the distillation throws,
+     * it's abandoned, and |callback| gets a null result and the error message instead. The
+     * time_budget_ms option counts the time between the slices too.
+     *
+     * The page may change between the slices. If the part of the DOM that is still to be walked
+     * was removed or moved meanwhile, the walk stops there, and the result is built from what was
+     * walked before, and marked as truncated.
+     */
+    @JsExport
+    public static void applyAsync(final DomDistillerProtos.DomDistillerOptions options,
+            final JavaScriptObject callback) {
+        Scheduler.get().scheduleFixedDelay(new Scheduler.RepeatingCommand() {
+            private Distillation distillation;
+
+            @Override
+            public boolean execute() {
+                DomDistillerProtos.DomDistillerResult result = null;
+                String error = null;
+                try {
+                    if (distillation == null) {
+                        distillation = new Distillation(Document.get().getDocumentElement(),
+                                options, null, null, ASYNC_WORK_PER_STEP);
+                    }
+                    result = distillation.runSlice(ASYNC_SLICE_TIME);
+                    if (result == null) return true;
+                } catch (Exception e) {
+                    error = "Exception happened in DomDistiller: " + e.getMessage();
+                    LogUtil.logToConsole(error);
+                }
+                invokeCallback(callback, result, error);
+                return false;
             }
-        } else {
-            if (LogUtil.isLoggable(LogUtil.DEBUG_LEVEL_PAGING_INFO)) {
-                LogUtil.logToConsole("paging by next");
+        }, 0);
+    }
+
+    private static native void invokeCallback(JavaScriptObject callback,
+            DomDistillerProtos.DomDistillerResult result, String error) /*-{
+        callback(result, error);
+    }-*/;
+
+    private static DomDistillerProtos.DomDistillerResult distill(Element root,
+            DomDistillerProtos.DomDistillerOptions options, WebDocumentCache cache,
+            WebDocument.OutputSink sink) {
+        return new Distillation(root, options, cache, sink, Integer.MAX_VALUE)
+                .runSlice(Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * A distillation that is done in slices, see runSlice(). Each run starts from a fresh word
+     * counter, log and style cache, which are kept in its own DistillerContext between the
+     * slices. That context is only current during a slice, so the caller's state is left
+     * untouched, and other runs can be done in between.
+     */
+    static class Distillation {
+        private final DistillerContext context = new DistillerContext();
+        private final Element root;
+        private final DomDistillerProtos.DomDistillerOptions options;
+        private final WebDocument.OutputSink sink;
+        // The concatenated output, when there's no sink.
+        private final StringBuilder output = new StringBuilder();
+        // The time spent in the slices before the current one.
+        private double activeTime = 0;
+        private DistillerBudget budget;
+        private ContentExtractor contentExtractor;
+        private ContentExtractor.Extraction extraction;
+        private DomDistillerProtos.DomDistillerResult result;
+        private int numSlices = 0;
+
+        /**
+         * @param cache If not null, the WebDocument is built incrementally from the one of the
+         * previous run with the same cache.
+         * @param sink If not null, the distilled content is passed to it instead of being set in
+         * the result.
+         * @param workPerStep The number of nodes walked, or content elements output, between two
+         * checks of the time of a slice.
+         */
+        Distillation(Element root, DomDistillerProtos.DomDistillerOptions options,
+                WebDocumentCache cache, WebDocument.OutputSink sink, int workPerStep) {
+            this.root = root;
+            this.options = options;
+            this.sink = sink;
+            double sliceStart = DomUtil.getTime();
+            context.enter();
+            try {
+                if (options.hasStyleSource() && options.getStyleSource().equals("declared")) {
+                    ComputedStyleCache.setSource(new DeclaredStyleSource(root.getOwnerDocument()));
+                }
+                // Share the computed styles read during content extraction with the pagination
+                // finders.
+                ComputedStyleCache.begin();
+                boolean started = false;
+                try {
+                    start(cache, workPerStep);
+                    started = true;
+                } finally {
+                    if (!started) ComputedStyleCache.end();
+                }
+            } finally {
+                context.exit();
+            }
+            activeTime += DomUtil.getTime() - sliceStart;
+        }
+
+        private void start(WebDocumentCache cache, int workPerStep) {
+            if (options.hasMaxNodesVisited() || options.hasTimeBudgetMs()) {
+                budget = new DistillerBudget(
+                        options.hasMaxNodesVisited() ? options.getMaxNodesVisited() : 0,
+                        options.hasTimeBudgetMs() ? options.getTimeBudgetMs() : 0);
             }
-            result.setPaginationInfo(PagingLinksFinder.getPaginationInfo(originalUrl));
+            boolean fusedTraversal = options.hasFusedTraversal() && options.getFusedTraversal();
+            if (!fusedTraversal) {
+                StringUtil.setWordCounter(DomUtil.javascriptTextContent(root));
+            }
+            contentExtractor = new ContentExtractor(root, fusedTraversal);
+            if (cache != null) contentExtractor.setWebDocumentCache(cache);
+            if (budget != null) contentExtractor.setBudget(budget);
+
+            LogUtil.setDebugLevel(
+                    options.hasDebugLevel() ? options.getDebugLevel() : LogUtil.DEBUG_LEVEL_NONE);
+            LogUtil.logToConsole("DomDistiller debug level: " + LogUtil.getDebugLevel());
+
+            boolean textOnly = options.hasExtractTextOnly() && options.getExtractTextOnly();
+            extraction = contentExtractor.startExtraction(textOnly,
+                    sink != null ? sink : new WebDocument.OutputSink() {
+                        @Override
+                        public void onChunk(int index, String html) {
+                            output.append(html);
+                        }
+                    }, workPerStep);
+        }
+
+        /**
+         * Does the next part of the distillation, until it's finished or |maxTime| milliseconds
+         * have passed. At least one step is done, however long it takes.
+         * @return The result once the distillation is finished, or null.
+         */
+        DomDistillerProtos.DomDistillerResult runSlice(double maxTime) {
+            assert result == null;
+            numSlices++;
+            double sliceStart = DomUtil.getTime();
+            context.enter();
+            try {
+                // The style cache is ended once the distillation is finished, or if it throws.
+                boolean ended = true;
+                try {
+                    boolean extracted;
+                    do {
+                        extracted = extraction.step();
+                    } while (!extracted && DomUtil.getTime() - sliceStart < maxTime);
+                    if (extracted) createResult(sliceStart);
+                    ended = extracted;
+                } finally {
+                    if (ended) ComputedStyleCache.end();
+                }
+            } finally {
+                context.exit();
+            }
+            activeTime += DomUtil.getTime() - sliceStart;
+            return result;
+        }
+
+        int getNumSlices() {
+            return numSlices;
+        }
+
+        private void createResult(double sliceStart) {
+            result = DomDistillerProtos.DomDistillerResult.create();
+            DomDistillerProtos.DistilledContent content =
+                    DomDistillerProtos.DistilledContent.create();
+            content.setHtml(output.toString());
+            result.setDistilledContent(content);
+            // With fused traversal, the markup is only parsed during content extraction.
+            result.setTitle(contentExtractor.extractTitle());
+            result.setTextDirection(contentExtractor.getTextDirection());
+
+            for (String url : contentExtractor.getImageUrls()) {
+                result.addContentImages().setUrl(url);
+            }
+
+            // iOS doesn't support reading window.location.href, so we use document.URL instead.
+            String originalUrl = options.hasOriginalUrl() ?
+                    options.getOriginalUrl() : root.getOwnerDocument().getURL();
+            TimingInfo timingInfo = contentExtractor.getTimingInfo();
+            double stPaging = DomUtil.getTime();
+            // Resolve and parse each distinct URL of the links and page patterns once.
+            UrlCache.begin();
+            try {
+                setPaginationInfo(originalUrl, timingInfo);
+            } finally {
+                UrlCache.end();
+            }
+            LogUtil.addTimingInfo(stPaging, timingInfo, "Pagination");
+
+            result.setMarkupInfo(contentExtractor.getMarkupParser().getMarkupInfo());
+            // Only the time spent distilling counts, not the time between the slices.
+            timingInfo.setTotalTime(activeTime + DomUtil.getTime() - sliceStart);
+            result.setTimingInfo(timingInfo);
+            result.setStatisticsInfo(contentExtractor.getStatisticsInfo());
+            result.setInstrumentationInfo(contentExtractor.getInstrumentationInfo());
+            result.setTruncated((budget != null && budget.isExhausted()) ||
+                    contentExtractor.isWalkInterrupted());
+            DebugInfo debugInfo = DebugInfo.create();
+            debugInfo.setLog(LogUtil.getAndClearLog());
+            result.setDebugInfo(debugInfo);
+        }
+
+        private void setPaginationInfo(String originalUrl, TimingInfo timingInfo) {
+            String paginationAlgo =
+                    options.hasPaginationAlgo() ? options.getPaginationAlgo() : "next";
+            // Both algorithms look at the same anchors, so they share the index.
+            AnchorIndex anchorIndex =
+                    AnchorIndex.create(root, originalUrl, contentExtractor.getPageScanner());
+            DomDistillerProtos.PaginationInfo info = null;
+            if (paginationAlgo.equals("pagenum") || paginationAlgo.equals("both")) {
+                PageParamInfo paramInfo =
+                        PageParameterParser.parse(anchorIndex, originalUrl, timingInfo, budget);
+                info = DomDistillerProtos.PaginationInfo.create();
+                String next = paramInfo.mNextPagingUrl;
+                if (!next.isEmpty()) {
+                    info.setNextPage(next);
+                }
+                if (LogUtil.isLoggable(LogUtil.DEBUG_LEVEL_PAGING_INFO)) {
+                    LogUtil.logToConsole("paging by pagenum: " + paramInfo.toString());
+                }
+            }
+            if (!paginationAlgo.equals("pagenum")) {
+                if (LogUtil.isLoggable(LogUtil.DEBUG_LEVEL_PAGING_INFO)) {
+                    LogUtil.logToConsole("paging by next");
+                }
+                DomDistillerProtos.PaginationInfo nextInfo =
+                        PagingLinksFinder.getPaginationInfo(anchorIndex, originalUrl, budget);
+                if (info == null || !info.hasNextPage()) {
+                    info = nextInfo;
+                } else if (LogUtil.isLoggable(LogUtil.DEBUG_LEVEL_PAGING_INFO)) {
+                    String next = nextInfo.hasNextPage() ? nextInfo.getNextPage() : "";
+                    if (!next.equals(info.getNextPage())) {
+                        LogUtil.logToConsole("paging by next disagrees: " + next);
+                    }
+                }
+            }
+            result.setPaginationInfo(info);
         }
-        LogUtil.addTimingInfo(stPaging, timingInfo, "Pagination");
-
-        result.setMarkupInfo(contentExtractor.getMarkupParser().getMarkupInfo());
-        timingInfo.setTotalTime(DomUtil.getTime() - startTime);
-        result.setTimingInfo(timingInfo);
-        result.setStatisticsInfo(contentExtractor.getStatisticsInfo());
-        DebugInfo debugInfo = DebugInfo.create();
-        debugInfo.setLog(LogUtil.getAndClearLog());
-        result.setDebugInfo(debugInfo);
-        return result;
     }
 }
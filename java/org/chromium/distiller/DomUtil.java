@@ -31,7 +31,7 @@ public class DomUtil {
      * and manually filtered to exclude event handlers. Last updated
      * on June 12, 2020.
      */
-    private static final HashSet<String> attributeAllowlist = new HashSet<>(Arrays.asList("abbr",
+    static final HashSet<String> attributeAllowlist = new HashSet<>(Arrays.asList("abbr",
             "accept-charset", "accept", "accesskey", "action", "align", "alink", "allow",
             "allowfullscreen", "allowpaymentrequest", "alt", "archive", "as", "async",
             "autocapitalize", "autocomplete", "autocorrect", "autofocus", "autoplay",
@@ -63,6 +63,17 @@ public class DomUtil {
             "trusttoken", "type", "usemap", "valign", "value", "valuetype", "version", "vlink",
             "vspace", "virtualkeyboardpolicy", "webkitdirectory", "width", "wrap"));
 
+    // Sanitizes the output of cloneAndProcessList(). It must be initialized after the allowlist.
+    private static final OutputSanitizer LIST_SANITIZER = new OutputSanitizer.Builder()
+            .resolveUrls()
+            .stripIds()
+            .stripStyles()
+            .stripTargets()
+            .stripFontColors()
+            .stripTableBackgroundColors()
+            .restrictImageAttributes()
+            .build();
+
     /**
      * GWT does not provide a way to get a list of all attributes that have been explicitly set on a
      * DOM element (only a way to query the value of a particular attribute). In javascript, this
@@ -155,11 +166,7 @@ public class DomUtil {
     }-*/;
 
     public static boolean isVisible(Element e) {
-        Style style = getComputedStyle(e);
-        double opacity = JavaScript.parseFloat(style.getOpacity());
-        return !(style.getDisplay().equals("none") ||
-                style.getVisibility().equals("hidden") ||
-                opacity == 0.0F);
+        return ComputedStyleCache.get(e).isVisible();
     }
 
     /**
@@ -325,14 +332,7 @@ public class DomUtil {
 
         if (clonedSubtree.getNodeType() != Node.ELEMENT_NODE) return null;
 
-        stripIds(clonedSubtree);
-        makeAllLinksAbsolute(clonedSubtree);
-        stripTargetAttributes(clonedSubtree);
-        stripFontColorAttributes(clonedSubtree);
-        stripTableBackgroundColorAttributes(clonedSubtree);
-        stripStyleAttributes(clonedSubtree);
-        stripImageElements(clonedSubtree);
-        stripAllUnsafeAttributes(clonedSubtree);
+        LIST_SANITIZER.sanitize(clonedSubtree);
 
         return (Element) clonedSubtree;
     }
@@ -396,7 +396,7 @@ public class DomUtil {
             return;
         }
 
-        ImageElement holder = Document.get().createImageElement();
+        ImageElement holder = ie.getOwnerDocument().createImageElement();
         String[] sizes = StringUtil.jsSplit(srcset, ",");
         for(int i = 0; i < sizes.length; i++) {
             String size = StringUtil.jsTrim(sizes[i]);
@@ -599,7 +599,10 @@ public class DomUtil {
         }
     }
 
-    private static void stripUnwantedClassName(Element elem) {
+    /**
+     * Strips the className of |elem|, unless it's wanted, see stripUnwantedClassNames().
+     */
+    public static void stripUnwantedClassName(Element elem) {
         if (elem.getAttribute("class").contains("caption")) {
             elem.setClassName("caption");
         } else {
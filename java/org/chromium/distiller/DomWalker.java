@@ -7,12 +7,23 @@ package org.chromium.distiller;
 import com.google.gwt.dom.client.Element;
 import com.google.gwt.dom.client.Node;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Used to walk the subtree of the DOM rooted at a particular Node. It provides a Visitor interface
  * to allow some processing to be done at each node of the walk.
  */
 public class DomWalker {
     private final Visitor visitor;
+    private final DistillerBudget budget;
+    // The root of the current walk, and the next node to visit (null once it's finished).
+    private Node top;
+    private Node next;
+    // The ancestors of |next| up to |top|, innermost first, when resume() last paused. These are
+    // the nodes whose subtree is being walked.
+    private final List<Node> openNodes = new ArrayList<>();
+    private boolean interrupted;
 
     public interface Visitor {
         /**
@@ -35,13 +46,56 @@ public class DomWalker {
     }
 
     public DomWalker(Visitor v) {
+        this(v, null);
+    }
+
+    /**
+     * @param budget If not null, each visited node is spent from it, and the walk stops once it's
+     * used up. exit() is still called for the nodes whose subtree was being walked, as if the rest
+     * of their children didn't exist.
+     */
+    public DomWalker(Visitor v, DistillerBudget budget) {
         visitor = v;
+        this.budget = budget;
     }
 
     /**
      * Walk the subtree rooted at n.
      */
     public void walk(Node top) {
+        start(top);
+        resume(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Starts a walk of the subtree rooted at |top| that is done by resume(), so that it can be
+     * split into several parts.
+     */
+    public void start(Node top) {
+        this.top = top;
+        next = top;
+        openNodes.clear();
+        interrupted = false;
+    }
+
+    /**
+     * Continues the walk started by start(), for at most |maxNodes| more visited nodes.
+     *
+     * If the DOM changed since the last call so that the next node isn't where the walk left it
+     * (e.g. it was removed, or moved to another parent), the walk can't go on: it's finished
+     * without visiting anything else, exit() is called for the nodes whose subtree was being
+     * walked, and wasInterrupted() returns true.
+     * @return Whether the walk is finished.
+     */
+    public boolean resume(int maxNodes) {
+        if (next != null && !isNextInPlace()) {
+            for (Node p : openNodes) {
+                visitor.exit(p);
+            }
+            next = null;
+            interrupted = true;
+        }
+
         // Conceptually, this maintains a pointer to the currently "walked" node. When first seeing
         // the node, it calls visit() on it. The next node to visit is then (1) the first child, (2)
         // the next sibling, or (3) the next sibling of the first ancestor w/ a next sibling.
@@ -49,34 +103,79 @@ public class DomWalker {
         // Every time the walk "crosses" the "exit" of a node (i.e. when the pointer goes from
         // somewhere in the node's subtree to somewhere outside of that subtree), exit() is called
         // for that node (unless visit() for that node returned false).
-        if (!visitor.visit(top)) return;
-        Node n = top.getFirstChild();
-        if (n != null) {
-            while (n != top) {
-                // shouldExit is used to suppress the exit call for the current node when visit()
-                // returns false.
-                boolean shouldExit = false;
-                if (visitor.visit(n)) {
-                    Node c = n.getFirstChild();
-                    if (c != null) {
-                        n = c;
-                        continue;
+        int numVisited = 0;
+        while (next != null && numVisited < maxNodes) {
+            Node n = next;
+            if (budget != null && !budget.visitNode()) {
+                // Leave the subtrees that are being walked, without visiting |n|.
+                if (n != top) {
+                    for (Node p = n.getParentNode(); p != top; p = p.getParentNode()) {
+                        visitor.exit(p);
                     }
-                    shouldExit = true;
+                    visitor.exit(top);
                 }
-
-                while (n != top) {
-                    if (shouldExit) visitor.exit(n);
-                    Node s = n.getNextSibling();
-                    if (s != null) {
-                        n = s;
-                        break;
-                    }
-                    n = n.getParentNode();
-                    shouldExit = true;
+                next = null;
+                break;
+            }
+            numVisited++;
+            if (visitor.visit(n)) {
+                Node c = n.getFirstChild();
+                if (c != null) {
+                    next = c;
+                    continue;
                 }
+                next = advance(n, true);
+            } else {
+                next = n == top ? null : advance(n, false);
             }
         }
+        StageInstrumentation.addNodesVisited(numVisited);
+        if (next != null) recordOpenNodes();
+        return next == null;
+    }
+
+    /**
+     * @return Whether the walk was finished early because the DOM changed under it.
+     */
+    public boolean wasInterrupted() {
+        return interrupted;
+    }
+
+    private boolean isNextInPlace() {
+        if (next == top) return openNodes.isEmpty();
+        Node n = next;
+        for (Node p : openNodes) {
+            n = n.getParentNode();
+            if (n != p) return false;
+        }
+        return !openNodes.isEmpty();
+    }
+
+    private void recordOpenNodes() {
+        openNodes.clear();
+        if (next == top) return;
+        Node p = next.getParentNode();
+        while (p != top) {
+            openNodes.add(p);
+            p = p.getParentNode();
+        }
+        openNodes.add(top);
+    }
+
+    /**
+     * Moves past the subtree of |n|: exits it (if |shouldExit|) and the ancestors it's the last
+     * descendant of, up to |top|.
+     * @return The next node to visit, or null if the walk is finished.
+     */
+    private Node advance(Node n, boolean shouldExit) {
+        while (n != top) {
+            if (shouldExit) visitor.exit(n);
+            Node s = n.getNextSibling();
+            if (s != null) return s;
+            n = n.getParentNode();
+            shouldExit = true;
+        }
         visitor.exit(top);
+        return null;
     }
 }
@@ -0,0 +1,110 @@
+// Copyright 2016 The Chromium Authors
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.distiller;
+
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A DomWalker.Visitor that forwards a single walk to several visitors. Each visitor sees exactly
+ * the calls it would have seen had it walked its own subtree by itself: the walk descends into a
+ * node as long as one of the visitors wants to, and visitors that declined that node don't hear
+ * about it again until the walk has left it.
+ */
+public class FanOutVisitor implements DomWalker.Visitor {
+    private static class Entry {
+        final DomWalker.Visitor visitor;
+        // The root of the subtree this visitor walks, or null for the whole walk.
+        final Node scope;
+        boolean active;
+        boolean done;
+        // The node whose subtree this visitor declined, if any.
+        Node skipped;
+
+        Entry(DomWalker.Visitor visitor, Node scope) {
+            this.visitor = visitor;
+            this.scope = scope;
+            active = scope == null;
+        }
+
+        boolean isListening() {
+            return active && skipped == null;
+        }
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    /**
+     * Adds a visitor that sees the whole walk.
+     */
+    public void addVisitor(DomWalker.Visitor visitor) {
+        entries.add(new Entry(visitor, null));
+    }
+
+    /**
+     * Adds a visitor that only sees the subtree rooted at |scope|, as if it had walked |scope|.
+     */
+    public void addVisitor(DomWalker.Visitor visitor, Node scope) {
+        entries.add(new Entry(visitor, scope));
+    }
+
+    @Override
+    public boolean visit(Node n) {
+        boolean descend = false;
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            if (!entry.active && !entry.done && entry.scope == n) entry.active = true;
+            if (!entry.isListening()) continue;
+            if (entry.visitor.visit(n)) {
+                descend = true;
+            } else {
+                entry.skipped = n;
+            }
+        }
+        // When no visitor descends, the walker won't call exit() for |n|, so the visitors that
+        // declined it are done with it now.
+        if (!descend) {
+            for (int i = 0; i < entries.size(); i++) {
+                Entry entry = entries.get(i);
+                if (entry.skipped == n) leave(entry, n);
+            }
+        }
+        return descend;
+    }
+
+    @Override
+    public void exit(Node n) {
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            if (entry.skipped == n) {
+                leave(entry, n);
+            } else if (entry.isListening()) {
+                entry.visitor.exit(n);
+                if (entry.scope == n) finish(entry);
+            }
+        }
+    }
+
+    @Override
+    public void skip(Element e) {
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            if (entry.isListening()) entry.visitor.skip(e);
+        }
+    }
+
+    private static void leave(Entry entry, Node n) {
+        entry.skipped = null;
+        if (entry.scope == n) finish(entry);
+    }
+
+    private static void finish(Entry entry) {
+        entry.active = false;
+        entry.done = true;
+    }
+}
@@ -98,6 +98,16 @@ public class LogUtil {
         sDebugLevel = level;
     }
 
+    static void swapState(DistillerContext context) {
+        int debugLevel = sDebugLevel;
+        sDebugLevel = context.debugLevel;
+        context.debugLevel = debugLevel;
+
+        String log = sLogBuilder;
+        sLogBuilder = context.log;
+        context.log = log;
+    }
+
     static String getAndClearLog() {
         String log = sLogBuilder;
         sLogBuilder = "";
@@ -128,14 +128,22 @@ public class MarkupParser {
     }
 
     public MarkupParser(Element root, TimingInfo timingInfo) {
+        this(root, null, timingInfo);
+    }
+
+    /**
+     * Same as above, but the parsers take the markup elements they need from |scanner| if it's not
+     * null, instead of querying the document for them.
+     */
+    public MarkupParser(Element root, PageScanner scanner, TimingInfo timingInfo) {
         mTimingInfo = timingInfo;
         mAccessors = new ArrayList<Accessor>();
         double startTime = DomUtil.getTime();
-        mAccessors.add(new OpenGraphProtocolParserAccessor(root, mTimingInfo));
+        mAccessors.add(new OpenGraphProtocolParserAccessor(root, scanner, mTimingInfo));
         LogUtil.addTimingInfo(startTime, mTimingInfo, "OpenGraphProtocolParser");
 
         startTime = DomUtil.getTime();
-        mAccessors.add(new SchemaOrgParserAccessor(root, mTimingInfo));
+        mAccessors.add(new SchemaOrgParserAccessor(root, scanner, mTimingInfo));
         LogUtil.addTimingInfo(startTime, mTimingInfo, "SchemaOrgParserAccessor");
 
         startTime = DomUtil.getTime();
@@ -40,6 +40,7 @@ public class NodeTree {
 
     public Node cloneSubtree() {
         Node clone = node.cloneNode(false);
+        StageInstrumentation.addClonesProduced(1);
         for (NodeTree child : children) {
             clone.appendChild(child.cloneSubtree());
         }
@@ -54,8 +55,9 @@ public class NodeTree {
      */
     public Node cloneSubtreeRetainDirection() {
         Node clone = node.cloneNode(false);
+        StageInstrumentation.addClonesProduced(1);
         if (node.getNodeType() == Node.ELEMENT_NODE) {
-            String direction = DomUtil.getComputedStyle(Element.as(node)).getProperty("direction");
+            String direction = ComputedStyleCache.get(Element.as(node)).direction;
             if (direction.isEmpty()) {
                 direction = "auto";
             }
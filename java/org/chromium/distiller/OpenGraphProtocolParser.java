@@ -121,9 +121,18 @@ public class OpenGraphProtocolParser {
     }
 
     public static OpenGraphProtocolParser parse(Element root, TimingInfo timingInfo) {
+        return parse(root, null, timingInfo);
+    }
+
+    /**
+     * Same as above, but takes the META and HEAD elements from |scanner| if it's not null, instead
+     * of querying the document for them.
+     */
+    public static OpenGraphProtocolParser parse(Element root, PageScanner scanner,
+            TimingInfo timingInfo) {
         try {
             double startTime = DomUtil.getTime();
-            OpenGraphProtocolParser og = new OpenGraphProtocolParser(root, timingInfo);
+            OpenGraphProtocolParser og = new OpenGraphProtocolParser(root, scanner, timingInfo);
             LogUtil.addTimingInfo(startTime, timingInfo, "OpenGraphProtocolParser.parse");
             return og;
         } catch (Exception e) {
@@ -137,17 +146,18 @@ public class OpenGraphProtocolParser {
      * @throws Exception if the properties do not conform to the protocol i.e. not all required
      * properties exist.
      */
-    private OpenGraphProtocolParser(Element root, TimingInfo timingInfo) throws Exception {
+    private OpenGraphProtocolParser(Element root, PageScanner scanner, TimingInfo timingInfo)
+            throws Exception {
         mPropertyTable = new HashMap<String, String>();
         mPrefixes = new EnumMap<Prefix, String>(Prefix.class);
         mTimingInfo = timingInfo;
 
         double startTime = DomUtil.getTime();
-        findPrefixes(root);
+        findPrefixes(root, scanner);
         LogUtil.addTimingInfo(startTime, mTimingInfo, "OpenGraphProtocolParser.findPrefixes");
 
         startTime = DomUtil.getTime();
-        parseMetaTags(root);
+        parseMetaTags(root, scanner);
         LogUtil.addTimingInfo(startTime, mTimingInfo, "OpenGraphProtocolParser.parseMetaTags");
 
         startTime = DomUtil.getTime();
@@ -183,7 +193,7 @@ public class OpenGraphProtocolParser {
     // Doing attribute prefix filtering is usually faster than not.
     private static final boolean doPrefixFiltering = true;
 
-    private void findPrefixes(Element root) {
+    private void findPrefixes(Element root, PageScanner scanner) {
         String prefixes = "";
 
         // See if HTML tag has "prefix" attribute.
@@ -191,9 +201,14 @@ public class OpenGraphProtocolParser {
 
         // Otherwise, see if HEAD tag has "prefix" attribute.
         if (prefixes.isEmpty()) {
-            NodeList<Element> heads = root.getElementsByTagName("HEAD");
-            if (heads.getLength() == 1)
-                prefixes = heads.getItem(0).getAttribute("prefix");
+            if (scanner != null) {
+                Element head = scanner.getSingleHeadElement();
+                if (head != null) prefixes = head.getAttribute("prefix");
+            } else {
+                NodeList<Element> heads = root.getElementsByTagName("HEAD");
+                if (heads.getLength() == 1)
+                    prefixes = heads.getItem(0).getAttribute("prefix");
+            }
         }
 
         // If there's "prefix" attribute, its value is something like
@@ -256,7 +271,24 @@ public class OpenGraphProtocolParser {
         if (mPrefixes.get(Prefix.ARTICLE) == null) mPrefixes.put(Prefix.ARTICLE, ARTICLE_OBJTYPE);
     }
 
-    private void parseMetaTags(Element root) {
+    private void parseMetaTags(Element root, PageScanner scanner) {
+        if (scanner != null) {
+            // The scanner collects "meta[property]", so apply the same prefix filtering as the
+            // query below (note that "^=" is case-sensitive).
+            List<Element> allMeta = new ArrayList<Element>();
+            for (Element meta : scanner.getMetaElements()) {
+                String property = meta.getAttribute("property");
+                for (String prefix : mPrefixes.values()) {
+                    if (property.startsWith(prefix)) {
+                        allMeta.add(meta);
+                        break;
+                    }
+                }
+            }
+            parseMetaTags(allMeta);
+            return;
+        }
+
         NodeList<Element> allMeta = null;
         if (doPrefixFiltering) {
             // Attribute selectors with prefix
@@ -272,8 +304,16 @@ public class OpenGraphProtocolParser {
             allMeta = DomUtil.querySelectorAll(root, "meta[property]");
         }
 
+        List<Element> metaList = new ArrayList<Element>();
         for (int i = 0; i < allMeta.getLength(); i++) {
-            MetaElement meta = MetaElement.as(allMeta.getItem(i));
+            metaList.add(allMeta.getItem(i));
+        }
+        parseMetaTags(metaList);
+    }
+
+    private void parseMetaTags(List<Element> allMeta) {
+        for (int i = 0; i < allMeta.size(); i++) {
+            MetaElement meta = MetaElement.as(allMeta.get(i));
             String property = meta.getAttribute("property").toLowerCase();
 
             // Only store properties that we care about for distillation.
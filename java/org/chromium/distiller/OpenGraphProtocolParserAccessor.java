@@ -7,6 +7,7 @@ public class OpenGraphProtocolParserAccessor implements MarkupParser.Accessor {
 
     private final Element mRoot;
     private final DomDistillerProtos.TimingInfo mTimingInfo;
+    private final PageScanner mScanner;
 
     private OpenGraphProtocolParser mParser;
     private boolean initialized;
@@ -18,7 +19,14 @@ public class OpenGraphProtocolParserAccessor implements MarkupParser.Accessor {
     public OpenGraphProtocolParserAccessor(Element root,
                                            DomDistillerProtos.TimingInfo
                                                    timingInfo) {
+        this(root, null, timingInfo);
+    }
+
+    public OpenGraphProtocolParserAccessor(Element root, PageScanner scanner,
+                                           DomDistillerProtos.TimingInfo
+                                                   timingInfo) {
         mRoot = root;
+        mScanner = scanner;
         mTimingInfo = timingInfo;
         initialized = false;
     }
@@ -32,7 +40,7 @@ public class OpenGraphProtocolParserAccessor implements MarkupParser.Accessor {
      */
     private boolean init() {
         if (!initialized) {
-            mParser = OpenGraphProtocolParser.parse(mRoot, mTimingInfo);
+            mParser = OpenGraphProtocolParser.parse(mRoot, mScanner, mTimingInfo);
             initialized = true;
         }
         return mParser != null;
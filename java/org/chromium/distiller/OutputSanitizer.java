@@ -0,0 +1,248 @@
+// Copyright 2016 The Chromium Authors
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.distiller;
+
+import com.google.gwt.core.client.JsArray;
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.ImageElement;
+import com.google.gwt.dom.client.Node;
+import com.google.gwt.dom.client.NodeList;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Sanitizes the output of the distiller in a single traversal. The rules of the strip and
+ * makeAbsolute functions of DomUtil are applied to each element in turn: the URLs of the element
+ * are made absolute, its className is stripped, and the attributes that aren't in the allowlist
+ * of its tag are removed. The allowlists are computed once, when the sanitizer is built, from the
+ * attributes each tag has to lose.
+ */
+public class OutputSanitizer {
+    // The attributes images keep, see DomUtil.stripImageElement().
+    private static final Set<String> IMAGE_ATTRIBUTES = new HashSet<>(Arrays.asList(
+            "src", "alt", "srcset", "dir", "width", "height", "title"));
+    private static final String[] TABLE_TAGS = {"TABLE", "TR", "TD", "TH"};
+
+    /**
+     * Makes the URLs in srcset attributes absolute, like DomUtil.makeAllSrcSetAbsolute(), with an
+     * image element of |document| that is shared by the elements of one sanitize() call. The
+     * image has to belong to the document of the elements, so that their URLs are resolved
+     * against its base URL, like the href and src properties are.
+     */
+    private static class SrcSetResolver {
+        private final Document document;
+        private ImageElement holder;
+
+        SrcSetResolver(Document document) {
+            this.document = document;
+        }
+
+        /**
+         * Resolves the srcset of |e|, or removes it if it's empty.
+         */
+        void resolve(Element e) {
+            String srcset = e.getAttribute("srcset");
+            if (srcset.isEmpty()) {
+                e.removeAttribute("srcset");
+                return;
+            }
+
+            if (holder == null) holder = document.createImageElement();
+            String[] sizes = StringUtil.jsSplit(srcset, ",");
+            for (int i = 0; i < sizes.length; i++) {
+                String size = StringUtil.jsTrim(sizes[i]);
+                if (size.isEmpty()) continue;
+                String[] comp = size.split(" ");
+                holder.setSrc(comp[0]);
+                comp[0] = holder.getSrc();
+                sizes[i] = StringUtil.join(comp, " ");
+            }
+            e.setAttribute("srcset", StringUtil.join(sizes, ", "));
+        }
+    }
+
+    public static class Builder {
+        private boolean mResolveUrls;
+        private boolean mStripIds;
+        private boolean mStripStyles;
+        private boolean mStripTargets;
+        private boolean mStripFontColors;
+        private boolean mStripTableBackgroundColors;
+        private boolean mStripUnwantedClassNames;
+        private boolean mRestrictImageAttributes;
+
+        /**
+         * Makes all links, video posters, sources and srcsets absolute, like
+         * DomUtil.makeAllLinksAbsolute().
+         */
+        public Builder resolveUrls() {
+            mResolveUrls = true;
+            return this;
+        }
+
+        public Builder stripIds() {
+            mStripIds = true;
+            return this;
+        }
+
+        public Builder stripStyles() {
+            mStripStyles = true;
+            return this;
+        }
+
+        public Builder stripTargets() {
+            mStripTargets = true;
+            return this;
+        }
+
+        public Builder stripFontColors() {
+            mStripFontColors = true;
+            return this;
+        }
+
+        public Builder stripTableBackgroundColors() {
+            mStripTableBackgroundColors = true;
+            return this;
+        }
+
+        public Builder stripUnwantedClassNames() {
+            mStripUnwantedClassNames = true;
+            return this;
+        }
+
+        /**
+         * Only keeps the attributes of images that DomUtil.stripImageElement() keeps.
+         */
+        public Builder restrictImageAttributes() {
+            mRestrictImageAttributes = true;
+            return this;
+        }
+
+        public OutputSanitizer build() {
+            Set<String> allowlist = new HashSet<>(DomUtil.attributeAllowlist);
+            if (mStripIds) allowlist.remove("id");
+            if (mStripStyles) allowlist.remove("style");
+
+            Map<String, Set<String>> tagAllowlists = new HashMap<>();
+            if (mStripTargets) addTagAllowlist(tagAllowlists, allowlist, "A", "target");
+            if (mStripFontColors) addTagAllowlist(tagAllowlists, allowlist, "FONT", "color");
+            if (mStripTableBackgroundColors) {
+                for (String tag : TABLE_TAGS) {
+                    addTagAllowlist(tagAllowlists, allowlist, tag, "bgcolor");
+                }
+            }
+            if (mRestrictImageAttributes) {
+                Set<String> imageAllowlist = new HashSet<>(IMAGE_ATTRIBUTES);
+                imageAllowlist.retainAll(allowlist);
+                tagAllowlists.put("IMG", imageAllowlist);
+            }
+            return new OutputSanitizer(
+                    mResolveUrls, mStripUnwantedClassNames, allowlist, tagAllowlists);
+        }
+
+        private static void addTagAllowlist(Map<String, Set<String>> tagAllowlists,
+                Set<String> allowlist, String tagName, String attribute) {
+            Set<String> tagAllowlist = new HashSet<>(allowlist);
+            tagAllowlist.remove(attribute);
+            tagAllowlists.put(tagName, tagAllowlist);
+        }
+    }
+
+    private final boolean resolveUrls;
+    private final boolean stripUnwantedClassNames;
+    private final Set<String> allowlist;
+    private final Map<String, Set<String>> tagAllowlists;
+
+    private OutputSanitizer(boolean resolveUrls, boolean stripUnwantedClassNames,
+            Set<String> allowlist, Map<String, Set<String>> tagAllowlists) {
+        this.resolveUrls = resolveUrls;
+        this.stripUnwantedClassNames = stripUnwantedClassNames;
+        this.allowlist = allowlist;
+        this.tagAllowlists = tagAllowlists;
+    }
+
+    /**
+     * Sanitizes all the elements in the tree rooted at |root|, including root.
+     */
+    public void sanitize(Node root) {
+        SrcSetResolver srcSetResolver = new SrcSetResolver(root.getOwnerDocument());
+        if (root.getNodeType() == Node.ELEMENT_NODE) {
+            sanitizeElement(Element.as(root), srcSetResolver);
+        }
+        NodeList<Element> elements = DomUtil.querySelectorAll(root, "*");
+        for (int i = 0; i < elements.getLength(); i++) {
+            sanitizeElement(elements.getItem(i), srcSetResolver);
+        }
+    }
+
+    /**
+     * Sanitizes |e| alone.
+     */
+    public void sanitizeElement(Element e) {
+        sanitizeElement(e, null);
+    }
+
+    /**
+     * @param srcSetResolver The resolver of the srcsets of the document of |e|, or null to create
+     * one if it's needed.
+     */
+    private void sanitizeElement(Element e, SrcSetResolver srcSetResolver) {
+        String tagName = e.getTagName();
+        if (resolveUrls) {
+            switch (tagName) {
+                case "A":
+                    resolveUrlProperty(e, "href");
+                    break;
+                case "VIDEO":
+                    resolveUrlProperty(e, "poster");
+                    resolveUrlProperty(e, "src");
+                    break;
+                case "IMG":
+                case "SOURCE":
+                case "TRACK":
+                    resolveUrlProperty(e, "src");
+                    break;
+                default:
+                    break;
+            }
+            if (e.hasAttribute("srcset")) {
+                if (srcSetResolver == null) {
+                    srcSetResolver = new SrcSetResolver(e.getOwnerDocument());
+                }
+                srcSetResolver.resolve(e);
+            }
+        }
+        if (stripUnwantedClassNames && e.hasAttribute("class")) {
+            DomUtil.stripUnwantedClassName(e);
+        }
+
+        Set<String> tagAllowlist = tagAllowlists.get(tagName);
+        if (tagAllowlist == null) tagAllowlist = allowlist;
+        JsArray<Node> attrs = DomUtil.getAttributes(e);
+        for (int i = 0; i < attrs.length();) {
+            String name = attrs.get(i).getNodeName();
+            if (!tagAllowlist.contains(name)) {
+                e.removeAttribute(name);
+            } else {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Replaces the value of the URL |property| of |e|, if it's set, with itself. The property
+     * getters return the absolute URL, so this makes the attribute absolute.
+     */
+    private static native void resolveUrlProperty(Element e, String property) /*-{
+        if (e[property]) {
+            e[property] = e[property];
+        }
+    }-*/;
+}
@@ -181,10 +181,8 @@ public class PageParameterDetector {
      */
     public static PageParamInfo detect(MonotonicPageInfosGroups adjacentNumbersGroups,
             String docUrl) {
-        ParsedUrl parsedDocUrl = ParsedUrl.create(docUrl);
+        ParsedUrl parsedDocUrl = UrlCache.parseWithoutCredentials(docUrl);
         if (parsedDocUrl == null) return new PageParamInfo();  // Invalid document URL.
-        parsedDocUrl.setUsername("");
-        parsedDocUrl.setPassword("");
 
         DetectionState detectionState = new DetectionState();
         for (MonotonicPageInfosGroups.Group group : adjacentNumbersGroups.getGroups()) {
@@ -285,11 +283,9 @@ public class PageParameterDetector {
         for (int i = 0; i < ascendingNumbers.size(); i++) {
             final PageParamInfo.PageInfo page = ascendingNumbers.get(i);
             if (!page.mUrl.isEmpty()) {
-                ParsedUrl url = ParsedUrl.create(page.mUrl);
+                ParsedUrl url = UrlCache.parseWithoutCredentials(page.mUrl);
                 parsedUrls[i] = url;
                 if (url == null) continue;
-                url.setUsername("");
-                url.setPassword("");
                 extractPageParamCandidatesFromQuery(url, page.mPageNum, i, pageCandidates);
                 if (page.mPageNum == 1) firstPageUrl = page.mUrl;
             }
@@ -10,7 +10,6 @@ import com.google.gwt.dom.client.AnchorElement;
 import com.google.gwt.dom.client.Document;
 import com.google.gwt.dom.client.Element;
 import com.google.gwt.dom.client.Node;
-import com.google.gwt.dom.client.NodeList;
 import com.google.gwt.dom.client.Style;
 import com.google.gwt.regexp.shared.MatchResult;
 import com.google.gwt.regexp.shared.RegExp;
@@ -56,11 +55,54 @@ public class PageParameterParser {
      * @param timingInfo for tracking performance.
      */
     public static PageParamInfo parse(String originalUrl, TimingInfo timingInfo) {
-        PageParameterParser parser = new PageParameterParser(timingInfo);
-        return parser.parseDocument(Document.get().getDocumentElement(), originalUrl);
+        return parse(Document.get().getDocumentElement(), originalUrl, timingInfo);
     }
 
+    /**
+     * Same as {@link #parse(String, TimingInfo)}, but parses the document rooted at |root| instead
+     * of the current document.
+     */
+    public static PageParamInfo parse(Element root, String originalUrl, TimingInfo timingInfo) {
+        return parse(root, originalUrl, null, timingInfo);
+    }
+
+    /**
+     * Same as above, but takes the anchors and BASE element from |scanner| if it's not null,
+     * instead of querying the document for them.
+     */
+    public static PageParamInfo parse(Element root, String originalUrl, PageScanner scanner,
+            TimingInfo timingInfo) {
+        return parse(root, originalUrl, scanner, timingInfo, null);
+    }
+
+    /**
+     * Same as above, but stops looking at the links once |budget| is used up, if it's not null.
+     */
+    public static PageParamInfo parse(Element root, String originalUrl, PageScanner scanner,
+            TimingInfo timingInfo, DistillerBudget budget) {
+        return parse(AnchorIndex.create(root, originalUrl, scanner), originalUrl, timingInfo,
+                budget);
+    }
+
+    /**
+     * Same as above, but looks at the anchors of |index|, which can be shared with the other
+     * pagination finders.
+     */
+    public static PageParamInfo parse(AnchorIndex index, String originalUrl, TimingInfo timingInfo,
+            DistillerBudget budget) {
+        PageParameterParser parser = new PageParameterParser(index, timingInfo, budget);
+        // Resolve and parse each distinct URL once, even when not called by DomDistiller.
+        UrlCache.begin();
+        try {
+            return parser.parseDocument(originalUrl);
+        } finally {
+            UrlCache.end();
+        }
+    }
+
+    private final AnchorIndex mAnchorIndex;
     private final TimingInfo mTimingInfo;
+    private final DistillerBudget mBudget;
     private String mDocUrl = "";
     private ParsedUrl mParsedUrl = null;
     private final MonotonicPageInfosGroups mAdjacentNumbersGroups = new MonotonicPageInfosGroups();
@@ -69,28 +111,29 @@ public class PageParameterParser {
     private static RegExp sHrefCleaner = RegExp.compile("\\/$");
     private static RegExp sInvalidParentWrapper = null;
 
-    private PageParameterParser(TimingInfo timingInfo) {
+    private PageParameterParser(AnchorIndex index, TimingInfo timingInfo,
+            DistillerBudget budget) {
+        mAnchorIndex = index;
         mTimingInfo = timingInfo;
+        mBudget = budget;
     }
 
     /**
      * Actually implements PageParameterParser.parse(), see above description for parse().
      */
-    private PageParamInfo parseDocument(Element root, String originalUrl) {
+    private PageParamInfo parseDocument(String originalUrl) {
         double startTime = DomUtil.getTime();
 
         mDocUrl = sHrefCleaner.replace(originalUrl, "");
-        mParsedUrl = ParsedUrl.create(mDocUrl);
+        mParsedUrl = UrlCache.parse(mDocUrl);
         if (mParsedUrl == null) return new PageParamInfo();  // Invalid document URL.
 
-        AnchorElement baseAnchor = PagingLinksFinder.createAnchorWithBase(
-                PagingLinksFinder.getBaseUrlForRelative(root, originalUrl));
-
-        NodeList<Element> allLinks = root.getElementsByTagName("A");
         int idx = 0;
-        while (idx < allLinks.getLength()) {
-            final AnchorElement link = AnchorElement.as(allLinks.getItem(idx));
-            PageInfoAndText pageInfoAndText = getPageInfoAndText(link, baseAnchor);
+        while (idx < mAnchorIndex.size()) {
+            if (mBudget != null && !mBudget.visitNode()) break;
+            final AnchorIndex.Anchor anchor = mAnchorIndex.get(idx);
+            final AnchorElement link = anchor.getElement();
+            PageInfoAndText pageInfoAndText = getPageInfoAndText(anchor);
             if (pageInfoAndText == null) {
                 idx++;
                 continue;
@@ -103,14 +146,14 @@ public class PageParameterParser {
 
             // Before we append the link to the new group of adjacent numbers, check if it's
             // preceded by a text node with numeric text; if so, add it before the link.
-            findAndAddClosestValidLeafNodes(link, false, true, null);
+            findAndAddClosestValidLeafNodes(link, false, true);
 
             // Add the link to the current group of adjacent numbers.
             mAdjacentNumbersGroups.addPageInfo(pageInfoAndText.mPageInfo);
 
             // Add all following text nodes and links with numeric text.
             mNumForwardLinksProcessed = 0;
-            findAndAddClosestValidLeafNodes(link, false, false, baseAnchor);
+            findAndAddClosestValidLeafNodes(link, false, false);
 
             // Skip the current link and links already processed in the forward
             // findandAddClosestValidLeafNodes().
@@ -132,37 +175,37 @@ public class PageParameterParser {
      * Otherwise, returns null if link is to be ignored.
      * "javascript:" links with numeric text are considered valid links to be added.
      *
-     * @param link to process.
-     * @param baseAnchor created for the current document.
+     * @param anchor to process.
      */
-    private PageInfoAndText getPageInfoAndText(AnchorElement link, AnchorElement baseAnchor) {
+    private PageInfoAndText getPageInfoAndText(AnchorIndex.Anchor anchor) {
         // Ignore invisible links.
-        if (!DomUtil.isVisible(link)) return null;
+        if (!anchor.isVisible()) return null;
 
         // Use javascript innerText (instead of javascript textContent) to only get visible text.
-        String linkText = StringUtil.jsTrim(DomUtil.getInnerText(link));
-        int number = linkTextToNumber(linkText);
+        String linkText = anchor.getTrimmedText();
+        int number = anchor.getPageNumber();
         if (!isPlainPageNumber(number)) return null;
 
-        String linkHref = resolveLinkHref(link, baseAnchor);
+        // Anchors without "href" attribute are not considered potential pagination links.
+        String linkHref = anchor.getHref().isEmpty() ? "" : anchor.getResolvedHref();
         final boolean isEmptyHref = linkHref.isEmpty();
         boolean isJavascriptLink = false;
         ParsedUrl url = null;
         if (!isEmptyHref) {
             isJavascriptLink = isJavascriptHref(linkHref);
-            url = ParsedUrl.create(linkHref);
+            url = UrlCache.parse(linkHref);
             if (url == null ||
                     (!isJavascriptLink && !url.getHost().equalsIgnoreCase(mParsedUrl.getHost()))) {
                 return null;
             }
-            url.setHash("");
         }
 
-        if (isEmptyHref || isJavascriptLink || isDisabledLink(link)) {
+        if (isEmptyHref || isJavascriptLink || isDisabledLink(anchor.getElement())) {
             return new PageInfoAndText(number, "", linkText);
         }
 
-        return new PageInfoAndText(number, sHrefCleaner.replace(url.toString(), ""), linkText);
+        return new PageInfoAndText(number, sHrefCleaner.replace(url.getHrefWithoutHash(), ""),
+                linkText);
     }
 
     /**
@@ -186,10 +229,9 @@ public class PageParameterParser {
      * start node is checked.
      * @param backward true to search backward (i.e. nodes before start node), false to search
      * forward (i.e. nodes after start node).
-     * @param baseAnchor created for the current document, only needed for forward search.
      */
     private boolean findAndAddClosestValidLeafNodes(Node start, boolean checkStart,
-            boolean backward, AnchorElement baseAnchor) {
+            boolean backward) {
         Node node = checkStart ? start :
                 (backward ? start.getPreviousSibling() : start.getNextSibling());
         if (node == null) {  // No sibling, try parent.
@@ -198,7 +240,7 @@ public class PageParameterParser {
                 sInvalidParentWrapper = RegExp.compile("(BODY)|(HTML)");
             }
             if (sInvalidParentWrapper.test(node.getNodeName())) return false;
-            return findAndAddClosestValidLeafNodes(node, false, backward, baseAnchor);
+            return findAndAddClosestValidLeafNodes(node, false, backward);
         }
 
         checkStart = false;
@@ -220,7 +262,7 @@ public class PageParameterParser {
                     if (backward) return false;
                     // For forward search, we're done only if link was invalid, otherwise continue.
                     mNumForwardLinksProcessed++;
-                    if (!addLinkIfValid(AnchorElement.as(e), baseAnchor)) return false;
+                    if (!addLinkIfValid(mAnchorIndex.get(e))) return false;
                     break;
                 }
                 // Intentionally fall through.
@@ -241,7 +283,7 @@ public class PageParameterParser {
                 break;
         }
 
-        return findAndAddClosestValidLeafNodes(node, checkStart, backward, baseAnchor);
+        return findAndAddClosestValidLeafNodes(node, checkStart, backward);
     }
 
     private static RegExp sTermsRegExp = null;  // Match terms i.e. words.
@@ -307,8 +349,8 @@ public class PageParameterParser {
      *
      * @Return true if link was added, false otherwise.
      */
-    private boolean addLinkIfValid(AnchorElement link, AnchorElement baseAnchor) {
-        PageInfoAndText pageInfoAndText = getPageInfoAndText(link, baseAnchor);
+    private boolean addLinkIfValid(AnchorIndex.Anchor anchor) {
+        PageInfoAndText pageInfoAndText = getPageInfoAndText(anchor);
         if (pageInfoAndText != null) {
             mAdjacentNumbersGroups.addPageInfo(pageInfoAndText.mPageInfo);
             return true;
@@ -332,20 +374,6 @@ public class PageParameterParser {
         return href.startsWith("javascript:");
     }
 
-    private static String resolveLinkHref(AnchorElement link, AnchorElement baseAnchor) {
-        // Anchors without "href" attribute are not considered potential pagination links.
-        String linkHref = link.getAttribute("href");
-        if (linkHref.isEmpty()) return "";
-        baseAnchor.setAttribute("href", linkHref);
-        return baseAnchor.getHref();
-    }
-
-    private static int linkTextToNumber(String linkText) {
-        linkText = linkText.replaceAll("[()\\[\\]{}]", "");
-        linkText = linkText.trim();  // Remove leading and trailing white spaces.
-        return StringUtil.toNumber(linkText);
-    }
-
     /**
      * @returns true if number is >= 0 && < MAX_NUM_FOR_PAGE_PARAM.
      */
@@ -0,0 +1,136 @@
+// Copyright 2016 The Chromium Authors
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.distiller;
+
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This DomWalker.Visitor collects, in document order, the elements that the markup parsers and
+ * the pagination finders would otherwise look up with their own querySelectorAll() or
+ * getElementsByTagName() scans of the whole document. It also picks the WordCounter from the text
+ * nodes it sees, which replaces reading the text content of the whole document up front.
+ *
+ * It is meant to be run with a FanOutVisitor alongside the DomConverter, so that a single walk of
+ * the document feeds every consumer.
+ */
+public class PageScanner implements DomWalker.Visitor {
+    private final Element root;
+    private final List<Element> metaElements = new ArrayList<>();
+    private final List<Element> itemElements = new ArrayList<>();
+    private final List<Element> authorLinks = new ArrayList<>();
+    private final List<Element> anchors = new ArrayList<>();
+    private int numHeadElements = 0;
+    private Element firstHeadElement = null;
+    private Element firstBaseElement = null;
+
+    /**
+     * @param root The root of the walk, usually the document element.
+     */
+    public PageScanner(Element root) {
+        this.root = root;
+    }
+
+    /**
+     * Resets the WordCounter to the fastest one. It is then upgraded as text that needs a slower
+     * counter is found, see StringUtil.upgradeWordCounter().
+     */
+    public void resetWordCounter() {
+        StringUtil.setWordCounter("");
+    }
+
+    @Override
+    public boolean visit(Node n) {
+        switch (n.getNodeType()) {
+            case Node.TEXT_NODE:
+                StringUtil.upgradeWordCounter(n.getNodeValue());
+                return false;
+            case Node.ELEMENT_NODE:
+                visitElement(Element.as(n));
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void visitElement(Element e) {
+        String tagName = e.getTagName();
+        switch (tagName) {
+            case "META":
+                if (e.hasAttribute("property")) metaElements.add(e);
+                break;
+            case "HEAD":
+                numHeadElements++;
+                if (firstHeadElement == null) firstHeadElement = e;
+                break;
+            case "BASE":
+                if (firstBaseElement == null) firstBaseElement = e;
+                break;
+            case "A":
+                anchors.add(e);
+                // Fall through.
+            case "LINK":
+                if (e.getAttribute("rel").equalsIgnoreCase("author")) authorLinks.add(e);
+                break;
+        }
+        // Like querySelectorAll(), don't include the root of the walk.
+        if (e != root && (e.hasAttribute("itemprop") || e.hasAttribute("itemscope"))) {
+            itemElements.add(e);
+        }
+    }
+
+    @Override
+    public void exit(Node n) {
+    }
+
+    @Override
+    public void skip(Element e) {
+    }
+
+    /**
+     * @return META elements with a "property" attribute, i.e. "meta[property]".
+     */
+    public List<Element> getMetaElements() {
+        return metaElements;
+    }
+
+    /**
+     * @return The single HEAD element, or null if there is none or more than one.
+     */
+    public Element getSingleHeadElement() {
+        return numHeadElements == 1 ? firstHeadElement : null;
+    }
+
+    /**
+     * @return The first BASE element, or null if there is none.
+     */
+    public Element getFirstBaseElement() {
+        return firstBaseElement;
+    }
+
+    /**
+     * @return Elements below the root with an "itemprop" or "itemscope" attribute.
+     */
+    public List<Element> getItemElements() {
+        return itemElements;
+    }
+
+    /**
+     * @return A and LINK elements with rel="author".
+     */
+    public List<Element> getAuthorLinks() {
+        return authorLinks;
+    }
+
+    /**
+     * @return All A elements.
+     */
+    public List<Element> getAnchors() {
+        return anchors;
+    }
+}
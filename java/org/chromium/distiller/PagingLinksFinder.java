@@ -20,8 +20,10 @@ import com.google.gwt.dom.client.Element;
 import com.google.gwt.dom.client.NodeList;
 import com.google.gwt.regexp.shared.RegExp;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -60,8 +62,45 @@ public class PagingLinksFinder {
     private static final RegExp REG_NUMBER = RegExp.compile("\\d");
 
     public static DomDistillerProtos.PaginationInfo getPaginationInfo(String original_url) {
+        return getPaginationInfo(Document.get().getDocumentElement(), original_url);
+    }
+
+    /**
+     * @param root The document element of the page being processed.
+     * @param original_url The original url of the page being processed.
+     * @return The pagination info for the document rooted at |root|.
+     */
+    public static DomDistillerProtos.PaginationInfo getPaginationInfo(
+            Element root, String original_url) {
+        return getPaginationInfo(root, original_url, null);
+    }
+
+    /**
+     * Same as above, but takes the anchors and BASE element from |scanner| if it's not null,
+     * instead of querying the document for them.
+     */
+    public static DomDistillerProtos.PaginationInfo getPaginationInfo(
+            Element root, String original_url, PageScanner scanner) {
+        return getPaginationInfo(root, original_url, scanner, null);
+    }
+
+    /**
+     * Same as above, but stops looking at the links once |budget| is used up, if it's not null.
+     */
+    public static DomDistillerProtos.PaginationInfo getPaginationInfo(
+            Element root, String original_url, PageScanner scanner, DistillerBudget budget) {
+        return getPaginationInfo(
+                AnchorIndex.create(root, original_url, scanner), original_url, budget);
+    }
+
+    /**
+     * Same as above, but looks at the anchors of |index|, which can be shared with the other
+     * pagination finders.
+     */
+    public static DomDistillerProtos.PaginationInfo getPaginationInfo(
+            AnchorIndex index, String original_url, DistillerBudget budget) {
         DomDistillerProtos.PaginationInfo info = DomDistillerProtos.PaginationInfo.create();
-        String next = findNext(Document.get().getDocumentElement(), original_url);
+        String next = findPagingLink(index, original_url, PageLink.NEXT, budget);
         if (next != null) {
             info.setNextPage(next);
         }
@@ -73,7 +112,14 @@ public class PagingLinksFinder {
      * @return The next page link for the document.
      */
     public static String findNext(Element root, String original_url) {
-        return findPagingLink(root, original_url, PageLink.NEXT);
+        return findNext(AnchorIndex.create(root, original_url, null), original_url);
+    }
+
+    /**
+     * Same as above, but looks at the anchors of |index|.
+     */
+    public static String findNext(AnchorIndex index, String original_url) {
+        return findPagingLink(index, original_url, PageLink.NEXT, null);
     }
 
     /**
@@ -81,10 +127,29 @@ public class PagingLinksFinder {
      * @return The previous page link for the document.
      */
     public static String findPrevious(Element root, String original_url) {
-        return findPagingLink(root, original_url, PageLink.PREV);
+        return findPrevious(AnchorIndex.create(root, original_url, null), original_url);
+    }
+
+    /**
+     * Same as above, but looks at the anchors of |index|.
+     */
+    public static String findPrevious(AnchorIndex index, String original_url) {
+        return findPagingLink(index, original_url, PageLink.PREV, null);
     }
 
-    private static String findPagingLink(Element root, String original_url, PageLink pageLink) {
+    private static String findPagingLink(AnchorIndex index, String original_url,
+            PageLink pageLink, DistillerBudget budget) {
+        // Resolve and parse each distinct URL once, even when not called by DomDistiller.
+        UrlCache.begin();
+        try {
+            return findPagingLinkInIndex(index, original_url, pageLink, budget);
+        } finally {
+            UrlCache.end();
+        }
+    }
+
+    private static String findPagingLinkInIndex(AnchorIndex index, String original_url,
+            PageLink pageLink, DistillerBudget budget) {
         // findPagingLink() is static, so clear mLinkDebugInfo before processing the links.
         if (LogUtil.isLoggable(LogUtil.DEBUG_LEVEL_PAGING_INFO)) {
             mLinkDebugInfo.clear();
@@ -95,12 +160,9 @@ public class PagingLinksFinder {
         // Remove trailing '/' from window location href, because it'll be used to compare with
         // other href's whose trailing '/' are also removed.
         String wndLocationHref = StringUtil.findAndReplace(original_url, "\\/$", "");
-        NodeList<Element> allLinks = root.getElementsByTagName("A");
         Set<PagingLinkObj> possiblePages = new HashSet<PagingLinkObj>();
         Set<String> bannedUrls = new HashSet<String>();
 
-        AnchorElement baseAnchor = createAnchorWithBase(getBaseUrlForRelative(root, original_url));
-
         // The trailing "/" is essential to ensure the whole hostname is matched, and not just the
         // prefix of the hostname. It also maintains the requirement of having a "path" in the URL.
         String allowedPrefix = getScheme(original_url) + "://" + getHostname(original_url) + "/";
@@ -111,12 +173,14 @@ public class PagingLinksFinder {
         // node with a page-y className or id.
         // Also possible: levenshtein distance? longest common subsequence?
         // After we do that, assign each page a score.
-        for (int i = 0; i < allLinks.getLength(); i++) {
-            AnchorElement link = AnchorElement.as(allLinks.getItem(i));
+        for (int i = 0; i < index.size(); i++) {
+            if (budget != null && !budget.visitNode()) break;
+            AnchorIndex.Anchor anchor = index.get(i);
+            AnchorElement link = anchor.getElement();
 
-            // Note that AnchorElement.getHref() returns the absolute URI, so there's no need to
-            // worry about relative links.
-            String linkHref = resolveLinkHref(link, baseAnchor);
+            // The href is resolved against the base URL, so there's no need to worry about
+            // relative links.
+            String linkHref = anchor.getResolvedHref();
 
             if (pageLink == PageLink.NEXT) {
                 if (!regPrefixNum.test(linkHref)) {
@@ -137,7 +201,7 @@ public class PagingLinksFinder {
                 continue;
             }
 
-            if (!DomUtil.isVisible(link)) {
+            if (!anchor.isVisible()) {
                 appendDbgStrForLink(link, "ignored: invisible");
                 continue;
             }
@@ -160,7 +224,7 @@ public class PagingLinksFinder {
 
             // Use javascript innerText (instead of javascript textContent) to only get visible
             // text.
-            String linkText = DomUtil.getInnerText(link);
+            String linkText = anchor.getText();
 
             // If the linkText looks like it's not the next or previous page, skip it.
             if (linkText.length() > 25) {
@@ -208,7 +272,7 @@ public class PagingLinksFinder {
 
             // Concatenate the link text with class name and id, and determine the score based on
             // existence of various paging-related words.
-            String linkData = linkText + " " + link.getAttribute("class") + " " + link.getId();
+            String linkData = linkText + " " + anchor.getClassAndId();
             appendDbgStrForLink(link, "txt+class+id=" + linkData);
             if (pageLink == PageLink.NEXT ? REG_NEXT_LINK.test(linkData)
                                           : REG_PREV_LINK.test(linkData)) {
@@ -335,28 +399,47 @@ public class PagingLinksFinder {
         String pagingHref = null;
         if (topPage != null) {
             pagingHref = StringUtil.findAndReplace(topPage.mLinkHref, "\\/$", "");
-            appendDbgStrForLink(allLinks.getItem(topPage.mLinkIndex), "found: score=" +
+            appendDbgStrForLink(index.get(topPage.mLinkIndex).getElement(), "found: score=" +
                     topPage.mScore + ", txt=[" + topPage.mLinkText + "], " + pagingHref);
         }
 
         if (LogUtil.isLoggable(LogUtil.DEBUG_LEVEL_PAGING_INFO)) {
-            logDbgInfoToConsole(pageLink, pagingHref, allLinks);
+            logDbgInfoToConsole(pageLink, pagingHref, index);
         }
 
         return pagingHref;
     }
 
+    /**
+     * @return All the A elements under |root|, in document order.
+     */
+    public static List<Element> getAllLinks(Element root) {
+        NodeList<Element> links = root.getElementsByTagName("A");
+        List<Element> allLinks = new ArrayList<Element>(links.getLength());
+        for (int i = 0; i < links.getLength(); i++) {
+            allLinks.add(links.getItem(i));
+        }
+        return allLinks;
+    }
+
     public static String getBaseUrlForRelative(Element root, String original_url) {
         NodeList<Element> bases = root.getElementsByTagName("BASE");
-        if (bases.getLength() == 0) {
+        return getBaseUrlForBaseElement(bases.getLength() == 0 ? null : bases.getItem(0),
+                original_url);
+    }
+
+    /**
+     * @param base The first BASE element of the document, or null if there is none.
+     */
+    public static String getBaseUrlForBaseElement(Element base, String original_url) {
+        if (base == null) {
             return original_url;
         }
         // Note that base.href can also be relative.
         // If multiple <base> elements are specified, only the first href and
         // first target value are used; all others are ignored.
         // Reference: https://developer.mozilla.org/en-US/docs/Web/HTML/Element/base
-        AnchorElement baseAnchor = createAnchorWithBase(original_url);
-        return resolveLinkHref(BaseElement.as(bases.getItem(0)).getAttribute("href"), baseAnchor);
+        return UrlCache.resolve(original_url, BaseElement.as(base).getAttribute("href"));
     }
 
     public static AnchorElement createAnchorWithBase(String base_url) {
@@ -430,7 +513,7 @@ public class PagingLinksFinder {
     }
 
     private static void logDbgInfoToConsole(PageLink pageLink, String pagingHref,
-            NodeList<Element> allLinks) {
+            AnchorIndex index) {
         // This logs the following to the console:
         // - number of links processed
         // - the next or previous page link found
@@ -441,12 +524,12 @@ public class PagingLinksFinder {
         // (TODO)kuan): investigate how to get logging when running "ant test.prod" - currently,
         // nothing appears.  In the meantime, throwing an exception with a log message at suspicious
         // codepoints can produce a call stack and help debugging, albeit tediously.
-        LogUtil.logToConsole("numLinks=" + allLinks.getLength() + ", found " +
+        LogUtil.logToConsole("numLinks=" + index.size() + ", found " +
                 (pageLink == PageLink.NEXT ? "next: " : "prev: ") +
                 (pagingHref != null ? pagingHref : "null"));
 
-        for (int i = 0; i < allLinks.getLength(); i++) {
-            AnchorElement link = AnchorElement.as(allLinks.getItem(i));
+        for (int i = 0; i < index.size(); i++) {
+            AnchorElement link = index.get(i).getElement();
 
             // Use javascript innerText (instead of javascript textContent) to get only visible
             // text.
@@ -483,6 +566,12 @@ public class PagingLinksFinder {
         PREV,
     }
 
-    private static final Map<Element, String> mLinkDebugInfo = new HashMap<Element, String>();
+    private static Map<Element, String> mLinkDebugInfo = new HashMap<Element, String>();
+
+    static void swapState(DistillerContext context) {
+        Map<Element, String> linkDebugInfo = mLinkDebugInfo;
+        mLinkDebugInfo = context.linkDebugInfo;
+        context.linkDebugInfo = linkDebugInfo;
+    }
 
 }
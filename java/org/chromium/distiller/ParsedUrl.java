@@ -60,6 +60,11 @@ public final class ParsedUrl {
             return this.hash;
         }-*/;
 
+        private final native String getHrefWithoutHash() /*-{
+            var hashStart = this.href.indexOf("#");
+            return hashStart < 0 ? this.href : this.href.substring(0, hashStart);
+        }-*/;
+
         private final native String setUsername(String username) /*-{
             this.username = username;
         }-*/;
@@ -161,6 +166,14 @@ public final class ParsedUrl {
         return mUrl.getHash();
     }
 
+    /**
+     * Returns URLUtils.href without the hash, i.e. what it would be after setHash(""), without
+     * modifying this URL.
+     */
+    public final String getHrefWithoutHash() {
+        return mUrl.getHrefWithoutHash();
+    }
+
     /**
     /**
      * Returns a array of components broken down from URLUtils.path without the part after ';'.
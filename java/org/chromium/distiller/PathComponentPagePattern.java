@@ -116,7 +116,7 @@ public class PathComponentPagePattern implements PageParameterDetector.PagePatte
 
         String pattern = urlStr.substring(0, digitStart) +
                 PageParameterDetector.PAGE_PARAM_PLACEHOLDER + urlStr.substring(digitEnd);
-        mUrl = ParsedUrl.create(pattern);
+        mUrl = UrlCache.parse(pattern);
         if (mUrl == null) throw new IllegalArgumentException("Invalid URL: " + pattern);
         mUrlStr = pattern;
         mPageNumber = value;
@@ -153,7 +153,7 @@ public class QueryParamPagePattern implements PageParameterDetector.PagePattern
 
         String pattern = url.replaceQueryValue(isFirstQueryParam, queryName, queryValue,
                 PageParameterDetector.PAGE_PARAM_PLACEHOLDER);
-        mUrl = ParsedUrl.create(pattern);
+        mUrl = UrlCache.parse(pattern);
         if (mUrl == null) throw new IllegalArgumentException("Invalid URL: " + pattern);
         mUrlStr = pattern;
         mPageNumber = value;
@@ -150,9 +150,21 @@ public class SchemaOrgParser {
      * The object that extracts and verifies Schema.org markup tags from |root|.
      */
     public SchemaOrgParser(Element root, TimingInfo timingInfo) {
+        this(root, null, timingInfo);
+    }
+
+    /**
+     * Same as above, but takes the markup elements from |scanner| if it's not null, instead of
+     * querying the document for them.
+     */
+    public SchemaOrgParser(Element root, PageScanner scanner, TimingInfo timingInfo) {
         mTimingInfo = timingInfo;
         double startTime = DomUtil.getTime();
-        parse(root);
+        if (scanner != null) {
+            parse(root, scanner.getItemElements(), scanner.getAuthorLinks());
+        } else {
+            parse(root);
+        }
         LogUtil.addTimingInfo(startTime, mTimingInfo, "SchemaOrgParser.parse");
     }
 
@@ -177,28 +189,42 @@ public class SchemaOrgParser {
     final String getAuthorFromRel() { return mAuthorFromRel; }
 
     private void parse(Element root) {
-        NodeList<Element> allProp = DomUtil.querySelectorAll(root, "[ITEMPROP],[ITEMSCOPE]");
+        parse(root, DomUtil.querySelectorAll(root, "[ITEMPROP],[ITEMSCOPE]"),
+                DomUtil.querySelectorAll(root, "A[rel=author],LINK[rel=author]"));
+    }
 
+    private void parse(Element root, NodeList<Element> allProp, NodeList<Element> authorLinks) {
+        List<Element> props = new ArrayList<Element>();
+        for (int i = 0; i < allProp.getLength(); i++) {
+            props.add(allProp.getItem(i));
+        }
+        List<Element> links = new ArrayList<Element>();
+        for (int i = 0; i < authorLinks.getLength(); i++) {
+            links.add(authorLinks.getItem(i));
+        }
+        parse(root, props, links);
+    }
+
+    private void parse(Element root, List<Element> allProp, List<Element> authorLinks) {
         // Root node (html) is not included in the result of querySelectorAll, so need to
         // handle it explicitly here.
         parseElement(root, null);
 
-        for (int i = 0; i < allProp.getLength(); i++) {
-            Element e = allProp.getItem(i);
+        for (int i = 0; i < allProp.size(); i++) {
+            Element e = allProp.get(i);
             parseElement(e, getItemScopeParent(e));
         }
 
         // As per http://schema.org/author (or http://schema.org/Article and search for "author"
         // property), if <a> or <link> tags specify rel="author", extract it.
-        allProp = DomUtil.querySelectorAll(root, "A[rel=author],LINK[rel=author]");
-        for (int i = 0; i < allProp.getLength(); i++) {
-            Element e = allProp.getItem(i);
+        for (int i = 0; i < authorLinks.size(); i++) {
+            Element e = authorLinks.get(i);
             if (mAuthorFromRel.isEmpty()) mAuthorFromRel = getAuthorFromRelAttribute(e);
         }
     }
 
     // It is assumed the ItemScope parent of Element e is already parsed.
-    // For querySelectorAll(), parent nodes are guaranteed
+    // For querySelectorAll() and PageScanner, parent nodes are guaranteed
     // to appear before child nodes, so this assumption is met.
     private ThingItem getItemScopeParent(Element e) {
         ThingItem parentItem = null;
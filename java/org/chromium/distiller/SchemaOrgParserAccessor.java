@@ -22,6 +22,7 @@ public class SchemaOrgParserAccessor implements MarkupParser.Accessor {
     private SchemaOrgParser mParser;
     private final Element mRoot;
     private final TimingInfo mTimingInfo;
+    private final PageScanner mScanner;
 
     /**
      * The object that instantiates SchemaOrgParser and implements its MarkupParser.Accessor
@@ -32,13 +33,21 @@ public class SchemaOrgParserAccessor implements MarkupParser.Accessor {
     }
 
     public SchemaOrgParserAccessor(Element root, TimingInfo timingInfo) {
+        this(root, null, timingInfo);
+    }
+
+    /**
+     * Same as above, but the parser takes the markup elements from |scanner| if it's not null.
+     */
+    public SchemaOrgParserAccessor(Element root, PageScanner scanner, TimingInfo timingInfo) {
         mRoot = root;
+        mScanner = scanner;
         mTimingInfo = timingInfo;
     }
 
     private void init() {
         if (mParser == null) {
-            mParser = new SchemaOrgParser(mRoot, mTimingInfo);
+            mParser = new SchemaOrgParser(mRoot, mScanner, mTimingInfo);
         }
     }
 
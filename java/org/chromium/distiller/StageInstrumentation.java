@@ -0,0 +1,141 @@
+// Copyright 2016 The Chromium Authors
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.distiller;
+
+import org.chromium.distiller.proto.DomDistillerProtos.InstrumentationInfo;
+import org.chromium.distiller.proto.DomDistillerProtos.StageInfo;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records how long each stage of a distillation takes, and how much work it does: the DOM nodes
+ * it visits, the TextBlocks it merges and the DOM nodes it clones. Unlike the timing log, this
+ * doesn't depend on the debug level, so that the cost of every stage can be reported for every
+ * run.
+ *
+ * Stages are only recorded between begin() and end(), and may be nested. The counts go to the
+ * innermost running stage, and a stage that runs several times is reported once with the sums.
+ */
+public class StageInstrumentation {
+    static class Stage {
+        final String name;
+        double time;
+        int runs;
+        int nodesVisited;
+        int blocksMerged;
+        int clonesProduced;
+        int hits;
+
+        Stage(String name) {
+            this.name = name;
+        }
+    }
+
+    static class RunningStage {
+        final Stage stage;
+        final double startTime;
+
+        RunningStage(Stage stage, double startTime) {
+            this.stage = stage;
+            this.startTime = startTime;
+        }
+    }
+
+    // Null when not recording.
+    private static Map<String, Stage> sStages;
+    private static List<RunningStage> sRunning;
+
+    static void swapState(DistillerContext context) {
+        Map<String, Stage> stages = sStages;
+        sStages = context.stages;
+        context.stages = stages;
+
+        List<RunningStage> running = sRunning;
+        sRunning = context.runningStages;
+        context.runningStages = running;
+    }
+
+    public static void begin() {
+        assert sStages == null;
+        sStages = new LinkedHashMap<>();
+        sRunning = new ArrayList<>();
+    }
+
+    /**
+     * Stops recording, and adds the recorded stages to |info|. Stages that are still running (e.g.
+     * because of an exception) are reported with the runs they finished.
+     */
+    public static void end(InstrumentationInfo info) {
+        assert sStages != null;
+        for (Stage stage : sStages.values()) {
+            StageInfo stageInfo = info.addStages();
+            stageInfo.setName(stage.name);
+            stageInfo.setTime(stage.time);
+            stageInfo.setRuns(stage.runs);
+            stageInfo.setNodesVisited(stage.nodesVisited);
+            stageInfo.setBlocksMerged(stage.blocksMerged);
+            stageInfo.setClonesProduced(stage.clonesProduced);
+            stageInfo.setHits(stage.hits);
+        }
+        sStages = null;
+        sRunning = null;
+    }
+
+    public static boolean isActive() {
+        return sStages != null;
+    }
+
+    /**
+     * Starts a run of the stage |name|, which ends with the next stop() that isn't matched by a
+     * nested start().
+     */
+    public static void start(String name) {
+        if (sStages == null) return;
+        Stage stage = sStages.get(name);
+        if (stage == null) {
+            stage = new Stage(name);
+            sStages.put(name, stage);
+        }
+        sRunning.add(new RunningStage(stage, DomUtil.getTime()));
+    }
+
+    public static void stop() {
+        if (sStages == null) return;
+        RunningStage running = sRunning.remove(sRunning.size() - 1);
+        running.stage.time += DomUtil.getTime() - running.startTime;
+        running.stage.runs++;
+    }
+
+    public static void addNodesVisited(int count) {
+        Stage stage = getCurrentStage();
+        if (stage != null) stage.nodesVisited += count;
+    }
+
+    public static void addBlocksMerged(int count) {
+        Stage stage = getCurrentStage();
+        if (stage != null) stage.blocksMerged += count;
+    }
+
+    public static void addClonesProduced(int count) {
+        Stage stage = getCurrentStage();
+        if (stage != null) stage.clonesProduced += count;
+    }
+
+    /**
+     * Counts a run of the current stage that found what it looks for, e.g. an embed.
+     */
+    public static void addHits(int count) {
+        Stage stage = getCurrentStage();
+        if (stage != null) stage.hits += count;
+    }
+
+    private static Stage getCurrentStage() {
+        if (sRunning == null || sRunning.isEmpty()) return null;
+        return sRunning.get(sRunning.size() - 1).stage;
+    }
+}
@@ -67,55 +67,157 @@ public class StringUtil {
 
     public static class FullWordCounter implements WordCounter {
         @Override
-        public native int count(String s) /*-{
-            // The following range includes broader alphabetical letters and Hangul Syllables.
-            var m = s.match(/(\S*[\w\u00C0-\u1FFF\uAC00-\uD7AF]\S*)/g);
-            var c = (m ? m.length : 0);
-            // The following range includes Hiragana, Katakana, and CJK Unified Ideographs.
-            // Hangul Syllables are not included.
-            m = s.match(/([\u3040-\uA4CF])/g);
-            c += Math.ceil((m ? m.length : 0) * 0.55);
-            return c;
-        }-*/;
+        public int count(String s) {
+            // Hangul Syllables are counted like alphabetical words. Hiragana, Katakana and CJK
+            // Unified Ideographs are counted per glyph.
+            return countWordRuns(s, true) + (int) Math.ceil(countCjkGlyphs(s) * 0.55);
+        }
     }
 
     public static class LetterWordCounter implements WordCounter {
         @Override
-        public native int count(String s) /*-{
-            // The following range includes broader alphabetical letters and Hangul Syllables.
-            var m = s.match(/(\S*[\w\u00C0-\u1FFF\uAC00-\uD7AF]\S*)/g);
-            return (m ? m.length : 0);
-        }-*/;
+        public int count(String s) {
+            return countWordRuns(s, true);
+        }
     }
 
     public static class FastWordCounter implements WordCounter {
         @Override
-        public native int count(String s) /*-{
-            // The following range includes broader alphabetical letters.
-            var m = s.match(/(\S*[\w\u00C0-\u1FFF]\S*)/g);
-            return (m ? m.length : 0);
-        }-*/;
+        public int count(String s) {
+            return countWordRuns(s, false);
+        }
+    }
+
+    // The word counters scan the string once instead of matching regexes, which would create an
+    // array of all the words. They give the same counts as these regexes (with the "g" flag):
+    // - Words: /(\S*[\w\u00C0-\u1FFF\uAC00-\uD7AF]\S*)/, without \uAC00-\uD7AF for
+    //   FastWordCounter.
+    // - CJK glyphs: /([\u3040-\uA4CF])/
+    // Like the regexes, they work on UTF-16 code units.
+
+    private static boolean isWordChar(char c, boolean includeHangul) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') ||
+                c == '_' || (c >= '\u00C0' && c <= '\u1FFF') ||
+                (includeHangul && c >= '\uAC00' && c <= '\uD7AF');
+    }
+
+    /**
+     * Whether |c| matches "\s" in javascript.
+     */
+    private static boolean isJsWhitespace(char c) {
+        switch (c) {
+            case ' ':
+            case '\t':
+            case '\n':
+            case '\u000B':
+            case '\f':
+            case '\r':
+            case '\u00A0':
+            case '\u1680':
+            case '\u2028':
+            case '\u2029':
+            case '\u202F':
+            case '\u205F':
+            case '\u3000':
+            case '\uFEFF':
+                return true;
+            default:
+                return c >= '\u2000' && c <= '\u200A';
+        }
+    }
+
+    /**
+     * Counts the matches of the words regex above. A match is a run of non-whitespace that
+     * contains a word char. Since \u1680 is both whitespace and a word char, it also joins the
+     * runs on both of its sides into a single match.
+     */
+    private static int countWordRuns(String s, boolean includeHangul) {
+        int count = 0;
+        int length = s.length();
+        int i = 0;
+        while (i < length) {
+            // Find the end of the run of non-whitespace starting at i.
+            boolean hasWordChar = false;
+            int end = i;
+            for (; end < length; end++) {
+                char c = s.charAt(end);
+                if (isJsWhitespace(c)) break;
+                hasWordChar |= isWordChar(c, includeHangul);
+            }
+            if (end < length && isWordChar(s.charAt(end), includeHangul)) {
+                // The whitespace ending the run is a word char: the match takes it and the run of
+                // non-whitespace after it.
+                count++;
+                end++;
+                while (end < length && !isJsWhitespace(s.charAt(end))) end++;
+                i = end;
+            } else {
+                if (hasWordChar) count++;
+                i = end + 1;
+            }
+        }
+        return count;
+    }
+
+    private static int countCjkGlyphs(String s) {
+        int count = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= '\u3040' && c <= '\uA4CF') count++;
+        }
+        return count;
     }
 
     public static void setWordCounter(String text) {
         sWordCounter = selectWordCounter(text);
     }
 
-    public static WordCounter selectWordCounter(String text) {
-        final RegExp rFull = RegExp.compile("[\\u3040-\\uA4CF]", "g");
-        final RegExp rLetter = RegExp.compile("[\\uAC00-\\uD7AF]", "g");
+    /**
+     * Switches to a slower WordCounter if |text| needs one, but never to a faster one. Feeding
+     * all the pieces of a document to this, starting from setWordCounter(""), ends with the same
+     * counter as setWordCounter() on the whole text. The counters only disagree on text with
+     * characters that make them switch, so words counted along the way are also the same.
+     */
+    public static void upgradeWordCounter(String text) {
+        if (sWordCounter == FULL_WORD_COUNTER) return;
+        WordCounter counter = selectWordCounter(text);
+        if (counter == FULL_WORD_COUNTER || sWordCounter == FAST_WORD_COUNTER) {
+            sWordCounter = counter;
+        }
+    }
 
-        if (rFull.test(text)) {
-            return new FullWordCounter();
-        } else if (rLetter.test(text)) {
-            return new LetterWordCounter();
+    // Compiled once and shared by all distillations. These must not use the "g" flag, since
+    // test() would then resume from the previous match position.
+    private static final RegExp REG_FULL_WORD_COUNTER = RegExp.compile("[\\u3040-\\uA4CF]");
+    private static final RegExp REG_LETTER_WORD_COUNTER = RegExp.compile("[\\uAC00-\\uD7AF]");
+
+    // The counters are stateless, so a single instance of each is reused.
+    private static final WordCounter FULL_WORD_COUNTER = new FullWordCounter();
+    private static final WordCounter LETTER_WORD_COUNTER = new LetterWordCounter();
+    private static final WordCounter FAST_WORD_COUNTER = new FastWordCounter();
+
+    public static WordCounter selectWordCounter(String text) {
+        if (REG_FULL_WORD_COUNTER.test(text)) {
+            return FULL_WORD_COUNTER;
+        } else if (REG_LETTER_WORD_COUNTER.test(text)) {
+            return LETTER_WORD_COUNTER;
         } else {
-            return new FastWordCounter();
+            return FAST_WORD_COUNTER;
         }
     }
 
     // Use the safest version of WordCounter as the default.
-    static WordCounter sWordCounter = new FullWordCounter();
+    static WordCounter sWordCounter = FULL_WORD_COUNTER;
+
+    static WordCounter getDefaultWordCounter() {
+        return FULL_WORD_COUNTER;
+    }
+
+    static void swapState(DistillerContext context) {
+        WordCounter counter = sWordCounter;
+        sWordCounter = context.wordCounter;
+        context.wordCounter = counter;
+    }
 
     public static int countWords(String s) {
         return sWordCounter.count(s);
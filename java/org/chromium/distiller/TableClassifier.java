@@ -103,6 +103,14 @@ public class TableClassifier {
     }
 
     public static Type table(TableElement t) {
+        return table(t, isInsideEditableArea(t));
+    }
+
+    /**
+     * Same as table(t), for callers that already know whether |t| is inside an editable area,
+     * e.g. DomConverter, which keeps track of it while walking the document.
+     */
+    public static Type table(TableElement t, boolean insideEditableArea) {
         sReason = Reason.UNKNOWN;
 
         // The following heuristics are dropped from said url:
@@ -111,14 +119,7 @@ public class TableClassifier {
 
         // 1) Table inside editable area is layout table, different from said url because we ignore
         //    editable areas during distillation.
-        Element parent = t.getParentElement();
-        while (parent != null) {
-            if (parent.hasTagName("INPUT") ||
-                    parent.getAttribute("contenteditable").equalsIgnoreCase("true")) {
-                return logAndReturn(Reason.INSIDE_EDITABLE_AREA, "", Type.LAYOUT);
-            }
-            parent = parent.getParentElement();
-        }
+        if (insideEditableArea) return logAndReturn(Reason.INSIDE_EDITABLE_AREA, "", Type.LAYOUT);
 
         // 2) Table having role="presentation" is layout table.
         String tableRole = t.getAttribute("role").toLowerCase();
@@ -153,7 +154,9 @@ public class TableClassifier {
         // data table), but our eval sets indicate the need to bump these way up to here, because
         // many (old) pages have layout tables that are nested or with <TH>/<CAPTION>s but only 1
         // row or col.
-        if (hasNestedTables(t)) return logAndReturn(Reason.NESTED_TABLE, "", Type.LAYOUT);
+        if (hasOneOfTags(directDescendants, "TABLE")) {
+            return logAndReturn(Reason.NESTED_TABLE, "", Type.LAYOUT);
+        }
 
         // 7) Table having only one row or column is layout table.
         // See comments for #6 about deviation from said url.
@@ -184,8 +187,9 @@ public class TableClassifier {
                 return logAndReturn(Reason.ABBR_HEADERS_SCOPE, "", Type.DATA);
             }
             // c) table cell has <abbr> element as a single child element.
-            NodeList<Element> children = e.getElementsByTagName("*");
-            if (children.getLength() == 1 && children.getItem(0).hasTagName("ABBR")) {
+            Element child = e.getFirstChildElement();
+            if (child != null && child.hasTagName("ABBR") &&
+                    child.getNextSiblingElement() == null && child.getFirstChildElement() == null) {
                 return logAndReturn(Reason.ONLY_HAS_ABBR, "", Type.DATA);
             }
         }
@@ -265,35 +269,53 @@ public class TableClassifier {
         return logAndReturn(Reason.DEFAULT, "", Type.DATA);
     }
 
-    private static boolean hasNestedTables(Element t) {
-        return t.getElementsByTagName("TABLE").getLength() > 0;
+    /**
+     * @return Whether |e| is an editable area, i.e. an <input> or a contenteditable element.
+     */
+    public static boolean isEditableArea(Element e) {
+        return e.hasTagName("INPUT") || e.getAttribute("contenteditable").equalsIgnoreCase("true");
     }
 
+    /**
+     * @return Whether one of the ancestors of |e| is an editable area.
+     */
+    public static boolean isInsideEditableArea(Element e) {
+        Element parent = e.getParentElement();
+        while (parent != null) {
+            if (isEditableArea(parent)) return true;
+            parent = parent.getParentElement();
+        }
+        return false;
+    }
+
+    /**
+     * @return The descendants of |t| that aren't descendants of a table nested in |t|, in document
+     * order. The nested tables themselves are included. They are collected by a single walk that
+     * doesn't enter the nested tables, so each element of the document is only walked by the
+     * classification of its closest table.
+     */
     private static List<Element> getDirectDescendants(Element t) {
         List<Element> directDescendants = new ArrayList<Element>();
-        NodeList<Element> allDescendants = t.getElementsByTagName("*");
-        if (!hasNestedTables(t)) {
-            for (int i = 0; i < allDescendants.getLength(); i++) {
-                directDescendants.add(allDescendants.getItem(i));
-            }
-        } else {
-            for (int i = 0; i < allDescendants.getLength(); i++) {
-                // Check if the current element is a direct descendant of the |t| table element in
-                // question, as opposed to being a descendant of a nested table in |t|.
-                Element e = allDescendants.getItem(i);
-                Element parent = e.getParentElement();
-                while (parent != null) {
-                    if (parent.hasTagName("TABLE")) {
-                        if (parent == t) directDescendants.add(e);
-                        break;
-                    }
-                    parent = parent.getParentElement();
-                }
+        Element e = t.getFirstChildElement();
+        while (e != null) {
+            directDescendants.add(e);
+            Element next = e.hasTagName("TABLE") ? null : e.getFirstChildElement();
+            while (next == null && e != t) {
+                next = e.getNextSiblingElement();
+                e = e.getParentElement();
             }
+            e = next;
         }
         return directDescendants;
     }
 
+    private static boolean hasOneOfTags(List<Element> list, String tagName) {
+        for (Element e : list) {
+            if (e.hasTagName(tagName)) return true;
+        }
+        return false;
+    }
+
     private static boolean hasOneOfElements(List<Element> list, Map<String, Boolean> tags) {
         for (Element e : list) {
             String tagName = e.getTagName();
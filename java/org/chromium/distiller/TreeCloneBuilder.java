@@ -15,6 +15,26 @@ import java.util.List;
  * the NodeListExpander.
  */
 public class TreeCloneBuilder {
+    /**
+     * Makes the shallow clones that a tree clone is built from.
+     */
+    public interface Cloner {
+        /**
+         * @param retainDirection Whether to set the "dir" attribute of the clone of an element to
+         * the element's text directionality, see cloneNode().
+         */
+        Node cloneNode(Node node, boolean retainDirection);
+    }
+
+    private static final Cloner DEFAULT_CLONER = new Cloner() {
+        @Override
+        public Node cloneNode(Node node, boolean retainDirection) {
+            if (retainDirection) return TreeCloneBuilder.cloneNode(node);
+            StageInstrumentation.addClonesProduced(1);
+            return node.cloneNode(false);
+        }
+    };
+
     /**
      * Clone the provided node and attempt to specify text directionality ("dir" attribute).
      * @param node The node to clone.
@@ -22,8 +42,9 @@ public class TreeCloneBuilder {
      */
     public static Node cloneNode(Node node) {
         Node clone = node.cloneNode(false);
+        StageInstrumentation.addClonesProduced(1);
         if (node.getNodeType() == Node.ELEMENT_NODE) {
-            String direction = DomUtil.getComputedStyle(Element.as(node)).getProperty("direction");
+            String direction = ComputedStyleCache.get(Element.as(node)).direction;
             if (direction.isEmpty()) {
                 direction = "auto";
             }
@@ -32,16 +53,16 @@ public class TreeCloneBuilder {
         return clone;
     }
 
-    private static Node cloneChild(Node clone, Node newChild) {
-        Node cl = cloneNode(newChild);
+    private static Node cloneChild(Cloner cloner, Node clone, Node newChild) {
+        Node cl = cloner.cloneNode(newChild, true);
         clone.appendChild(cl);
         return cl;
     }
 
-    private static Node cloneParent(Node clone, Node newParent) {
+    private static Node cloneParent(Cloner cloner, Node clone, Node newParent) {
         Node p = clone.getParentNode();
         if (p == null) {
-            p = cloneNode(newParent);
+            p = cloner.cloneNode(newParent, true);
             p.appendChild(clone);
         }
         return p;
@@ -57,11 +78,16 @@ public class TreeCloneBuilder {
      * @return Root node of cloned tree.
      */
     public static Node buildTreeClone(List<Node> nodes) {
-        if (nodes.size() == 1) {
-            return new NodeTree(nodes.get(0)).cloneSubtree();
-        }
+        return buildTreeClone(nodes, DEFAULT_CLONER);
+    }
+
+    /**
+     * Like buildTreeClone(nodes), but with the clones made by |cloner|.
+     */
+    public static Node buildTreeClone(List<Node> nodes, Cloner cloner) {
         Node n = nodes.get(0);
-        Node clone = n.cloneNode(false);
+        Node clone = cloner.cloneNode(n, false);
+        if (nodes.size() == 1) return clone;
         OrderedNodeMatcher matcher = new OrderedNodeMatcher(nodes);
         while (!matcher.isFinished()) {
             if (matcher.match(n)) {
@@ -71,7 +97,7 @@ public class TreeCloneBuilder {
                 while (!JavaScript.contains(n, matcher.peek())) {
                     n = n.getNextSibling();
                 }
-                clone = cloneChild(clone, n);
+                clone = cloneChild(cloner, clone, n);
                 continue;
             }
             while (true) {
@@ -80,13 +106,13 @@ public class TreeCloneBuilder {
                     s = s.getNextSibling();
                 }
                 if (s != null) {
-                    clone = cloneParent(clone, n.getParentNode());
-                    clone = cloneChild(clone, s);
+                    clone = cloneParent(cloner, clone, n.getParentNode());
+                    clone = cloneChild(cloner, clone, s);
                     n = s;
                     break;
                 }
                 n = n.getParentNode();
-                clone = cloneParent(clone, n);
+                clone = cloneParent(cloner, clone, n);
             }
         }
         while (clone.getParentNode() != null) {
@@ -0,0 +1,126 @@
+// Copyright 2016 The Chromium Authors
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.distiller;
+
+import com.google.gwt.dom.client.AnchorElement;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Memoizes the resolution of links against a base URL and the parsing of URLs, so that the
+ * pagination finders resolve and parse each distinct URL once per distillation, however many
+ * anchors and page patterns share it. Like ComputedStyleCache, the cache is only active between
+ * begin() and end(); outside of that, every call does the work again, including creating the
+ * document that resolves the links. The pagination finders start a run of their own, which joins
+ * the one of the distillation if there's one.
+ *
+ * The cached ParsedUrls are shared, so they must not be modified.
+ */
+public class UrlCache {
+    // The anchor that resolves links against a base URL, and the links it resolved.
+    private static class Base {
+        final AnchorElement anchor;
+        final Map<String, String> hrefs = new HashMap<>();
+
+        Base(String baseUrl) {
+            anchor = PagingLinksFinder.createAnchorWithBase(baseUrl);
+        }
+
+        String resolve(String href) {
+            String resolved = hrefs.get(href);
+            if (resolved == null) {
+                resolved = PagingLinksFinder.resolveLinkHref(href, anchor);
+                hrefs.put(href, resolved);
+            }
+            return resolved;
+        }
+    }
+
+    private static Map<String, Base> sBases;
+    // The values are null for invalid URLs.
+    private static Map<String, ParsedUrl> sParsedUrls;
+    private static Map<String, ParsedUrl> sParsedUrlsWithoutCredentials;
+    private static int sDepth = 0;
+
+    /**
+     * Starts caching, or joins the current run if one is already started.
+     */
+    public static void begin() {
+        if (sDepth++ == 0) {
+            sBases = new HashMap<>();
+            sParsedUrls = new HashMap<>();
+            sParsedUrlsWithoutCredentials = new HashMap<>();
+        }
+    }
+
+    /**
+     * Ends the run started by the matching begin(). The cache is dropped when the outermost run
+     * ends.
+     */
+    public static void end() {
+        assert sDepth > 0;
+        if (--sDepth == 0) {
+            sBases = null;
+            sParsedUrls = null;
+            sParsedUrlsWithoutCredentials = null;
+        }
+    }
+
+    public static boolean isActive() {
+        return sBases != null;
+    }
+
+    /**
+     * Returns |href| resolved against |baseUrl|, like PagingLinksFinder.resolveLinkHref() with an
+     * anchor created for |baseUrl|.
+     */
+    public static String resolve(String baseUrl, String href) {
+        if (sBases == null) return new Base(baseUrl).resolve(href);
+        Base base = sBases.get(baseUrl);
+        if (base == null) {
+            base = new Base(baseUrl);
+            sBases.put(baseUrl, base);
+        }
+        return base.resolve(href);
+    }
+
+    /**
+     * Returns the ParsedUrl of |url|, or null if it's invalid. While the cache is active, the
+     * result is shared and must not be modified.
+     */
+    public static ParsedUrl parse(String url) {
+        if (sParsedUrls == null) return ParsedUrl.create(url);
+        if (sParsedUrls.containsKey(url)) return sParsedUrls.get(url);
+        ParsedUrl parsedUrl = ParsedUrl.create(url);
+        sParsedUrls.put(url, parsedUrl);
+        return parsedUrl;
+    }
+
+    /**
+     * Same as parse(), but with the username and password of the URL cleared.
+     */
+    public static ParsedUrl parseWithoutCredentials(String url) {
+        if (sParsedUrlsWithoutCredentials == null) return createWithoutCredentials(url);
+        if (sParsedUrlsWithoutCredentials.containsKey(url)) {
+            return sParsedUrlsWithoutCredentials.get(url);
+        }
+        ParsedUrl parsedUrl = createWithoutCredentials(url);
+        sParsedUrlsWithoutCredentials.put(url, parsedUrl);
+        return parsedUrl;
+    }
+
+    private static ParsedUrl createWithoutCredentials(String url) {
+        ParsedUrl parsedUrl = ParsedUrl.create(url);
+        if (parsedUrl != null) {
+            parsedUrl.setUsername("");
+            parsedUrl.setPassword("");
+        }
+        return parsedUrl;
+    }
+
+    private UrlCache() {
+    }
+}
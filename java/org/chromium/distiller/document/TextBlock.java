@@ -21,15 +21,13 @@
  */
 package org.chromium.distiller.document;
 
-import org.chromium.distiller.webdocument.WebElement;
 import org.chromium.distiller.webdocument.WebText;
 import org.chromium.distiller.LogUtil;
 import org.chromium.distiller.labels.DefaultLabels;
+import org.chromium.distiller.labels.LabelRegistry;
 
 import com.google.gwt.dom.client.Node;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -39,45 +37,22 @@ import java.util.TreeSet;
  * A block can be an "atomic" text node (i.e., a sequence of text that is not
  * interrupted by any HTML markup) or a compound of such atomic elements.
  *
+ * The data of the block is kept in the arrays of a TextBlockStore, which is shared by the blocks
+ * of a document, and a TextBlock is a view of it.
+ *
  * @author Christian Kohlschütter
  */
 public class TextBlock implements Cloneable {
-    private final List<WebElement> webElements;
-    private List<Integer> textIndexes;
-
-    private boolean isContent;
-
-    private String text;
-    private Set<String> labels;
-
-    private int numWords;
-    private int numWordsInAnchorText;
-    private float linkDensity;
-
-    private int tagLevel;
-
-    public TextBlock(List<WebElement> elements, int index) {
-        webElements = elements;
-        textIndexes = new ArrayList<Integer>();
-        textIndexes.add(index);
-
-        WebText wt = (WebText) webElements.get(index);
-
-        // The labels are just used for text processing done on the TextDocument. So, the WebText
-        // doesn't actually have any need for them. Instead of having to copy the set, this just
-        // takes ownership of it from the underlying WebText.
-        labels = wt.takeLabels();
+    private final TextBlockStore store;
+    private final int index;
 
-        numWords = wt.getNumWords();
-        numWordsInAnchorText = wt.getNumLinkedWords();
-        tagLevel = wt.getTagLevel();
-        text = wt.getText();
-
-        initDensities();
+    TextBlock(TextBlockStore store, int index) {
+        this.store = store;
+        this.index = index;
     }
 
     public boolean isContent() {
-        return isContent;
+        return store.isContent[index];
     }
 
     /**
@@ -86,43 +61,47 @@ public class TextBlock implements Cloneable {
      * @return true if the isContent value changed.
      */
     public boolean setIsContent(boolean isContent) {
-        if (isContent == this.isContent) {
+        if (isContent == store.isContent[index]) {
             return false;
         }
-        this.isContent = isContent;
+        store.isContent[index] = isContent;
         return true;
     }
 
     public String getText() {
+        // The text of the WebTexts, joined by newlines. A merge drops it, and it's joined again
+        // when it's asked for, as merging long runs of blocks one at a time would be quadratic
+        // otherwise.
+        String text = store.text[index];
+        if (text == null) {
+            text = store.joinTexts(index);
+            store.text[index] = text;
+        }
         return text;
     }
 
+    /**
+     * Returns the length of getText(), without joining the text.
+     */
+    public int getTextLength() {
+        return store.textLength[index];
+    }
+
     public int getNumWords() {
-        return numWords;
+        return store.numWords[index];
     }
 
     public int getNumWordsInAnchorText() {
-        return numWordsInAnchorText;
+        return store.numWordsInAnchorText[index];
     }
 
     public float getLinkDensity() {
-        return linkDensity;
+        int numWords = store.numWords[index];
+        return numWords == 0 ? 0 : store.numWordsInAnchorText[index] / (float) numWords;
     }
 
     public void mergeNext(final TextBlock other) {
-        text += '\n';
-        text += other.text;
-
-        numWords += other.numWords;
-        numWordsInAnchorText += other.numWordsInAnchorText;
-        initDensities();
-
-        isContent |= other.isContent;
-
-        textIndexes.addAll(other.textIndexes);
-
-        labels.addAll(other.labels);
-        tagLevel = Math.min(tagLevel, other.tagLevel);
+        store.merge(index, other.store, other.index);
     }
 
     public int getOffsetBlocksStart() {
@@ -134,18 +113,18 @@ public class TextBlock implements Cloneable {
     }
 
     private String labelsDebugString() {
-        return new TreeSet<String>(labels).toString();
+        return new TreeSet<String>(LabelRegistry.getLabels(getLabelMask())).toString();
     }
 
     @Override
     public String toString() {
         String s = "[";
         s += getOffsetBlocksStart() + "-" + getOffsetBlocksEnd() + ";";
-        s += "tl=" + tagLevel + ";";
-        s += "nw=" + numWords + ";";
-        s += "ld=" + linkDensity + ";";
+        s += "tl=" + getTagLevel() + ";";
+        s += "nw=" + getNumWords() + ";";
+        s += "ld=" + getLinkDensity() + ";";
         s += "]\t";
-        s += (isContent ? LogUtil.kGreen + "CONTENT" : LogUtil.kPurple + "boilerplate")
+        s += (isContent() ? LogUtil.kGreen + "CONTENT" : LogUtil.kPurple + "boilerplate")
                 + LogUtil.kReset + ",";
         s += LogUtil.kDarkGray + labelsDebugString() + LogUtil.kReset;
         s += "\n" + getText();
@@ -160,14 +139,21 @@ public class TextBlock implements Cloneable {
      * Adds an label to this {@link TextBlock}.
      */
     public void addLabel(final String label) {
-        labels.add(label);
+        store.labels[index] |= LabelRegistry.getMask(label);
     }
 
     /**
      * Returns whether this TextBlock has the given label.
      */
     public boolean hasLabel(final String label) {
-        return labels.contains(label);
+        return (store.labels[index] & LabelRegistry.findMask(label)) != 0;
+    }
+
+    /**
+     * Returns whether this TextBlock has any of the labels in |mask|, see LabelRegistry.
+     */
+    public boolean hasAnyLabel(final int mask) {
+        return (store.labels[index] & mask) != 0;
     }
 
     /**
@@ -176,24 +162,28 @@ public class TextBlock implements Cloneable {
      * @return True if a label was removed.
      */
     public boolean removeLabel(final String label) {
-        if (!labels.contains(label)) return false;
-        labels.remove(label);
+        int mask = LabelRegistry.findMask(label);
+        if ((store.labels[index] & mask) == 0) return false;
+        store.labels[index] &= ~mask;
         return true;
     }
 
     /**
-     * Returns the labels associated to this TextBlock, or <code>null</code> if no such labels
-     * exist.
+     * Returns the labels associated to this TextBlock.
      *
-     * NOTE: The returned instance is the one used directly in TextBlock. You have full access
-     * to the data structure. However it is recommended to use the label-specific methods in {@link
-     *TextBlock}
-     * whenever possible.
+     * NOTE: The returned set is a copy, changing it doesn't change the labels of this TextBlock.
      *
      * @return Returns the set of labels.
      */
     public Set<String> getLabels() {
-        return labels;
+        return LabelRegistry.getLabels(getLabelMask());
+    }
+
+    /**
+     * Returns the mask of the labels of this TextBlock, see LabelRegistry.
+     */
+    public int getLabelMask() {
+        return store.labels[index];
     }
 
     /**
@@ -202,9 +192,7 @@ public class TextBlock implements Cloneable {
      * @param l The labels to be added.
      */
     public void addLabels(final String... l) {
-        for (String label : l) {
-            labels.add(label);
-        }
+        store.labels[index] |= LabelRegistry.getMask(l);
     }
 
     /**
@@ -222,33 +210,30 @@ public class TextBlock implements Cloneable {
     }
 
     public int getTagLevel() {
-        return tagLevel;
+        return store.tagLevel[index];
     }
 
     public void setTagLevel(int tagLevel) {
-        this.tagLevel = tagLevel;
+        store.tagLevel[index] = tagLevel;
     }
 
     public void applyToModel() {
-        if (!isContent) return;
-        for (Integer i : textIndexes) {
-            WebText wt = (WebText) webElements.get(i);
+        if (!isContent()) return;
+        boolean isTitle = hasAnyLabel(DefaultLabels.TITLE_MASK);
+        for (int i = 0; i < store.numTexts[index]; i++) {
+            WebText wt = store.getText(index, i);
             wt.setIsContent(true);
-            if (hasLabel(DefaultLabels.TITLE)) {
+            if (isTitle) {
                 wt.addLabel(DefaultLabels.TITLE);
             }
         }
     }
 
-    private void initDensities() {
-        linkDensity = numWords == 0 ? 0 : numWordsInAnchorText / (float) numWords;
-    }
-
     private WebText getFirstText() {
-        return (WebText) webElements.get(textIndexes.get(0));
+        return store.getText(index, 0);
     }
 
     private WebText getLastText() {
-        return (WebText) webElements.get(textIndexes.get(textIndexes.size() - 1));
+        return store.getText(index, store.numTexts[index] - 1);
     }
 }
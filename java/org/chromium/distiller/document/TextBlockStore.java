@@ -0,0 +1,206 @@
+// Copyright 2016 The Chromium Authors
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.distiller.document;
+
+import org.chromium.distiller.StageInstrumentation;
+import org.chromium.distiller.webdocument.WebElement;
+import org.chromium.distiller.webdocument.WebText;
+
+import java.util.List;
+
+/**
+ * The data of the TextBlocks of a document, kept in primitive arrays indexed by block, so that
+ * building and filtering the blocks doesn't allocate an object per WebText or per merge. A
+ * TextBlock is a view of one block of its store.
+ *
+ * The metrics of each WebText are copied into the arrays when it's added, so the filters don't
+ * read the WebTexts again. The text of a block is only joined when it's asked for, by the few
+ * filters that look at it.
+ */
+public class TextBlockStore {
+    final List<WebElement> webElements;
+
+    private int numBlocks = 0;
+    int[] numWords;
+    int[] numWordsInAnchorText;
+    int[] tagLevel;
+    // The masks of the labels, see LabelRegistry.
+    int[] labels;
+    // The group number of the first WebText of each block, see WebText.getGroupNumber().
+    int[] groupNumber;
+    int[] textLength;
+    boolean[] isContent;
+    // The joined text of each block, or null until it's asked for.
+    String[] text;
+
+    // The indexes in |webElements| of the WebTexts of each block, in increasing order, are the
+    // |numTexts| entries of |texts| from |textStart|. A block whose range isn't at the end of
+    // |texts| is moved there before it grows, so that merging a long run of blocks into the same
+    // one is linear.
+    int[] textStart;
+    int[] numTexts;
+    int[] texts;
+    private int textsEnd = 0;
+
+    /**
+     * @param capacity The expected number of WebTexts, which bounds the number of blocks.
+     */
+    public TextBlockStore(List<WebElement> webElements, int capacity) {
+        this.webElements = webElements;
+        capacity = Math.max(1, capacity);
+        numWords = new int[capacity];
+        numWordsInAnchorText = new int[capacity];
+        tagLevel = new int[capacity];
+        labels = new int[capacity];
+        groupNumber = new int[capacity];
+        textLength = new int[capacity];
+        isContent = new boolean[capacity];
+        text = new String[capacity];
+        textStart = new int[capacity];
+        numTexts = new int[capacity];
+        texts = new int[capacity];
+    }
+
+    /**
+     * @return The number of blocks, including the ones that were merged into others.
+     */
+    public int size() {
+        return numBlocks;
+    }
+
+    /**
+     * Adds a block for the WebText at |index| of the elements.
+     */
+    public TextBlock addBlock(int index) {
+        return new TextBlock(this, addBlockData(index));
+    }
+
+    /**
+     * Adds the WebText at |index| of the elements to the last block if it's in the same group, or
+     * to a new block otherwise.
+     * @return The new block, or null if the WebText was merged into the last one.
+     */
+    public TextBlock addText(int index) {
+        int last = numBlocks - 1;
+        WebText wt = (WebText) webElements.get(index);
+        if (last < 0 || wt.getGroupNumber() != groupNumber[last]) return addBlock(index);
+
+        // Same as merging a new block for |wt| into the last one.
+        StageInstrumentation.addBlocksMerged(1);
+        text[last] = null;
+        textLength[last] += 1 + wt.getText().length();
+        numWords[last] += wt.getNumWords();
+        numWordsInAnchorText[last] += wt.getNumLinkedWords();
+        labels[last] |= wt.takeLabelMask();
+        tagLevel[last] = Math.min(tagLevel[last], wt.getTagLevel());
+        prepareAppend(last, 1);
+        texts[textsEnd++] = index;
+        numTexts[last]++;
+        return null;
+    }
+
+    private int addBlockData(int index) {
+        if (numBlocks == numWords.length) growBlocks();
+        int block = numBlocks++;
+        WebText wt = (WebText) webElements.get(index);
+
+        // The labels are just used for text processing done on the TextDocument. So, the WebText
+        // doesn't actually have any need for them, and this takes them from the underlying
+        // WebText.
+        labels[block] = wt.takeLabelMask();
+        numWords[block] = wt.getNumWords();
+        numWordsInAnchorText[block] = wt.getNumLinkedWords();
+        tagLevel[block] = wt.getTagLevel();
+        groupNumber[block] = wt.getGroupNumber();
+        text[block] = wt.getText();
+        textLength[block] = text[block].length();
+        isContent[block] = false;
+
+        ensureTextCapacity(textsEnd + 1);
+        textStart[block] = textsEnd;
+        numTexts[block] = 1;
+        texts[textsEnd++] = index;
+        return block;
+    }
+
+    /**
+     * Merges the block |other| of |from| into |block|, which comes before it.
+     */
+    void merge(int block, TextBlockStore from, int other) {
+        assert from.webElements == webElements;
+        StageInstrumentation.addBlocksMerged(1);
+        text[block] = null;
+        textLength[block] += 1 + from.textLength[other];
+        numWords[block] += from.numWords[other];
+        numWordsInAnchorText[block] += from.numWordsInAnchorText[other];
+        isContent[block] |= from.isContent[other];
+        labels[block] |= from.labels[other];
+        tagLevel[block] = Math.min(tagLevel[block], from.tagLevel[other]);
+
+        int otherCount = from.numTexts[other];
+        prepareAppend(block, otherCount);
+        // |from| may be this store, so its texts are read after growing.
+        System.arraycopy(from.texts, from.textStart[other], texts, textsEnd, otherCount);
+        textsEnd += otherCount;
+        numTexts[block] += otherCount;
+    }
+
+    /**
+     * Makes room for |count| more texts right after the ones of |block|.
+     */
+    private void prepareAppend(int block, int count) {
+        int numBlockTexts = numTexts[block];
+        if (textStart[block] + numBlockTexts == textsEnd) {
+            ensureTextCapacity(textsEnd + count);
+            return;
+        }
+        // Move the texts of |block| to the end, where they can grow.
+        ensureTextCapacity(textsEnd + numBlockTexts + count);
+        System.arraycopy(texts, textStart[block], texts, textsEnd, numBlockTexts);
+        textStart[block] = textsEnd;
+        textsEnd += numBlockTexts;
+    }
+
+    WebText getText(int block, int i) {
+        return (WebText) webElements.get(texts[textStart[block] + i]);
+    }
+
+    String joinTexts(int block) {
+        StringBuilder joined = new StringBuilder(textLength[block]);
+        for (int i = 0; i < numTexts[block]; i++) {
+            if (i > 0) joined.append('\n');
+            joined.append(getText(block, i).getText());
+        }
+        return joined.toString();
+    }
+
+    private void growBlocks() {
+        int capacity = 2 * numWords.length;
+        numWords = grow(numWords, capacity);
+        numWordsInAnchorText = grow(numWordsInAnchorText, capacity);
+        tagLevel = grow(tagLevel, capacity);
+        labels = grow(labels, capacity);
+        groupNumber = grow(groupNumber, capacity);
+        textLength = grow(textLength, capacity);
+        textStart = grow(textStart, capacity);
+        numTexts = grow(numTexts, capacity);
+        boolean[] grownIsContent = new boolean[capacity];
+        System.arraycopy(isContent, 0, grownIsContent, 0, numBlocks);
+        isContent = grownIsContent;
+        String[] grownText = new String[capacity];
+        System.arraycopy(text, 0, grownText, 0, numBlocks);
+        text = grownText;
+    }
+
+    private void ensureTextCapacity(int size) {
+        if (size > texts.length) texts = grow(texts, Math.max(size, 2 * texts.length));
+    }
+
+    private static int[] grow(int[] array, int capacity) {
+        int[] grown = new int[capacity];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+}
@@ -21,6 +21,8 @@
  */
 package org.chromium.distiller.extractors;
 
+import org.chromium.distiller.BoilerpipeFilter;
+import org.chromium.distiller.StageInstrumentation;
 import org.chromium.distiller.document.TextDocument;
 import org.chromium.distiller.filters.debug.PrintDebugFilter;
 import org.chromium.distiller.filters.english.NumWordsRulesClassifier;
@@ -36,6 +38,7 @@ import org.chromium.distiller.filters.heuristics.SimilarSiblingContentExpansion;
 import org.chromium.distiller.filters.simple.BoilerplateBlockFilter;
 import org.chromium.distiller.filters.simple.LabelToBoilerplateFilter;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -55,63 +58,96 @@ public final class ArticleExtractor {
     }
 
     public boolean process(TextDocument doc, List<String> candidateTitles) {
-        boolean changed;
-
-        PrintDebugFilter.INSTANCE.process(doc, true, "Start");
-
-        TerminatingBlocksFinder.INSTANCE.process(doc);
-        new DocumentTitleMatchClassifier(candidateTitles).process(doc);
-        // Intentionally don't print changes from these two steps.
-
-        changed = NumWordsRulesClassifier.INSTANCE.process(doc);
-        PrintDebugFilter.INSTANCE.process(doc, changed, "Classification Complete");
-
-        changed = LabelToBoilerplateFilter.INSTANCE_STRICTLY_NOT_CONTENT.process(doc);
-        PrintDebugFilter.INSTANCE.process(doc, changed, "Ignore Strictly Not Content blocks");
-
-        changed = new SimilarSiblingContentExpansion.Builder()
-                .allowCrossHeadings()
-                .maxLinkDensity(0.5)
-                .maxBlockDistance(10)
-                .build()
-                .process(doc);
-        PrintDebugFilter.INSTANCE.process(doc, changed,
-                "SimilarSiblingContentExpansion: Cross headings");
-
-        changed = new SimilarSiblingContentExpansion.Builder()
-                .allowCrossHeadings()
-                .allowMixedTags()
-                .maxLinkDensity(0.0)
-                .maxBlockDistance(10)
-                .build()
-                .process(doc);
-        PrintDebugFilter.INSTANCE.process(doc, changed,
-                "SimilarSiblingContentExpansion: Mixed tags");
-
-        changed = new HeadingFusion().process(doc);
-        PrintDebugFilter.INSTANCE.process(doc, changed, "HeadingFusion");
-
-        changed = BlockProximityFusion.PRE_FILTERING.process(doc);
-        PrintDebugFilter.INSTANCE.process(doc, changed, "BlockProximityFusion: Distance 1");
-
-        changed = BoilerplateBlockFilter.INSTANCE_KEEP_TITLE.process(doc);
-        PrintDebugFilter.INSTANCE.process(doc, changed, "BlockFilter");
-
-        changed = BlockProximityFusion.POST_FILTERING.process(doc);
-        PrintDebugFilter.INSTANCE.process(doc, changed, "BlockProximityFusion: Same level content-only");
-
-        changed = KeepLargestBlockFilter.INSTANCE_EXPAND_TO_SIBLINGS.process(doc);
-        PrintDebugFilter.INSTANCE.process(doc, changed, "Keep Largest Block");
-
-        changed = ExpandTitleToContentFilter.INSTANCE.process(doc);
-        PrintDebugFilter.INSTANCE.process(doc, changed, "Expand Title to Content");
-
-        changed = LargeBlockSameTagLevelToContentFilter.INSTANCE.process(doc);
-        PrintDebugFilter.INSTANCE.process(doc, changed, "Largest Block Same Tag Level -> Content");
+        Run run = start(doc, candidateTitles);
+        while (!run.step()) {}
+        return true;
+    }
 
-        changed = ListAtEndFilter.INSTANCE.process(doc);
-        PrintDebugFilter.INSTANCE.process(doc, changed, "List at end filter");
+    /**
+     * Starts applying the filters to |doc| like process(), but one filter per call to
+     * Run.step(), so that the work can be split into several parts.
+     */
+    public Run start(TextDocument doc, List<String> candidateTitles) {
+        return new Run(doc, candidateTitles);
+    }
 
-        return true;
+    /**
+     * The filters of a run over a document, in the order they are applied.
+     */
+    public static class Run {
+        private final TextDocument doc;
+        private final List<String> stageNames = new ArrayList<>();
+        private final List<BoilerpipeFilter> filters = new ArrayList<>();
+        // The header the changes of each filter are printed with, or null to not print them.
+        private final List<String> debugHeaders = new ArrayList<>();
+        private int nextFilter = 0;
+
+        private Run(TextDocument doc, List<String> candidateTitles) {
+            this.doc = doc;
+            add("TerminatingBlocksFinder", TerminatingBlocksFinder.INSTANCE, null);
+            // Intentionally don't print changes from these two steps.
+            add("DocumentTitleMatchClassifier", new DocumentTitleMatchClassifier(candidateTitles),
+                    null);
+            add("NumWordsRulesClassifier", NumWordsRulesClassifier.INSTANCE,
+                    "Classification Complete");
+            add("LabelToBoilerplateFilter", LabelToBoilerplateFilter.INSTANCE_STRICTLY_NOT_CONTENT,
+                    "Ignore Strictly Not Content blocks");
+            add("SimilarSiblingContentExpansion: Cross headings",
+                    new SimilarSiblingContentExpansion.Builder()
+                            .allowCrossHeadings()
+                            .maxLinkDensity(0.5)
+                            .maxBlockDistance(10)
+                            .build(),
+                    "SimilarSiblingContentExpansion: Cross headings");
+            add("SimilarSiblingContentExpansion: Mixed tags",
+                    new SimilarSiblingContentExpansion.Builder()
+                            .allowCrossHeadings()
+                            .allowMixedTags()
+                            .maxLinkDensity(0.0)
+                            .maxBlockDistance(10)
+                            .build(),
+                    "SimilarSiblingContentExpansion: Mixed tags");
+            add("HeadingFusion", new HeadingFusion(), "HeadingFusion");
+            add("BlockProximityFusion: Distance 1", BlockProximityFusion.PRE_FILTERING,
+                    "BlockProximityFusion: Distance 1");
+            add("BoilerplateBlockFilter", BoilerplateBlockFilter.INSTANCE_KEEP_TITLE,
+                    "BlockFilter");
+            add("BlockProximityFusion: Same level content-only",
+                    BlockProximityFusion.POST_FILTERING,
+                    "BlockProximityFusion: Same level content-only");
+            add("KeepLargestBlockFilter", KeepLargestBlockFilter.INSTANCE_EXPAND_TO_SIBLINGS,
+                    "Keep Largest Block");
+            add("ExpandTitleToContentFilter", ExpandTitleToContentFilter.INSTANCE,
+                    "Expand Title to Content");
+            add("LargeBlockSameTagLevelToContentFilter",
+                    LargeBlockSameTagLevelToContentFilter.INSTANCE,
+                    "Largest Block Same Tag Level -> Content");
+            add("ListAtEndFilter", ListAtEndFilter.INSTANCE, "List at end filter");
+        }
+
+        private void add(String stageName, BoilerpipeFilter filter, String debugHeader) {
+            stageNames.add(stageName);
+            filters.add(filter);
+            debugHeaders.add(debugHeader);
+        }
+
+        /**
+         * Applies the next filter.
+         * @return Whether all the filters have been applied.
+         */
+        public boolean step() {
+            if (nextFilter == 0) PrintDebugFilter.INSTANCE.process(doc, true, "Start");
+            if (nextFilter < filters.size()) {
+                StageInstrumentation.start(stageNames.get(nextFilter));
+                boolean changed = filters.get(nextFilter).process(doc);
+                StageInstrumentation.stop();
+                String debugHeader = debugHeaders.get(nextFilter);
+                if (debugHeader != null) {
+                    PrintDebugFilter.INSTANCE.process(doc, changed, debugHeader);
+                }
+                nextFilter++;
+            }
+            return nextFilter == filters.size();
+        }
     }
 }
@@ -0,0 +1,111 @@
+// Copyright 2016 The Chromium Authors
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.distiller.extractors.embeds;
+
+import org.chromium.distiller.LogUtil;
+import org.chromium.distiller.StageInstrumentation;
+import org.chromium.distiller.webdocument.WebElement;
+
+import com.google.gwt.dom.client.Element;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The EmbedExtractors that DomConverter runs, indexed by the tag names they are relevant to, so
+ * that an element is only passed to the extractors that care about its tag.
+ *
+ * Each extractor is recorded as the stage "EmbedExtractor: <name>" of StageInstrumentation: its
+ * runs are the elements it was given, and its hits the embeds it extracted.
+ */
+public class EmbedExtractorRegistry {
+    private static class Entry {
+        final EmbedExtractor extractor;
+        final String stageName;
+
+        Entry(EmbedExtractor extractor, String name) {
+            this.extractor = extractor;
+            stageName = "EmbedExtractor: " + name;
+        }
+    }
+
+    // The default extractors don't keep state between calls to extract(), so they are created
+    // once and shared by every DomConverter.
+    private static EmbedExtractorRegistry sDefault;
+
+    // In the order the extractors were registered.
+    private final Map<String, List<Entry>> entriesByTagName = new HashMap<>();
+
+    /**
+     * @return The registry used by DomConverter, which has the image, Twitter, Vimeo and YouTube
+     * extractors, in that order, and the ones registered with it since.
+     */
+    public static EmbedExtractorRegistry getDefault() {
+        if (sDefault == null) {
+            sDefault = new EmbedExtractorRegistry();
+            sDefault.register("ImageExtractor", new ImageExtractor());
+            sDefault.register("TwitterExtractor", new TwitterExtractor());
+            sDefault.register("VimeoExtractor", new VimeoExtractor());
+            sDefault.register("YouTubeExtractor", new YouTubeExtractor());
+        }
+        return sDefault;
+    }
+
+    /**
+     * Adds |extractor| after the extractors already registered for its relevant tag names. The
+     * class names aren't available in the compiled code, so |name| names it in the stages.
+     */
+    public void register(String name, EmbedExtractor extractor) {
+        Entry entry = new Entry(extractor, name);
+        for (String tagName : extractor.getRelevantTagNames()) {
+            List<Entry> entries = entriesByTagName.get(tagName);
+            if (entries == null) {
+                entries = new ArrayList<>();
+                entriesByTagName.put(tagName, entries);
+            }
+            entries.add(entry);
+        }
+    }
+
+    /**
+     * @return The extractors relevant to |tagName|, in the order they are run.
+     */
+    public List<EmbedExtractor> getExtractors(String tagName) {
+        List<Entry> entries = entriesByTagName.get(tagName);
+        if (entries == null) return Collections.emptyList();
+        List<EmbedExtractor> extractors = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            extractors.add(entry.extractor);
+        }
+        return extractors;
+    }
+
+    /**
+     * Runs the extractors relevant to the tag of |e| until one of them extracts it. An extractor
+     * that throws is skipped.
+     * @return The extracted embed, or null if |e| isn't one.
+     */
+    public WebElement extract(Element e) {
+        List<Entry> entries = entriesByTagName.get(e.getTagName());
+        if (entries == null) return null;
+        for (Entry entry : entries) {
+            WebElement embed = null;
+            StageInstrumentation.start(entry.stageName);
+            try {
+                embed = entry.extractor.extract(e);
+            } catch (Exception exception) {
+                LogUtil.logToConsole(
+                    "Exception happened in EmbedExtractors: " + exception.getMessage());
+            }
+            if (embed != null) StageInstrumentation.addHits(1);
+            StageInstrumentation.stop();
+            if (embed != null) return embed;
+        }
+        return null;
+    }
+}
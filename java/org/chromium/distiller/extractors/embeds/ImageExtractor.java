@@ -83,7 +83,7 @@ public class ImageExtractor implements EmbedExtractor {
                 return null;
             }
             // Image lazy loading on Wikipedia.
-            ie = Document.get().createImageElement();
+            ie = e.getOwnerDocument().createImageElement();
             imgSrc = e.getAttribute("data-src");
             width = JavaScript.parseInt(e.getAttribute("data-width"));
             height = JavaScript.parseInt(e.getAttribute("data-height"));
@@ -9,7 +9,6 @@ import org.chromium.distiller.LogUtil;
 import org.chromium.distiller.webdocument.WebEmbed;
 
 import com.google.gwt.dom.client.AnchorElement;
-import com.google.gwt.dom.client.Document;
 import com.google.gwt.dom.client.Element;
 import com.google.gwt.dom.client.IFrameElement;
 
@@ -43,7 +42,7 @@ public class VimeoExtractor implements EmbedExtractor {
         }
 
         // Get specific attributes about the Vimeo embed.
-        AnchorElement anchor = Document.get().createAnchorElement();
+        AnchorElement anchor = e.getOwnerDocument().createAnchorElement();
         anchor.setHref(src);
         String path = anchor.getPropertyString("pathname");
 
@@ -44,6 +44,9 @@ public final class BlockProximityFusion implements BoilerpipeFilter {
     private final boolean postFiltering;
 
     private static final int MAX_BLOCK_DISTANCE = 1;
+    // Blocks are only merged if both or neither of them have each of these labels.
+    private static final int MATCHING_LABELS_MASK =
+            DefaultLabels.STRICTLY_NOT_CONTENT_MASK | DefaultLabels.TITLE_MASK;
 
     /**
      * Creates a new {@link BlockProximityFusion} instance.
@@ -79,18 +82,16 @@ public final class BlockProximityFusion implements BoilerpipeFilter {
                         ok = false;
                     }
                 } else {
-                    if (block.hasLabel(DefaultLabels.BOILERPLATE_HEADING_FUSED)) {
+                    if (block.hasAnyLabel(DefaultLabels.BOILERPLATE_HEADING_FUSED_MASK)) {
                         ok = false;
                     }
                 }
-                if (prevBlock.hasLabel(DefaultLabels.STRICTLY_NOT_CONTENT) != block.hasLabel(DefaultLabels.STRICTLY_NOT_CONTENT)) {
+                if (((prevBlock.getLabelMask() ^ block.getLabelMask()) & MATCHING_LABELS_MASK)
+                        != 0) {
                     ok = false;
                 }
-                if (prevBlock.hasLabel(DefaultLabels.TITLE) != block.hasLabel(DefaultLabels.TITLE)) {
-                    ok = false;
-                }
-                if (!prevBlock.isContent() && prevBlock.hasLabel(DefaultLabels.LI) &&
-                        !block.hasLabel(DefaultLabels.LI)) {
+                if (!prevBlock.isContent() && prevBlock.hasAnyLabel(DefaultLabels.LI_MASK) &&
+                        !block.hasAnyLabel(DefaultLabels.LI_MASK)) {
                     ok = false;
                 }
 
@@ -19,6 +19,9 @@ import java.util.ListIterator;
  * BlockProximityFusion from merging through it.
  */
 public final class HeadingFusion implements BoilerpipeFilter {
+    // Neither the heading nor the block after it may have any of these labels.
+    private static final int NOT_FUSED_MASK =
+            DefaultLabels.STRICTLY_NOT_CONTENT_MASK | DefaultLabels.TITLE_MASK;
 
     /**
      * Creates a new {@link HeadingFusion} instance.
@@ -40,17 +43,11 @@ public final class HeadingFusion implements BoilerpipeFilter {
             prevBlock = currBlock;
             currBlock = it.next();
 
-            if (!prevBlock.hasLabel(DefaultLabels.HEADING)) {
+            if (!prevBlock.hasAnyLabel(DefaultLabels.HEADING_MASK)) {
                 continue;
             }
 
-            if (prevBlock.hasLabel(DefaultLabels.STRICTLY_NOT_CONTENT)
-                    || currBlock.hasLabel(DefaultLabels.STRICTLY_NOT_CONTENT)) {
-                continue;
-            }
-
-            if (prevBlock.hasLabel(DefaultLabels.TITLE)
-                    || currBlock.hasLabel(DefaultLabels.TITLE)) {
+            if (((prevBlock.getLabelMask() | currBlock.getLabelMask()) & NOT_FUSED_MASK) != 0) {
                 continue;
             }
 
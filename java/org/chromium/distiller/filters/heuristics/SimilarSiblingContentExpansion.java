@@ -10,7 +10,6 @@ import org.chromium.distiller.document.TextBlock;
 import org.chromium.distiller.document.TextDocument;
 import org.chromium.distiller.labels.DefaultLabels;
 
-import com.google.gwt.dom.client.Document;
 import com.google.gwt.dom.client.Node;
 
 import java.util.ArrayList;
@@ -107,7 +106,8 @@ public final class SimilarSiblingContentExpansion implements BoilerpipeFilter {
             return false;
         }
 
-        Node docNode = Document.get().getDocumentElement();
+        Node docNode = textBlocks.get(0).getFirstNonWhitespaceTextNode()
+                .getOwnerDocument().getDocumentElement();
         canonicalReps = findCanonicalReps(textBlocks, docNode);
 
         // After processing a block, it will be added to either the list of good or the list of bad
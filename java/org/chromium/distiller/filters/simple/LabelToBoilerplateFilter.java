@@ -25,6 +25,7 @@ import org.chromium.distiller.BoilerpipeFilter;
 import org.chromium.distiller.document.TextBlock;
 import org.chromium.distiller.document.TextDocument;
 import org.chromium.distiller.labels.DefaultLabels;
+import org.chromium.distiller.labels.LabelRegistry;
 
 /**
  * Marks all blocks that contain a given label as "boilerplate".
@@ -34,25 +35,20 @@ import org.chromium.distiller.labels.DefaultLabels;
 public final class LabelToBoilerplateFilter implements BoilerpipeFilter {
 	public static final LabelToBoilerplateFilter INSTANCE_STRICTLY_NOT_CONTENT = new LabelToBoilerplateFilter(DefaultLabels.STRICTLY_NOT_CONTENT);
 
-    private String[] labels;
+    private final int labelMask;
 
     public LabelToBoilerplateFilter(final String... label) {
-        this.labels = label;
+        this.labelMask = LabelRegistry.getMask(label);
     }
 
     @Override
     public boolean process(final TextDocument doc) {
         boolean changes = false;
 
-        BLOCK_LOOP: for (TextBlock tb : doc.getTextBlocks()) {
-            if (tb.isContent()) {
-                for (String label : labels) {
-                    if (tb.hasLabel(label)) {
-                        tb.setIsContent(false);
-                        changes = true;
-                        continue BLOCK_LOOP;
-                    }
-                }
+        for (TextBlock tb : doc.getTextBlocks()) {
+            if (tb.isContent() && tb.hasAnyLabel(labelMask)) {
+                tb.setIsContent(false);
+                changes = true;
             }
         }
 
@@ -49,6 +49,14 @@ public final class DefaultLabels {
     public static final String STRICTLY_NOT_CONTENT = "STRICTLY_NOT_CONTENT";
     public static final String SIBLING_OF_MAIN_CONTENT = "SIBLING_OF_MAIN_CONTENT";
 
+    // The masks of the labels above, for testing several labels at once. See LabelRegistry.
+    public static final int TITLE_MASK = LabelRegistry.getMask(TITLE);
+    public static final int HEADING_MASK = LabelRegistry.getMask(HEADING);
+    public static final int LI_MASK = LabelRegistry.getMask(LI);
+    public static final int BOILERPLATE_HEADING_FUSED_MASK =
+            LabelRegistry.getMask(BOILERPLATE_HEADING_FUSED);
+    public static final int STRICTLY_NOT_CONTENT_MASK = LabelRegistry.getMask(STRICTLY_NOT_CONTENT);
+
     private DefaultLabels() {
     	// not to be instantiated
     }
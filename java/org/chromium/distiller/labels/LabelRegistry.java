@@ -0,0 +1,80 @@
+// Copyright 2016 The Chromium Authors
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.distiller.labels;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Interns the labels of TextBlocks and WebTexts, so that a set of labels can be kept as a bitmask
+ * of the labels' bits. Adding, testing and merging labels then doesn't allocate.
+ *
+ * A label gets its bit the first time it is seen, and keeps it. A mask is an int, as a long would
+ * be emulated in the compiled script, so there can be at most MAX_LABELS distinct labels.
+ */
+public final class LabelRegistry {
+    public static final int MAX_LABELS = 32;
+
+    private static final Map<String, Integer> sMasks = new HashMap<>();
+    private static final List<String> sLabels = new ArrayList<>();
+
+    private LabelRegistry() {
+    }
+
+    /**
+     * Returns the mask of |label|, registering it if it's new.
+     * @throws IllegalStateException If |label| is new and MAX_LABELS labels are registered
+     * already.
+     */
+    public static int getMask(String label) {
+        Integer mask = sMasks.get(label);
+        if (mask != null) return mask;
+        if (sLabels.size() >= MAX_LABELS) {
+            throw new IllegalStateException("Too many labels to register " + label);
+        }
+        mask = 1 << sLabels.size();
+        sLabels.add(label);
+        sMasks.put(label, mask);
+        return mask;
+    }
+
+    /**
+     * Returns the mask of |label|, or 0 if it hasn't been registered, i.e. no set can have it.
+     */
+    public static int findMask(String label) {
+        Integer mask = sMasks.get(label);
+        return mask == null ? 0 : mask;
+    }
+
+    /**
+     * Returns the union of the masks of |labels|, registering the ones that are new.
+     * @throws IllegalStateException If there are too many labels to register them.
+     */
+    public static int getMask(String... labels) {
+        int mask = 0;
+        for (String label : labels) {
+            mask |= getMask(label);
+        }
+        return mask;
+    }
+
+    /**
+     * Returns the labels in |mask|, as a new set.
+     */
+    public static Set<String> getLabels(int mask) {
+        Set<String> labels = new HashSet<>();
+        for (int i = 0; mask != 0 && i < sLabels.size(); i++) {
+            if ((mask & (1 << i)) != 0) {
+                labels.add(sLabels.get(i));
+                mask &= ~(1 << i);
+            }
+        }
+        return labels;
+    }
+}
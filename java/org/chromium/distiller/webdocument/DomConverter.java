@@ -4,6 +4,7 @@
 
 package org.chromium.distiller.webdocument;
 
+import org.chromium.distiller.ComputedStyleCache;
 import org.chromium.distiller.DomUtil;
 import org.chromium.distiller.DomWalker;
 import org.chromium.distiller.LogUtil;
@@ -12,52 +13,42 @@ import org.chromium.distiller.TableClassifier;
 import com.google.gwt.dom.client.AnchorElement;
 import com.google.gwt.dom.client.Element;
 import com.google.gwt.dom.client.Node;
-import com.google.gwt.dom.client.Style;
 import com.google.gwt.dom.client.TableElement;
 import com.google.gwt.dom.client.Text;
-import org.chromium.distiller.extractors.embeds.EmbedExtractor;
-import org.chromium.distiller.extractors.embeds.ImageExtractor;
-import org.chromium.distiller.extractors.embeds.TwitterExtractor;
-import org.chromium.distiller.extractors.embeds.VimeoExtractor;
-import org.chromium.distiller.extractors.embeds.YouTubeExtractor;
+import org.chromium.distiller.extractors.embeds.EmbedExtractorRegistry;
 
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
 import java.util.Stack;
 
 /**
  * This DomWalker.Visitor creates a WebDocument from the walked DOM. It skips hidden and other
- * elements that should not be in the created document. Some of these skipped elements (hidden
- * elements and data tables) are available for retrieval after processing.
+ * elements that should not be in the created document. The skipped data tables are passed to the
+ * builder, and the skipped hidden elements to the HiddenElementConsumer, if one is set.
  */
 public class DomConverter implements DomWalker.Visitor {
+    /**
+     * Receives the hidden elements that are skipped, in document order. The descendants of a
+     * hidden element aren't walked, so they aren't passed on their own.
+     */
+    public interface HiddenElementConsumer {
+        void onHiddenElement(Element e);
+    }
+
     private final WebDocumentBuilderInterface builder;
-    private final Set<Node> hiddenElements;
-    private final List<EmbedExtractor> extractors;
-    // For quick lookup of tags that could possibly be embeds.
-    private final HashSet<String> embedTagNames;
+    // Null unless the hidden elements are collected.
+    private HiddenElementConsumer hiddenElementConsumer;
+    private final EmbedExtractorRegistry embedExtractors;
 
     private boolean isMobileFriendly;
     private boolean hasArticleElement;
     private boolean isHiddenClass = false;
     private Stack<Boolean> isHiddenStack = new Stack<>();
+    // Whether the element being visited is inside an editable area, see TableClassifier.
+    private boolean isInsideEditableArea = false;
+    private Stack<Boolean> isInsideEditableAreaStack = new Stack<>();
 
     public DomConverter(WebDocumentBuilderInterface builder) {
-        hiddenElements = new HashSet<>();
         this.builder = builder;
-
-        extractors = new ArrayList<>();
-        extractors.add(new ImageExtractor());
-        extractors.add(new TwitterExtractor());
-        extractors.add(new VimeoExtractor());
-        extractors.add(new YouTubeExtractor());
-
-        embedTagNames = new HashSet<>();
-        for (EmbedExtractor extractor : extractors) {
-            embedTagNames.addAll(extractor.getRelevantTagNames());
-        }
+        embedExtractors = EmbedExtractorRegistry.getDefault();
     }
 
     public void setIsMobileFriendly(boolean mobileFriendly) {
@@ -68,8 +59,8 @@ public class DomConverter implements DomWalker.Visitor {
         hasArticleElement = hasArticle;
     }
 
-    public final Set<Node> getHiddenElements() {
-        return hiddenElements;
+    public void setHiddenElementConsumer(HiddenElementConsumer consumer) {
+        hiddenElementConsumer = consumer;
     }
 
     @Override
@@ -91,6 +82,11 @@ public class DomConverter implements DomWalker.Visitor {
     }
 
     private boolean visitElement(Element e) {
+        if (isInsideEditableAreaStack.isEmpty()) {
+            // This is the root of the walk, whose ancestors aren't visited.
+            isInsideEditableArea = TableClassifier.isInsideEditableArea(e);
+        }
+
         // Skip invisible or uninteresting elements.
         boolean visible = DomUtil.isVisible(e);
         boolean keepAnyway = false;
@@ -121,28 +117,18 @@ public class DomConverter implements DomWalker.Visitor {
         }
         logVisibilityInfo(e, visible || keepAnyway);
         if (!visible && !keepAnyway) {
-            hiddenElements.add(e);
+            if (hiddenElementConsumer != null) hiddenElementConsumer.onHiddenElement(e);
             return false;
         }
 
         // Node-type specific extractors check for elements they are interested in here. Everything
         // else will be filtered through the switch below.
 
-        try {
-            // Check for embedded elements that might be extracted.
-            if (embedTagNames.contains(e.getTagName())) {
-                // If the tag is marked as interesting, check the extractors.
-                for (EmbedExtractor extractor : extractors) {
-                    WebElement embed = extractor.extract(e);
-                    if (embed != null) {
-                        builder.embed(embed);
-                        return false;
-                    }
-                }
-            }
-        } catch (Exception exception) {
-            LogUtil.logToConsole(
-                "Exception happened in EmbedExtractors: " + exception.getMessage());
+        // Check for embedded elements that might be extracted.
+        WebElement embed = embedExtractors.extract(e);
+        if (embed != null) {
+            builder.embed(embed);
+            return false;
         }
 
         String className = e.getAttribute("class");
@@ -184,7 +170,8 @@ public class DomConverter implements DomWalker.Visitor {
             // Skip data tables, keep track of them to be extracted by RelevantElementsFinder
             // later.
             case "TABLE":
-                TableClassifier.Type type = TableClassifier.table(TableElement.as(e));
+                TableClassifier.Type type =
+                        TableClassifier.table(TableElement.as(e), isInsideEditableArea);
                 logTableInfo(e, type);
                 if (type == TableClassifier.Type.DATA) {
                     builder.dataTable(e);
@@ -217,9 +204,12 @@ public class DomConverter implements DomWalker.Visitor {
                 return false;
         }
 
+        if (builder.reuseElement(e)) return false;
         builder.startElement(e);
         isHiddenStack.push(isHiddenClass);
         isHiddenClass |= hasHiddenClassName;
+        isInsideEditableAreaStack.push(isInsideEditableArea);
+        if (!isInsideEditableArea) isInsideEditableArea = TableClassifier.isEditableArea(e);
         return true;
     }
 
@@ -233,16 +223,17 @@ public class DomConverter implements DomWalker.Visitor {
         }
         builder.endElement();
         isHiddenClass = isHiddenStack.pop();
+        isInsideEditableArea = isInsideEditableAreaStack.pop();
     }
 
     private static void logVisibilityInfo(Element e, boolean visible) {
         if (!LogUtil.isLoggable(LogUtil.DEBUG_LEVEL_VISIBILITY_INFO)) return;
-        Style style = DomUtil.getComputedStyle(e);
+        ComputedStyleCache.Snapshot style = ComputedStyleCache.get(e);
         LogUtil.logToConsole((visible ? "KEEP " : "SKIP ") + e.getTagName() +
                 ": id=" + e.getId() +
-                ", dsp=" + style.getDisplay() +
-                ", vis=" + style.getVisibility() +
-                ", opaq=" + style.getOpacity());
+                ", dsp=" + style.display +
+                ", vis=" + style.visibility +
+                ", opaq=" + style.opacity);
     }
 
     private static void logTableInfo(Element e, TableClassifier.Type type) {
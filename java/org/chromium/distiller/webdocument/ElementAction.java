@@ -4,40 +4,117 @@
 
 package org.chromium.distiller.webdocument;
 
+import org.chromium.distiller.ComputedStyleCache;
 import org.chromium.distiller.DomUtil;
 import org.chromium.distiller.labels.DefaultLabels;
+import org.chromium.distiller.labels.LabelRegistry;
 
 import com.google.gwt.core.client.JavaScriptObject;
 import com.google.gwt.core.client.JsArrayString;
 import com.google.gwt.dom.client.Element;
-import com.google.gwt.dom.client.Style;
 import com.google.gwt.regexp.shared.RegExp;
 
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * What an element does to the WebDocument being built. Instances are shared by the elements with
+ * the same signature, see Cache, so they must not be modified.
+ */
 public class ElementAction {
-    public boolean changesTagLevel = false;
-    public boolean flush = false;
-    public boolean isAnchor = false;
-    public JsArrayString labels = JavaScriptObject.createArray().<JsArrayString>cast();
+    public final boolean changesTagLevel;
+    public final boolean flush;
+    public final boolean isAnchor;
+    // The mask of the labels, see LabelRegistry.
+    public final int labelMask;
+    private final JsArrayString labels;
 
     private static final RegExp REG_COMMENT = RegExp.compile("\\bcomments?\\b");
     private static final int MAX_CLASS_COUNT = 2;
 
+    /**
+     * Memoizes the actions of a run by the signature of the elements: their tag name, display,
+     * class and id, and the few other properties getForElement() reads for some tags. Pages tend to
+     * repeat a small number of signatures many times, and each one is only computed once.
+     */
+    public static class Cache {
+        private final Map<String, ElementAction> actions = new HashMap<>();
+
+        public ElementAction get(Element element) {
+            ComputedStyleCache.Snapshot style = ComputedStyleCache.get(element);
+            String key = getSignature(element, style);
+            ElementAction action = actions.get(key);
+            if (action == null) {
+                action = compute(element, style);
+                actions.put(key, action);
+            }
+            return action;
+        }
+
+        int size() {
+            return actions.size();
+        }
+
+        private static String getSignature(Element element, ComputedStyleCache.Snapshot style) {
+            String tagName = element.getTagName();
+            StringBuilder key = new StringBuilder();
+            key.append(tagName).append('|').append(style.display);
+            switch (tagName) {
+                case "HTML":
+                case "BODY":
+                case "ARTICLE":
+                    // The class and id are ignored.
+                    return key.toString();
+                case "SPAN":
+                    key.append('|').append(style.cssFloat);
+                    break;
+                case "A":
+                    key.append('|').append(element.hasAttribute("href"));
+                    break;
+                default:
+                    break;
+            }
+            // The class and id can contain any character, so they are prefixed with their length.
+            appendField(key, element.getAttribute("class"));
+            appendField(key, element.getAttribute("id"));
+            return key.toString();
+        }
+
+        private static void appendField(StringBuilder key, String value) {
+            key.append('|').append(value.length()).append(':').append(value);
+        }
+    }
+
+    public int getLabelCount() {
+        return labels.length();
+    }
+
+    public String getLabel(int index) {
+        return labels.get(index);
+    }
+
     public static ElementAction getForElement(Element element) {
-        Style style = DomUtil.getComputedStyle(element);
-        ElementAction action = new ElementAction();
+        return compute(element, ComputedStyleCache.get(element));
+    }
+
+    private static ElementAction compute(Element element, ComputedStyleCache.Snapshot style) {
+        boolean changesTagLevel = false;
+        boolean flush = false;
+        boolean isAnchor = false;
+        JsArrayString labels = JavaScriptObject.createArray().<JsArrayString>cast();
         String tagName = element.getTagName();
-        switch (style.getDisplay()) {
+        switch (style.display) {
             case "inline":
                 break;
             case "inline-block":
             case "inline-flex":
-                action.changesTagLevel = true;
+                changesTagLevel = true;
                 break;
             case "block":
                 // Special casing for drop cap letter with "float".
                 // Having style "float" would imply "display: block".
                 // Ref: http://crbug.com/593128
-                if (!"none".equals(style.getProperty("float")) &&
+                if (!"none".equals(style.cssFloat) &&
                     "SPAN".equals(tagName)) {
                     break;
                 }
@@ -57,8 +134,8 @@ public class ElementAction {
             // table-caption
             // flex
             default:
-                action.flush = true;
-                action.changesTagLevel = true;
+                flush = true;
+                changesTagLevel = true;
                 break;
         }
 
@@ -68,46 +145,57 @@ public class ElementAction {
             String id = element.getAttribute("id");
             if ((REG_COMMENT.test(className) || REG_COMMENT.test(id)) &&
                     classCount <= MAX_CLASS_COUNT) {
-                action.labels.push(DefaultLabels.STRICTLY_NOT_CONTENT);
+                labels.push(DefaultLabels.STRICTLY_NOT_CONTENT);
             }
 
             switch (tagName) {
                 case "ASIDE":
                 case "NAV":
-                    action.labels.push(DefaultLabels.STRICTLY_NOT_CONTENT);
+                    labels.push(DefaultLabels.STRICTLY_NOT_CONTENT);
                     break;
                 case "LI":
-                    action.labels.push(DefaultLabels.LI);
+                    labels.push(DefaultLabels.LI);
                     break;
                 case "H1":
-                    action.labels.push(DefaultLabels.H1);
-                    action.labels.push(DefaultLabels.HEADING);
+                    labels.push(DefaultLabels.H1);
+                    labels.push(DefaultLabels.HEADING);
                     break;
                 case "H2":
-                    action.labels.push(DefaultLabels.H2);
-                    action.labels.push(DefaultLabels.HEADING);
+                    labels.push(DefaultLabels.H2);
+                    labels.push(DefaultLabels.HEADING);
                     break;
                 case "H3":
-                    action.labels.push(DefaultLabels.H3);
-                    action.labels.push(DefaultLabels.HEADING);
+                    labels.push(DefaultLabels.H3);
+                    labels.push(DefaultLabels.HEADING);
                     break;
                 case "H4":
                 case "H5":
                 case "H6":
-                    action.labels.push(DefaultLabels.HEADING);
+                    labels.push(DefaultLabels.HEADING);
                     break;
                 case "A":
                     // TODO(cjhopman): Anchors probably shouldn't unconditionally change the tag
                     // level.
-                    action.changesTagLevel = true;
+                    changesTagLevel = true;
                     if (element.hasAttribute("href")) {
-                        action.isAnchor = true;
+                        isAnchor = true;
                     }
                     break;
             }
         }
-        return action;
+        return new ElementAction(changesTagLevel, flush, isAnchor, labels);
     }
 
-    private ElementAction() {}
+    private ElementAction(boolean changesTagLevel, boolean flush, boolean isAnchor,
+            JsArrayString labels) {
+        this.changesTagLevel = changesTagLevel;
+        this.flush = flush;
+        this.isAnchor = isAnchor;
+        this.labels = labels;
+        int mask = 0;
+        for (int i = 0; i < labels.length(); i++) {
+            mask |= LabelRegistry.getMask(labels.get(i));
+        }
+        labelMask = mask;
+    }
 }
@@ -0,0 +1,67 @@
+// Copyright 2016 The Chromium Authors
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.distiller.webdocument;
+
+import org.chromium.distiller.OutputSanitizer;
+import org.chromium.distiller.StageInstrumentation;
+import org.chromium.distiller.TreeCloneBuilder;
+
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.Node;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Makes the clones the output of WebTexts is built from, already sanitized. The first clone of an
+ * element is sanitized and kept as a template, and later clones of the same element are copies of
+ * the template. One instance is shared by the output of all the WebTexts of a document, so the
+ * elements that are in the output of several of them (like the parent of consecutive text runs)
+ * are only sanitized once, and the output doesn't need to be scanned again to sanitize it.
+ */
+public class SanitizingCloner implements TreeCloneBuilder.Cloner {
+    private static final OutputSanitizer SANITIZER = new OutputSanitizer.Builder()
+            .resolveUrls()
+            .stripIds()
+            .stripStyles()
+            .stripTargets()
+            .stripFontColors()
+            .stripUnwantedClassNames()
+            .build();
+
+    private final Map<Node, Node> templates = new HashMap<>();
+    private final Map<Node, Node> templatesWithDirection = new HashMap<>();
+
+    @Override
+    public Node cloneNode(Node node, boolean retainDirection) {
+        if (node.getNodeType() != Node.ELEMENT_NODE) {
+            StageInstrumentation.addClonesProduced(1);
+            return node.cloneNode(false);
+        }
+        Map<Node, Node> cache = retainDirection ? templatesWithDirection : templates;
+        Node template = cache.get(node);
+        if (template == null) {
+            if (retainDirection) {
+                template = TreeCloneBuilder.cloneNode(node);
+            } else {
+                template = node.cloneNode(false);
+                StageInstrumentation.addClonesProduced(1);
+            }
+            sanitize(Element.as(template));
+            cache.put(node, template);
+        }
+        StageInstrumentation.addClonesProduced(1);
+        return template.cloneNode(false);
+    }
+
+    /**
+     * Sanitizes |e| alone, the same way WebText sanitized the whole output: links are made
+     * absolute, and ids, styles, targets, font colors, unwanted class names and unsafe attributes
+     * are stripped.
+     */
+    static void sanitize(Element e) {
+        SANITIZER.sanitizeElement(e);
+    }
+}
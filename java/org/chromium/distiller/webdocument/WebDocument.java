@@ -4,8 +4,10 @@
 
 package org.chromium.distiller.webdocument;
 
+import org.chromium.distiller.StageInstrumentation;
 import org.chromium.distiller.document.TextDocument;
 import org.chromium.distiller.document.TextBlock;
+import org.chromium.distiller.document.TextBlockStore;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -15,6 +17,17 @@ import java.util.List;
  * (blocks of text, image + caption, video, etc).
  */
 public class WebDocument {
+    /**
+     * Receives the output of the content elements, one element at a time and in document order.
+     */
+    public interface OutputSink {
+        /**
+         * @param index The position of this chunk in the output, starting at 0.
+         * @param html The output of one content element.
+         */
+        void onChunk(int index, String html);
+    }
+
     private final ArrayList<WebElement> elements;
 
     public WebDocument() {
@@ -61,54 +74,102 @@ public class WebDocument {
      * @return TextDocument object built from this web document.
      */
     public TextDocument createTextDocumentView() {
+        // The WebTexts are added to the blocks in one pass, and only the blocks get a view.
+        TextBlockStore store = new TextBlockStore(elements, elements.size());
         ArrayList<TextBlock> textBlocks = new ArrayList<>();
-        int i = getNextWebTextIndex(0);
-        if (i == elements.size()) return new TextDocument(textBlocks);
-
-        int curGroup = ((WebText)elements.get(i)).getGroupNumber();
-        int prevGroup = curGroup;
-        TextBlock curBlock = new TextBlock(elements, i);
-
-        for (i++; i < elements.size(); i++) {
+        for (int i = 0; i < elements.size(); i++) {
             if (!(elements.get(i) instanceof WebText)) continue;
-
-            curGroup = ((WebText) elements.get(i)).getGroupNumber();
-            if (curGroup == prevGroup) {
-                curBlock.mergeNext(new TextBlock(elements, i));
-            } else {
-                textBlocks.add(curBlock);
-                prevGroup = curGroup;
-                curBlock = new TextBlock(elements, i);
-            }
+            TextBlock block = store.addText(i);
+            if (block != null) textBlocks.add(block);
         }
-        textBlocks.add(curBlock);
         return new TextDocument(textBlocks);
     }
 
+    public String generateOutput(boolean textOnly) {
+        final StringBuilder output = new StringBuilder();
+        generateOutput(textOnly, new OutputSink() {
+            @Override
+            public void onChunk(int index, String html) {
+                output.append(html);
+            }
+        });
+        return output.toString();
+    }
+
     /**
-     * Find the next index of a WebText in the WebElement list 'elements'.
-     * @param startIndex The index to start from.
-     * @return The next index or elements.size if none exists.
+     * Generates the output of each content element and passes it to |sink| as soon as it is
+     * generated, so that the whole output never has to be held at once.
+     * @return The number of chunks passed to |sink|.
      */
-    private int getNextWebTextIndex(int startIndex) {
-        for (int i = startIndex; i < elements.size(); i++) {
-            if (elements.get(i) instanceof WebText) {
-                return i;
-            }
-        }
-        return elements.size();
+    public int generateOutput(boolean textOnly, OutputSink sink) {
+        OutputGenerator generator = new OutputGenerator(textOnly, sink);
+        generator.resume(elements.size());
+        return generator.getNumChunks();
     }
 
-    public String generateOutput(boolean textOnly) {
-        StringBuilder output = new StringBuilder();
-        for (WebElement e : elements) {
-            if (!e.getIsContent()) continue;
-            output.append(e.generateOutput(textOnly));
-            if (textOnly) {
-                // Put some space between paragraphs in text-only mode.
-                output.append("\n");
+    /**
+     * Generates the output like generateOutput(), but a few elements at a time, see
+     * OutputGenerator.resume().
+     */
+    public OutputGenerator startOutput(boolean textOnly, OutputSink sink) {
+        return new OutputGenerator(textOnly, sink);
+    }
+
+    public class OutputGenerator {
+        private final boolean textOnly;
+        private final OutputSink sink;
+        // Shared by the WebTexts, whose output often has elements in common. The text-only output
+        // of WebTexts doesn't clone anything.
+        private final SanitizingCloner cloner;
+        private int nextElement = 0;
+        private int numChunks = 0;
+
+        private OutputGenerator(boolean textOnly, OutputSink sink) {
+            this.textOnly = textOnly;
+            this.sink = sink;
+            cloner = textOnly ? null : new SanitizingCloner();
+        }
+
+        /**
+         * Generates the output of the next |maxElements| elements that are content.
+         * @return Whether the output of all the elements has been generated.
+         */
+        public boolean resume(int maxElements) {
+            int numGenerated = 0;
+            while (nextElement < elements.size() && numGenerated < maxElements) {
+                WebElement e = elements.get(nextElement++);
+                if (!e.getIsContent()) continue;
+                StageInstrumentation.start(getOutputStageName(e));
+                String output = e instanceof WebText ?
+                        ((WebText) e).generateOutput(textOnly, cloner) : e.generateOutput(textOnly);
+                StageInstrumentation.stop();
+                if (textOnly) {
+                    // Put some space between paragraphs in text-only mode.
+                    output += "\n";
+                }
+                sink.onChunk(numChunks++, output);
+                numGenerated++;
             }
+            return nextElement == elements.size();
         }
-        return output.toString();
+
+        /**
+         * @return The number of chunks passed to the sink so far.
+         */
+        public int getNumChunks() {
+            return numChunks;
+        }
+    }
+
+    // Class names aren't available in the compiled script.
+    private static String getOutputStageName(WebElement e) {
+        if (e instanceof WebText) return "WebText.generateOutput";
+        if (e instanceof WebFigure) return "WebFigure.generateOutput";
+        if (e instanceof WebImage) return "WebImage.generateOutput";
+        if (e instanceof WebTable) return "WebTable.generateOutput";
+        if (e instanceof WebVideo) return "WebVideo.generateOutput";
+        if (e instanceof WebTag) return "WebTag.generateOutput";
+        if (e instanceof WebEmbed) return "WebEmbed.generateOutput";
+        return "WebElement.generateOutput";
     }
 }
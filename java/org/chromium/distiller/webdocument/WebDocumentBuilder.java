@@ -25,6 +25,8 @@ import com.google.gwt.dom.client.Element;
 import com.google.gwt.dom.client.Node;
 import com.google.gwt.dom.client.Text;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Stack;
 
 /**
@@ -38,12 +40,96 @@ public class WebDocumentBuilder implements WebDocumentBuilderInterface {
     private WebDocument document = new WebDocument();
     private boolean flush;
     private Stack<ElementAction> actionStack = new Stack<ElementAction>();
+    private final ElementAction.Cache actionCache = new ElementAction.Cache();
     private WebTextBuilder webTextBuilder = new WebTextBuilder();
 
+    private WebDocumentCache cache;
+    // Parallel to actionStack: the cache entry being recorded for each element, if any.
+    private Stack<WebDocumentCache.Entry> entryStack = new Stack<WebDocumentCache.Entry>();
+    // Entries that haven't seen their first flushBlock() yet.
+    private List<WebDocumentCache.Entry> pendingEntries = new ArrayList<>();
+
     public WebDocumentBuilder() {
         groupNumber = 0;
     }
 
+    /**
+     * Records the subtrees of this run in |cache|, and reuses the ones it has from the previous
+     * run. The run must be started on the cache before building.
+     */
+    public void setWebDocumentCache(WebDocumentCache cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public boolean reuseElement(Element element) {
+        if (cache == null) return false;
+        WebDocumentCache.Entry entry = cache.getReusable(element);
+        if (entry == null) return false;
+
+        // The text pending before the element is flushed the way it was in the previous run.
+        for (ElementAction a : entry.prefixActions) {
+            actionStack.push(a);
+            entryStack.push(null);
+        }
+        flushBlock(groupNumber);
+        for (int i = 0; i < entry.prefixActions.size(); i++) {
+            actionStack.pop();
+            entryStack.pop();
+        }
+        groupNumber++;
+
+        // Only equality between the group numbers of consecutive WebTexts matters, and only
+        // differences between their offsets.
+        int start = document.getElements().size();
+        boolean hasText = false;
+        int lastGroup = 0;
+        for (WebElement e : entry.elements.subList(entry.start, entry.end)) {
+            e.setIsContent(false);
+            if (e instanceof WebText) {
+                WebText text = (WebText) e;
+                if (hasText && text.getGroupNumber() != lastGroup) groupNumber++;
+                hasText = true;
+                lastGroup = text.getGroupNumber();
+                int labelMask = cache.getLabelMask(text);
+                text.resetForReuse(nextWebTextIndex, groupNumber, labelMask);
+                nextWebTextIndex++;
+                cache.carryOverLabels(text, labelMask);
+            }
+            document.getElements().add(e);
+        }
+        groupNumber++;
+        flush = entry.flushAfter;
+
+        WebDocumentCache.Entry reused = recordReused(entry, start - entry.start);
+        addToOpenEntry(reused);
+        cache.countReuse();
+        return true;
+    }
+
+    private WebDocumentCache.Entry recordReused(WebDocumentCache.Entry entry, int shift) {
+        WebDocumentCache.Entry reused = new WebDocumentCache.Entry(entry.element);
+        reused.prefixActions = entry.prefixActions;
+        reused.elements = document.getElements();
+        reused.start = entry.start + shift;
+        reused.end = entry.end + shift;
+        reused.flushAfter = entry.flushAfter;
+        for (WebDocumentCache.Entry child : entry.children) {
+            reused.children.add(recordReused(child, shift));
+        }
+        cache.record(reused);
+        return reused;
+    }
+
+    private void addToOpenEntry(WebDocumentCache.Entry entry) {
+        for (int i = entryStack.size() - 1; i >= 0; i--) {
+            if (entryStack.get(i) != null) {
+                entryStack.get(i).children.add(entry);
+                return;
+            }
+        }
+    }
+
     @Override
     public void skipElement(Element e) {
         flush = true;
@@ -51,7 +137,7 @@ public class WebDocumentBuilder implements WebDocumentBuilderInterface {
 
     @Override
     public void startElement(Element element) {
-        ElementAction a = ElementAction.getForElement(element);
+        ElementAction a = actionCache.get(element);
         actionStack.push(a);
 
         if (a.changesTagLevel) {
@@ -63,6 +149,16 @@ public class WebDocumentBuilder implements WebDocumentBuilderInterface {
         }
 
         flush |= a.flush;
+
+        WebDocumentCache.Entry entry = null;
+        // Anchors are skipped because they change the text around them.
+        if (cache != null && a.flush && !a.isAnchor) {
+            entry = new WebDocumentCache.Entry(element);
+            entry.depth = actionStack.size() - 1;
+            entry.elements = document.getElements();
+            pendingEntries.add(entry);
+        }
+        entryStack.push(entry);
     }
 
     @Override
@@ -85,6 +181,14 @@ public class WebDocumentBuilder implements WebDocumentBuilderInterface {
         // Must be done after flushBlock() because the labels for the block come from the
         // actionStack.
         actionStack.pop();
+
+        WebDocumentCache.Entry entry = entryStack.pop();
+        if (entry != null) {
+            entry.end = document.getElements().size();
+            entry.flushAfter = flush;
+            cache.record(entry);
+            addToOpenEntry(entry);
+        }
     }
 
     @Override
@@ -135,21 +239,30 @@ public class WebDocumentBuilder implements WebDocumentBuilderInterface {
     }
 
     public void flushBlock(int group) {
+        for (WebDocumentCache.Entry entry : pendingEntries) {
+            entry.prefixActions =
+                    new ArrayList<>(actionStack.subList(entry.depth, actionStack.size()));
+        }
         WebText tb = webTextBuilder.build(nextWebTextIndex);
         if (tb != null) {
             tb.setGroupNumber(group);
             nextWebTextIndex++;
             addWebText(tb);
         }
+        if (!pendingEntries.isEmpty()) {
+            for (WebDocumentCache.Entry entry : pendingEntries) {
+                entry.start = document.getElements().size();
+            }
+            pendingEntries.clear();
+        }
     }
 
     protected void addWebText(final WebText tb) {
         for (ElementAction a : actionStack) {
-            for (int i = 0; i < a.labels.length(); i++) {
-                tb.addLabel(a.labels.get(i));
-            }
+            tb.addLabelMask(a.labelMask);
         }
         document.addText(tb);
+        if (cache != null) cache.recordLabels(tb);
     }
 
     /**
@@ -10,6 +10,12 @@ import com.google.gwt.dom.client.Text;
 
 public interface WebDocumentBuilderInterface {
     void skipElement(Element e);
+    /**
+     * Called instead of startElement() for an element that may be covered by a previous run. If
+     * this returns true, the builder has added everything the element's subtree would produce,
+     * and the subtree isn't walked.
+     */
+    boolean reuseElement(Element element);
     void startElement(Element element);
     void endElement();
     void textNode(Text textNode);
@@ -0,0 +1,255 @@
+// Copyright 2016 The Chromium Authors
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.distiller.webdocument;
+
+import org.chromium.distiller.DomUtil;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.core.client.JsArray;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.Node;
+import com.google.gwt.dom.client.NodeList;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the WebElements that a WebDocumentBuilder created for each block-level subtree of the
+ * page, so that a later run over the same page can reuse them instead of walking the subtrees
+ * that haven't changed. Changes are reported with DOM MutationRecords, see invalidate().
+ *
+ * A subtree is reused as a whole, so everything the builder derives from it must only depend on
+ * the subtree itself and its ancestors. This holds for the text, the labels and the tag levels,
+ * but not for decisions that depend on layout or on style rules matching siblings. These may be
+ * stale in a reused subtree until it changes again.
+ */
+public class WebDocumentCache {
+    /**
+     * A mutation record as reported by a javascript MutationObserver.
+     */
+    public static class MutationRecord extends JavaScriptObject {
+        protected MutationRecord() {}
+
+        public final native String getType() /*-{
+            return this.type;
+        }-*/;
+
+        public final native Node getTarget() /*-{
+            return this.target;
+        }-*/;
+
+        public final native NodeList<Node> getAddedNodes() /*-{
+            return this.addedNodes;
+        }-*/;
+
+        public final native NodeList<Node> getRemovedNodes() /*-{
+            return this.removedNodes;
+        }-*/;
+    }
+
+    /**
+     * The range of WebElements, in the element list of a run, that were created for an element
+     * and its subtree.
+     */
+    static class Entry {
+        final Element element;
+        // The actions on the builder's stack, from |element| up, when the text pending before
+        // |element| was flushed. That text gets the labels of these actions.
+        List<ElementAction> prefixActions;
+        List<WebElement> elements;
+        int start = -1;
+        int end = -1;
+        // The builder's flush state after the element ended.
+        boolean flushAfter;
+        final List<Entry> children = new ArrayList<>();
+        // The position of the element's action on the builder's stack, while it is open.
+        int depth;
+
+        Entry(Element element) {
+            this.element = element;
+        }
+    }
+
+    private Map<Element, Entry> entries = new HashMap<>();
+    // The label masks of the WebTexts, see LabelRegistry.
+    private Map<WebText, Integer> labels = new HashMap<>();
+    private Map<Element, Entry> newEntries;
+    private Map<WebText, Integer> newLabels;
+
+    private Element walkerRoot;
+    private boolean isMobileFriendly;
+    private boolean hasArticleElement;
+
+    private int numReusedElements;
+
+    /**
+     * Starts recording a run. Everything is dropped if the run doesn't walk the same root with the
+     * same settings as the previous one.
+     */
+    public void startRun(Element root, boolean mobileFriendly, boolean hasArticle) {
+        if (root != walkerRoot || mobileFriendly != isMobileFriendly ||
+                hasArticle != hasArticleElement) {
+            clear();
+        }
+        walkerRoot = root;
+        isMobileFriendly = mobileFriendly;
+        hasArticleElement = hasArticle;
+        newEntries = new HashMap<>();
+        newLabels = new HashMap<>();
+        numReusedElements = 0;
+    }
+
+    /**
+     * Makes the subtrees recorded by the current run available to the next one.
+     */
+    public void finishRun() {
+        entries = newEntries;
+        labels = newLabels;
+        newEntries = null;
+        newLabels = null;
+    }
+
+    /**
+     * @return The number of elements whose subtree was reused in the current (or last) run.
+     */
+    public int getNumReusedElements() {
+        return numReusedElements;
+    }
+
+    /**
+     * @return The number of subtrees available for reuse.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    public void clear() {
+        entries.clear();
+        labels.clear();
+        walkerRoot = null;
+    }
+
+    Entry getReusable(Element e) {
+        return entries.get(e);
+    }
+
+    void recordLabels(WebText text) {
+        newLabels.put(text, text.getLabelMask());
+    }
+
+    int getLabelMask(WebText text) {
+        return labels.get(text);
+    }
+
+    void carryOverLabels(WebText text, int labelMask) {
+        newLabels.put(text, labelMask);
+    }
+
+    void record(Entry entry) {
+        newEntries.put(entry.element, entry);
+    }
+
+    void countReuse() {
+        numReusedElements++;
+    }
+
+    /**
+     * Drops the subtrees that the given mutations may have changed.
+     */
+    public void invalidate(JsArray<MutationRecord> mutations) {
+        Set<Node> changedSubtrees = new HashSet<>();
+        for (int i = 0; i < mutations.length(); i++) {
+            MutationRecord mutation = mutations.get(i);
+            Node target = mutation.getTarget();
+            if (affectsStyleSheets(target)) {
+                clear();
+                return;
+            }
+            switch (mutation.getType()) {
+                case "attributes":
+                    // Attributes may change how the whole subtree is styled and labeled.
+                    changedSubtrees.add(target);
+                    break;
+                case "childList":
+                    // Nodes that moved into the tree are seen in a new context.
+                    if (!addChangedSubtrees(mutation.getAddedNodes(), changedSubtrees) ||
+                            !addChangedSubtrees(mutation.getRemovedNodes(), changedSubtrees)) {
+                        clear();
+                        return;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            invalidateNode(target);
+        }
+        invalidateSubtrees(changedSubtrees);
+    }
+
+    /**
+     * Drops the subtrees that contain |n|.
+     */
+    public void invalidateNode(Node n) {
+        for (; n != null; n = n.getParentNode()) {
+            if (n.getNodeType() == Node.ELEMENT_NODE) entries.remove(Element.as(n));
+        }
+    }
+
+    /**
+     * Drops the subtrees that contain |n| or are inside of it.
+     */
+    public void invalidateSubtree(Node n) {
+        Set<Node> subtrees = new HashSet<>();
+        subtrees.add(n);
+        invalidateNode(n);
+        invalidateSubtrees(subtrees);
+    }
+
+    private void invalidateSubtrees(Set<Node> subtrees) {
+        if (subtrees.isEmpty()) return;
+        for (Iterator<Map.Entry<Element, Entry>> it = entries.entrySet().iterator();
+                it.hasNext();) {
+            for (Node n = it.next().getKey(); n != null; n = n.getParentNode()) {
+                if (subtrees.contains(n)) {
+                    it.remove();
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return false if one of |nodes| changes the style sheets of the page, i.e. it is or contains
+     * a STYLE or LINK element.
+     */
+    private static boolean addChangedSubtrees(NodeList<Node> nodes, Set<Node> changedSubtrees) {
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Node n = nodes.getItem(i);
+            if (isStyleElement(n) || containsStyleElement(n)) return false;
+            changedSubtrees.add(n);
+        }
+        return true;
+    }
+
+    private static boolean containsStyleElement(Node n) {
+        return n.getNodeType() == Node.ELEMENT_NODE &&
+                DomUtil.querySelectorAll(n, "style, link").getLength() > 0;
+    }
+
+    private static boolean affectsStyleSheets(Node target) {
+        return isStyleElement(target) || isStyleElement(target.getParentNode());
+    }
+
+    private static boolean isStyleElement(Node n) {
+        if (n == null || n.getNodeType() != Node.ELEMENT_NODE) return false;
+        String tagName = Element.as(n).getTagName();
+        return "STYLE".equals(tagName) || "LINK".equals(tagName);
+    }
+}
@@ -9,6 +9,7 @@ import com.google.gwt.dom.client.ImageElement;
 import com.google.gwt.dom.client.NodeList;
 
 import org.chromium.distiller.DomUtil;
+import org.chromium.distiller.StageInstrumentation;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -50,6 +51,7 @@ public class WebImage extends WebElement {
 
     private void cloneAndProcessNode() {
         Element cloned = Element.as(imgElement.cloneNode(true));
+        StageInstrumentation.addClonesProduced(1);
         ImageElement ie = ImageElement.as(
                 DomUtil.getFirstElementByTagNameInc(cloned, "IMG"));
         if (!srcUrl.isEmpty()) {
@@ -12,6 +12,7 @@ import org.chromium.distiller.DomUtil;
 import org.chromium.distiller.LogUtil;
 import org.chromium.distiller.TreeCloneBuilder;
 import org.chromium.distiller.labels.DefaultLabels;
+import org.chromium.distiller.labels.LabelRegistry;
 
 import java.util.HashSet;
 import java.util.List;
@@ -23,7 +24,8 @@ public class WebText extends WebElement {
     private int start, end;
     private int firstWordNode, lastWordNode;
     private int numWords, numLinkedWords;
-    private Set<String> labels;
+    // The mask of the labels, see LabelRegistry.
+    private int labels;
     private int tagLevel;
     private int offsetBlock;
     // If this text needs to be split to place an image properly its group will signify how they
@@ -47,7 +49,7 @@ public class WebText extends WebElement {
         this.lastWordNode = lastWordNode;
         this.numWords = numWords;
         this.numLinkedWords = numLinkedWords;
-        this.labels = new HashSet<>();
+        this.labels = 0;
         this.tagLevel = tagLevel;
         this.offsetBlock = offsetBlock;
     }
@@ -93,16 +95,25 @@ public class WebText extends WebElement {
 
     @Override
     public String generateOutput(boolean textOnly) {
+        return generateOutput(textOnly, textOnly ? null : new SanitizingCloner());
+    }
+
+    /**
+     * Generates the output like generateOutput(textOnly), with the clones made by |cloner|, which
+     * can be shared by the WebTexts of a document. |cloner| isn't used for text-only output.
+     */
+    public String generateOutput(boolean textOnly, SanitizingCloner cloner) {
         if (hasLabel(DefaultLabels.TITLE)) return "";
+        if (textOnly) return generateTextOutput();
 
         // TODO(mdjones): Instead of doing this next part, in the future track font size weight
         // and etc. and wrap the nodes in a "p" tag.
-        Node clonedRoot = TreeCloneBuilder.buildTreeClone(getTextNodes());
+        Node clonedRoot = TreeCloneBuilder.buildTreeClone(getTextNodes(), cloner);
 
         // To keep formatting/structure, at least one parent element should be in the output. This
         // is necessary because many times a WebText is only a single text node.
         if (clonedRoot.getNodeType() != Node.ELEMENT_NODE) {
-            Node parentClone = getTextNodes().get(0).getParentElement().cloneNode(false);
+            Node parentClone = cloner.cloneNode(getTextNodes().get(0).getParentElement(), false);
             parentClone.appendChild(clonedRoot);
             clonedRoot = parentClone;
         }
@@ -126,43 +137,102 @@ public class WebText extends WebElement {
             }
             srcRoot = srcRoot.getParentElement();
             if ("BODY".equals(Element.as(srcRoot).getTagName())) break;
-            Node parentClone = srcRoot.cloneNode(false);
+            Node parentClone = cloner.cloneNode(srcRoot, false);
             parentClone.appendChild(clonedRoot);
             clonedRoot = parentClone;
         }
 
-        // Make sure links are absolute and IDs are gone.
-        DomUtil.makeAllLinksAbsolute(clonedRoot);
-        DomUtil.stripTargetAttributes(clonedRoot);
-        DomUtil.stripIds(clonedRoot);
-        DomUtil.stripUnwantedClassNames(clonedRoot);
-        DomUtil.stripFontColorAttributes(clonedRoot);
-        DomUtil.stripStyleAttributes(clonedRoot);
-        DomUtil.stripAllUnsafeAttributes(clonedRoot);
+        // The clones are sanitized by |cloner|: links are absolute and IDs are gone.
         // TODO(wychen): if we allow images in WebText later, add stripImageElements().
 
         // Since there are tag elements that are being wrapped
         // by a pair of {@link WebTag}s, we only need to
         // get the innerHTML, otherwise these tags would be duplicated.
         Element elementClonedRoot = Element.as(clonedRoot);
-        if (textOnly) {
-            return DomUtil.getTextFromTreeForTest(elementClonedRoot);
-        } else if (WebTag.canBeNested(elementClonedRoot.getTagName())) {
+        if (WebTag.canBeNested(elementClonedRoot.getTagName())) {
             return elementClonedRoot.getInnerHTML();
         }
         return elementClonedRoot.getString();
     }
 
+    /**
+     * Generates the text-only output straight from the text nodes and line breaks, without cloning
+     * them. A WebText doesn't cross block boundaries, so the whitespace is collapsed the way the
+     * innerText of its clone would be: runs of whitespace become a single space, and there is none
+     * at the start and end of the lines. The whitespace of preformatted text is kept as is.
+     */
+    private String generateTextOutput() {
+        StringBuilder output = new StringBuilder();
+        boolean pendingSpace = false;
+        Element lastParent = null;
+        boolean preformatted = false;
+        for (Node n : getTextNodes()) {
+            if (n.getNodeType() != Node.TEXT_NODE) {
+                // A line break.
+                output.append('\n');
+                pendingSpace = false;
+                continue;
+            }
+            String data = n.getNodeValue();
+            Element parent = n.getParentElement();
+            if (parent != lastParent) {
+                lastParent = parent;
+                preformatted = isPreformatted(parent);
+            }
+            if (preformatted) {
+                if (pendingSpace && !endsLine(output)) output.append(' ');
+                pendingSpace = false;
+                output.append(data);
+                continue;
+            }
+            for (int i = 0; i < data.length(); i++) {
+                char c = data.charAt(i);
+                if (c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f') {
+                    pendingSpace = true;
+                    continue;
+                }
+                if (pendingSpace && !endsLine(output)) output.append(' ');
+                pendingSpace = false;
+                output.append(c);
+            }
+        }
+        return output.toString();
+    }
+
+    private static boolean endsLine(StringBuilder output) {
+        return output.length() == 0 || output.charAt(output.length() - 1) == '\n';
+    }
+
+    private static boolean isPreformatted(Element e) {
+        for (; e != null; e = e.getParentElement()) {
+            switch (e.getTagName()) {
+                case "PRE":
+                case "TEXTAREA":
+                case "LISTING":
+                case "XMP":
+                case "PLAINTEXT":
+                    return true;
+                default:
+                    break;
+            }
+        }
+        return false;
+    }
+
     public List<Node> getTextNodes() {
         return allTextNodes.subList(start, end);
     }
 
     public void addLabel(String s) {
-        labels.add(s);
+        labels |= LabelRegistry.getMask(s);
+    }
+
+    public void addLabelMask(int mask) {
+        labels |= mask;
     }
 
     public boolean hasLabel(String s) {
-        return labels.contains(s);
+        return (labels & LabelRegistry.findMask(s)) != 0;
     }
 
     public Node getFirstNonWhitespaceTextNode() {
@@ -193,13 +263,20 @@ public class WebText extends WebElement {
         return tagLevel;
     }
 
+    /**
+     * @return A copy of the labels.
+     */
     public Set<String> getLabels() {
+        return LabelRegistry.getLabels(labels);
+    }
+
+    public int getLabelMask() {
         return labels;
     }
 
-    public Set<String> takeLabels() {
-        Set<String> res = labels;
-        labels = new HashSet<String>();
+    public int takeLabelMask() {
+        int res = labels;
+        labels = 0;
         return res;
     }
 
@@ -210,4 +287,14 @@ public class WebText extends WebElement {
     public int getGroupNumber() {
         return groupNumber;
     }
+
+    /**
+     * Prepares a WebText from a previous run to be added to a new WebDocument.
+     */
+    void resetForReuse(int offsetBlock, int groupNumber, int labels) {
+        this.offsetBlock = offsetBlock;
+        this.groupNumber = groupNumber;
+        this.labels = labels;
+        setIsContent(false);
+    }
 }
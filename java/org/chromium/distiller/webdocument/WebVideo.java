@@ -8,12 +8,16 @@ import com.google.gwt.dom.client.Document;
 import com.google.gwt.dom.client.Element;
 import com.google.gwt.dom.client.Node;
 import com.google.gwt.dom.client.VideoElement;
-import org.chromium.distiller.DomUtil;
+import org.chromium.distiller.OutputSanitizer;
+import org.chromium.distiller.StageInstrumentation;
 
 /**
  * WebVideo represents a video in the WebDocument potentially needing extraction.
  */
 public class WebVideo extends WebElement {
+    private static final OutputSanitizer SANITIZER =
+            new OutputSanitizer.Builder().resolveUrls().stripIds().build();
+
     /** The main video element. */
     private final Element videoElement;
     /** The original width of the video in pixels. */
@@ -38,6 +42,7 @@ public class WebVideo extends WebElement {
     public String generateOutput(boolean textOnly) {
         if (textOnly) return "";
         VideoElement ve = (VideoElement) videoElement.cloneNode(false);
+        StageInstrumentation.addClonesProduced(1);
         for (int i = 0; i < videoElement.getChildCount(); i++) {
             Node curNode = videoElement.getChild(i);
             if (curNode.getNodeType() != Node.ELEMENT_NODE) continue;
@@ -46,15 +51,11 @@ public class WebVideo extends WebElement {
             // Only take "source" and "track" children.
             if ("SOURCE".equals(el.getTagName()) || "TRACK".equals(el.getTagName())) {
                 ve.appendChild(el.cloneNode(false));
+                StageInstrumentation.addClonesProduced(1);
             }
         }
 
-        if (!ve.getPoster().isEmpty()) {
-            ve.setPoster(ve.getPoster());
-        }
-        DomUtil.makeAllSrcAttributesAbsolute(ve);
-        DomUtil.stripIds(ve);
-        DomUtil.stripAllUnsafeAttributes(ve);
+        SANITIZER.sanitize(ve);
 
         return ve.getString();
     }
@@ -0,0 +1,55 @@
+// Copyright 2016 The Chromium Authors
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.distiller;
+
+import com.google.gwt.dom.client.AnchorElement;
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.Element;
+
+public class AnchorIndexTest extends DomDistillerJsTestCase {
+    private static final String EXAMPLE_URL = "http://example.com/path/page.html";
+
+    public void testAnchors() {
+        mBody.setInnerHTML(
+                "<a href=\"page2\" class=\"next\" id=\"n\"> [2] </a>" +
+                "<div><a>no href</a></div>" +
+                "<a href=\"/page3\" style=\"display: none\">3</a>");
+        AnchorIndex index = AnchorIndex.create(mRoot, EXAMPLE_URL, null);
+        assertEquals(EXAMPLE_URL, index.getBaseUrl());
+        assertEquals(3, index.size());
+
+        AnchorIndex.Anchor first = index.get(0);
+        assertEquals(0, first.getPosition());
+        assertEquals("page2", first.getHref());
+        assertEquals("http://example.com/path/page2", first.getResolvedHref());
+        assertEquals("[2]", first.getTrimmedText());
+        assertEquals(2, first.getPageNumber());
+        assertEquals("next n", first.getClassAndId());
+        assertTrue(first.isVisible());
+
+        AnchorIndex.Anchor second = index.get(1);
+        assertEquals("", second.getHref());
+        assertEquals(EXAMPLE_URL, second.getResolvedHref());
+        assertEquals(-1, second.getPageNumber());
+
+        AnchorIndex.Anchor third = index.get(2);
+        assertEquals("http://example.com/page3", third.getResolvedHref());
+        assertFalse(third.isVisible());
+
+        // Lookups by element return the indexed anchors.
+        Element e = mBody.getElementsByTagName("A").getItem(2);
+        assertSame(third, index.get(e));
+        AnchorElement other = Document.get().createAnchorElement();
+        assertEquals(-1, index.get(other).getPosition());
+    }
+
+    public void testBaseElement() {
+        mHead.setInnerHTML("<base href=\"/other/\">");
+        mBody.setInnerHTML("<a href=\"page2\">2</a>");
+        AnchorIndex index = AnchorIndex.create(mRoot, EXAMPLE_URL, null);
+        assertEquals("http://example.com/other/", index.getBaseUrl());
+        assertEquals("http://example.com/other/page2", index.get(0).getResolvedHref());
+    }
+}
@@ -0,0 +1,76 @@
+// Copyright 2016 The Chromium Authors
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.distiller;
+
+import com.google.gwt.dom.client.Element;
+
+public class ComputedStyleCacheTest extends DomDistillerJsTestCase {
+    public void testSnapshot() {
+        Element div = TestUtil.createDiv(0);
+        mBody.appendChild(div);
+        div.setAttribute("style", "direction: rtl; float: left; opacity: 0.5");
+
+        ComputedStyleCache.Snapshot style = ComputedStyleCache.get(div);
+        assertEquals("block", style.display);
+        assertEquals("visible", style.visibility);
+        assertEquals(0.5, style.opacity, 0.001);
+        assertEquals("rtl", style.direction);
+        assertEquals("left", style.cssFloat);
+        assertTrue(style.isVisible());
+
+        div.setAttribute("style", "opacity: 0");
+        assertFalse(ComputedStyleCache.get(div).isVisible());
+        div.setAttribute("style", "visibility: hidden");
+        assertFalse(ComputedStyleCache.get(div).isVisible());
+        div.setAttribute("style", "display: none");
+        assertFalse(ComputedStyleCache.get(div).isVisible());
+    }
+
+    public void testNotCachedOutsideOfRun() {
+        Element div = TestUtil.createDiv(0);
+        mBody.appendChild(div);
+
+        assertFalse(ComputedStyleCache.isActive());
+        assertTrue(ComputedStyleCache.get(div).isVisible());
+        div.getStyle().setProperty("display", "none");
+        assertFalse(ComputedStyleCache.get(div).isVisible());
+    }
+
+    public void testCachedDuringRun() {
+        Element div = TestUtil.createDiv(0);
+        mBody.appendChild(div);
+
+        ComputedStyleCache.begin();
+        try {
+            assertTrue(ComputedStyleCache.isActive());
+            ComputedStyleCache.Snapshot style = ComputedStyleCache.get(div);
+            assertSame(style, ComputedStyleCache.get(div));
+
+            // The page is assumed not to change during a run.
+            div.getStyle().setProperty("display", "none");
+            assertTrue(ComputedStyleCache.get(div).isVisible());
+            assertTrue(DomUtil.isVisible(div));
+        } finally {
+            ComputedStyleCache.end();
+        }
+        assertFalse(ComputedStyleCache.isActive());
+        assertFalse(DomUtil.isVisible(div));
+    }
+
+    public void testNestedRuns() {
+        Element div = TestUtil.createDiv(0);
+        mBody.appendChild(div);
+
+        ComputedStyleCache.begin();
+        ComputedStyleCache.Snapshot style = ComputedStyleCache.get(div);
+        ComputedStyleCache.begin();
+        assertSame(style, ComputedStyleCache.get(div));
+        ComputedStyleCache.end();
+        assertTrue(ComputedStyleCache.isActive());
+        assertSame(style, ComputedStyleCache.get(div));
+        ComputedStyleCache.end();
+        assertFalse(ComputedStyleCache.isActive());
+    }
+}
@@ -4,9 +4,15 @@
 
 package org.chromium.distiller;
 
+import org.chromium.distiller.webdocument.DomConverter;
+import org.chromium.distiller.webdocument.WebDocument;
+
 import com.google.gwt.dom.client.Document;
 import com.google.gwt.dom.client.Element;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class ContentExtractorTest extends DomDistillerJsTestCase {
     private static final String CONTENT_TEXT = "Lorem Ipsum Lorem Ipsum Lorem Ipsum.";
     private static final String TITLE_TEXT = "I am the document title";
@@ -48,6 +54,30 @@ public class ContentExtractorTest extends DomDistillerJsTestCase {
                 extractedContent.contains(DomUtil.getInnerText(titleDiv)));
     }
 
+    public void testHiddenElementConsumer() {
+        Element contentDiv = TestUtil.createDiv(0);
+        contentDiv.appendChild(TestUtil.createText(CONTENT_TEXT));
+        mBody.appendChild(contentDiv);
+        Element hiddenDiv = TestUtil.createDiv(1);
+        hiddenDiv.appendChild(TestUtil.createText(TITLE_TEXT));
+        hiddenDiv.getStyle().setProperty("display", "none");
+        mBody.appendChild(hiddenDiv);
+
+        final List<Element> hidden = new ArrayList<>();
+        ContentExtractor extractor = new ContentExtractor(mRoot);
+        extractor.setHiddenElementConsumer(new DomConverter.HiddenElementConsumer() {
+            @Override
+            public void onHiddenElement(Element e) {
+                hidden.add(e);
+            }
+        });
+        String extractedContent = extractor.extractContent();
+        assertTrue(extractedContent, extractedContent.contains(CONTENT_TEXT));
+        assertFalse(extractedContent, extractedContent.contains(TITLE_TEXT));
+        assertTrue(hidden.contains(hiddenDiv));
+        assertFalse(hidden.contains(contentDiv));
+    }
+
     public void testExtractsEssentialWhitespace() {
         Element div = TestUtil.createDiv(0);
         mBody.appendChild(div);
@@ -646,6 +676,83 @@ public class ContentExtractorTest extends DomDistillerJsTestCase {
         ContentExtractor extractor = new ContentExtractor(mRoot);
         String extractedContent = extractor.extractContent();
         assertEquals(expected, TestUtil.removeAllDirAttributes(extractedContent));
+
+        // The fused traversal must produce the same content.
+        StringUtil.WordCounter wordCounter = StringUtil.sWordCounter;
+        extractor = new ContentExtractor(mRoot, true);
+        extractedContent = extractor.extractContent();
+        StringUtil.sWordCounter = wordCounter;
+        assertEquals(expected, TestUtil.removeAllDirAttributes(extractedContent));
+    }
+
+    public void testFusedTraversalMatchesSeparateScans() {
+        final String MARKUP_PARSER_TITLE = "title from markup parser";
+        createMeta("og:title", MARKUP_PARSER_TITLE);
+        createMeta("og:type", "video.movie");
+        createMeta("og:image", "http://test/image.jpeg");
+        createMeta("og:url", "http://test/test.html");
+        mHead.appendChild(TestUtil.createTitle(TITLE_TEXT));
+
+        final String html =
+            "<div>" +
+                "<p>" + CONTENT_TEXT + "</p>" +
+                "<p>" + CONTENT_TEXT + "</p>" +
+                "<a href=\"page/2\">next</a>" +
+            "</div>" +
+            "<article>" +
+                "<p>" + CONTENT_TEXT + "</p>" +
+                "<p>" + CONTENT_TEXT + "</p>" +
+            "</article>";
+        mBody.setInnerHTML(html);
+
+        ContentExtractor extractor = new ContentExtractor(mRoot);
+        String expectedContent = extractor.extractContent();
+        String expectedTitle = extractor.extractTitle();
+
+        StringUtil.WordCounter wordCounter = StringUtil.sWordCounter;
+        ContentExtractor fusedExtractor = new ContentExtractor(mRoot, true);
+        assertNull(fusedExtractor.getPageScanner());
+        String content = fusedExtractor.extractContent();
+        StringUtil.sWordCounter = wordCounter;
+
+        assertEquals(expectedContent, content);
+        assertEquals(expectedTitle, fusedExtractor.extractTitle());
+        assertEquals(MARKUP_PARSER_TITLE, fusedExtractor.extractTitle());
+        assertEquals(extractor.getStatisticsInfo().getWordCount(),
+                fusedExtractor.getStatisticsInfo().getWordCount());
+        assertEquals(1, fusedExtractor.getPageScanner().getAnchors().size());
+    }
+
+    public void testStreamingOutputMatchesString() {
+        final String html =
+            "<h1>" + CONTENT_TEXT + "</h1>" +
+            "<p>" + CONTENT_TEXT + "</p>" +
+            "<img src=\"http://example.com/image.png\" width=\"600\" height=\"400\">" +
+            "<ul><li>" + CONTENT_TEXT + "</li><li>" + CONTENT_TEXT + "</li></ul>" +
+            "<p>" + CONTENT_TEXT + "</p>";
+        mBody.setInnerHTML(html);
+
+        for (boolean textOnly : new boolean[] {false, true}) {
+            String expected = new ContentExtractor(mRoot).extractContent(textOnly);
+
+            final List<String> chunks = new ArrayList<>();
+            int numChunks = new ContentExtractor(mRoot).extractContent(textOnly,
+                    new WebDocument.OutputSink() {
+                        @Override
+                        public void onChunk(int index, String chunk) {
+                            assertEquals(chunks.size(), index);
+                            chunks.add(chunk);
+                        }
+                    });
+            assertEquals(chunks.size(), numChunks);
+            assertTrue(numChunks > 1);
+
+            StringBuilder joined = new StringBuilder();
+            for (String chunk : chunks) {
+                joined.append(chunk);
+            }
+            assertEquals(expected, joined.toString());
+        }
     }
 
     public void testDropCap() {
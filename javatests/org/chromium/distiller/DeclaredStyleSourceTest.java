@@ -0,0 +1,84 @@
+// Copyright 2016 The Chromium Authors
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.distiller;
+
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.Element;
+
+public class DeclaredStyleSourceTest extends DomDistillerJsTestCase {
+    private ComputedStyleCache.Snapshot read(String id) {
+        DeclaredStyleSource source = new DeclaredStyleSource(Document.get());
+        return source.read(Document.get().getElementById(id));
+    }
+
+    public void testDefaultDisplay() {
+        mBody.setInnerHTML(
+                "<div id=\"div\"><span id=\"span\">a</span></div>" +
+                "<ul><li id=\"li\">b</li></ul>" +
+                "<table><tbody><tr><td id=\"td\">c</td></tr></tbody></table>" +
+                "<p id=\"hidden\" hidden>d</p>" +
+                "<img id=\"img\" src=\"a.png\">");
+        assertEquals("block", read("div").display);
+        assertEquals("inline", read("span").display);
+        // Images are replaced inline elements, not inline-block.
+        assertEquals("inline", read("img").display);
+        assertEquals(DomUtil.getComputedStyle(Document.get().getElementById("img")).getDisplay(),
+                read("img").display);
+        assertEquals("list-item", read("li").display);
+        assertEquals("table-cell", read("td").display);
+        assertEquals("none", read("hidden").display);
+        assertTrue(read("div").isVisible());
+        assertFalse(read("hidden").isVisible());
+    }
+
+    public void testStyleRules() {
+        mHead.setInnerHTML(
+                "<style>" +
+                    ".hidden { display: none; }" +
+                    "#floating { float: left; }" +
+                    "div.faded { opacity: 0; }" +
+                    "@media print { #shown { display: none; } }" +
+                "</style>");
+        mBody.setInnerHTML(
+                "<div id=\"hidden\" class=\"hidden\">a</div>" +
+                "<div id=\"floating\">b</div>" +
+                "<div id=\"faded\" class=\"faded\">c</div>" +
+                "<div id=\"shown\">d</div>" +
+                "<div id=\"inline\" class=\"hidden\" style=\"display: inline\">e</div>");
+        assertEquals("none", read("hidden").display);
+        assertEquals("left", read("floating").cssFloat);
+        assertEquals(0.0, read("faded").opacity, 0.001);
+        assertFalse(read("faded").isVisible());
+        assertEquals("block", read("shown").display);
+        // The inline style wins.
+        assertEquals("inline", read("inline").display);
+    }
+
+    public void testInheritance() {
+        mBody.setInnerHTML(
+                "<div style=\"visibility: hidden\" dir=\"rtl\">" +
+                    "<p id=\"inner\">a</p>" +
+                    "<p id=\"visible\" style=\"visibility: visible\" dir=\"ltr\">b</p>" +
+                "</div>");
+        assertEquals("hidden", read("inner").visibility);
+        assertEquals("rtl", read("inner").direction);
+        assertEquals("visible", read("visible").visibility);
+        assertEquals("ltr", read("visible").direction);
+    }
+
+    public void testAsStyleCacheSource() {
+        // Detached elements have no computed style.
+        Element div = Document.get().createDivElement();
+        div.setAttribute("hidden", "");
+
+        ComputedStyleCache.setSource(new DeclaredStyleSource(Document.get()));
+        try {
+            assertFalse(DomUtil.isVisible(div));
+        } finally {
+            ComputedStyleCache.setSource(null);
+        }
+        assertNull(ComputedStyleCache.getSource());
+    }
+}
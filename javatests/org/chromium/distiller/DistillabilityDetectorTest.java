@@ -0,0 +1,249 @@
+// Copyright 2016 The Chromium Authors
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.distiller;
+
+import org.chromium.distiller.proto.DomDistillerProtos.DistillabilityModel;
+import org.chromium.distiller.proto.DomDistillerProtos.DistillabilityResult;
+
+public class DistillabilityDetectorTest extends DomDistillerJsTestCase {
+    private static final String LONG_TEXT =
+            "Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor " +
+            "incididunt ut labore et dolore magna aliqua. Ut enim ad minim veniam, quis nostrud " +
+            "exercitation ullamco laboris nisi ut aliquip ex ea commodo consequat.";
+
+    private static DistillabilityModel createModel(double threshold) {
+        DistillabilityModel model = DistillabilityModel.create();
+        model.setThreshold(threshold);
+        return model;
+    }
+
+    private static void addStump(DistillabilityModel model, int feature, double split,
+            double leftValue, double rightValue) {
+        DistillabilityModel.Stump stump = model.addStumps();
+        stump.setFeature(feature);
+        stump.setSplit(split);
+        stump.setLeftValue(leftValue);
+        stump.setRightValue(rightValue);
+    }
+
+    private static double getFeature(DistillabilityResult result, int feature) {
+        return result.getFeatures(feature);
+    }
+
+    private void addParagraphs(int count, String text) {
+        StringBuilder html = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            html.append("<p>" + text + "</p>");
+        }
+        mBody.setInnerHTML(html.toString());
+    }
+
+    public void testPathFeatures() {
+        DistillabilityDetector detector = new DistillabilityDetector(createModel(0));
+        DistillabilityResult result =
+                detector.detect(mRoot, "http://example.com/forum/view-123/index_4.php");
+        assertEquals(DistillabilityDetector.NUM_FEATURES, result.getFeaturesCount());
+        assertEquals(1.0, getFeature(result, DistillabilityDetector.PATH_FORUM), 0);
+        assertEquals(1.0, getFeature(result, DistillabilityDetector.PATH_INDEX), 0);
+        assertEquals(1.0, getFeature(result, DistillabilityDetector.PATH_VIEW), 0);
+        assertEquals(1.0, getFeature(result, DistillabilityDetector.PATH_PHP), 0);
+        assertEquals(0.0, getFeature(result, DistillabilityDetector.PATH_SEARCH), 0);
+        assertEquals(0.0, getFeature(result, DistillabilityDetector.DOMAIN), 0);
+        assertEquals(27.0, getFeature(result, DistillabilityDetector.PATH_LENGTH), 0);
+        assertEquals(3.0, getFeature(result, DistillabilityDetector.PATH_COMPONENTS), 0);
+        // "-" and "."
+        assertEquals(2.0, getFeature(result, DistillabilityDetector.SLUG_DETECTOR), 0);
+        assertEquals(2.0, getFeature(result, DistillabilityDetector.PATH_NUMBERS), 0);
+        assertEquals(11.0, getFeature(result, DistillabilityDetector.LAST_SEGMENT_LENGTH), 0);
+
+        result = detector.detect(mRoot, "http://example.com/a/b/");
+        assertEquals(2.0, getFeature(result, DistillabilityDetector.LAST_SEGMENT_LENGTH), 0);
+        result = detector.detect(mRoot, "http://example.com/");
+        assertEquals(1.0, getFeature(result, DistillabilityDetector.DOMAIN), 0);
+    }
+
+    public void testDocumentFeatures() {
+        mHead.setInnerHTML("<meta property=\"og:type\" content=\"article\">");
+        mBody.setInnerHTML(
+                "<p>" + LONG_TEXT + "</p>" +
+                "<ul><li><p>" + LONG_TEXT + "</p></li></ul>" +
+                "<p class=\"comment\">" + LONG_TEXT + "</p>" +
+                "<p style=\"display: none\">" + LONG_TEXT + "</p>" +
+                "<pre>abc</pre>" +
+                "<form><a href=\"/\">a</a></form>");
+        DistillabilityResult result =
+                new DistillabilityDetector(createModel(0)).detect(mRoot, "http://example.com/");
+        assertEquals(1.0, getFeature(result, DistillabilityDetector.OPEN_GRAPH), 0);
+        assertEquals(1.0, getFeature(result, DistillabilityDetector.FORM_COUNT), 0);
+        assertEquals(1.0, getFeature(result, DistillabilityDetector.ANCHOR_COUNT), 0);
+        assertEquals(9.0, getFeature(result, DistillabilityDetector.ELEMENT_COUNT), 0);
+        assertEquals(1.0 / 9, getFeature(result, DistillabilityDetector.ANCHOR_RATIO), 1e-9);
+        assertEquals(5.0, getFeature(result, DistillabilityDetector.NUM_PPRE), 0);
+        assertEquals(5.0 / 9, getFeature(result, DistillabilityDetector.PPRE_RATIO), 1e-9);
+        assertEquals(1.0 / 5, getFeature(result, DistillabilityDetector.ANCHOR_PPRE_RATIO), 1e-9);
+        // Only the hidden paragraph isn't visible.
+        assertEquals(4.0 / 5, getFeature(result, DistillabilityDetector.VISIBLE_PPRE_RATIO), 1e-9);
+        // No stump uses it.
+        assertEquals(-1.0, getFeature(result, DistillabilityDetector.VISIBLE_RATIO), 0);
+
+        // Only the first paragraph and the pre count.
+        int length = LONG_TEXT.length();
+        assertEquals(Math.sqrt(length - 140),
+                getFeature(result, DistillabilityDetector.MOZ_SCORE), 1e-9);
+        assertEquals(Math.sqrt(length) + Math.sqrt(3),
+                getFeature(result, DistillabilityDetector.MOZ_SCORE_ALL_SQRT), 1e-9);
+        assertEquals(length + 3,
+                getFeature(result, DistillabilityDetector.MOZ_SCORE_ALL_LINEAR), 1e-9);
+        assertFalse(result.getStoppedEarly());
+        assertEquals(5, result.getParagraphsVisited());
+    }
+
+    public void testCountFeatures() {
+        mBody.setInnerHTML(
+                "<form><input type=\"text\"><input type=\"text\"><input type=\"password\">" +
+                "<input type=\"submit\"></form><form></form>" +
+                "<a href=\"/\">a</a><a href=\"/\">b</a><p>c</p>");
+        DistillabilityResult result =
+                new DistillabilityDetector(createModel(0)).detect(mRoot, "http://example.com/");
+        assertEquals(2.0, getFeature(result, DistillabilityDetector.TEXT_COUNT), 0);
+        assertEquals(2.0, getFeature(result, DistillabilityDetector.NUM_TEXT_INPUT), 0);
+        assertEquals(1.0, getFeature(result, DistillabilityDetector.PASSWORD_COUNT), 0);
+        assertEquals(1.0, getFeature(result, DistillabilityDetector.NUM_PASSWORD_INPUT), 0);
+        assertEquals(2.0, getFeature(result, DistillabilityDetector.NUM_FORMS), 0);
+        assertEquals(2.0, getFeature(result, DistillabilityDetector.NUM_ANCHORS), 0);
+        assertEquals(9.0, getFeature(result, DistillabilityDetector.NUM_ELEMENTS), 0);
+        assertEquals(1.0, getFeature(result, DistillabilityDetector.NUM_PPRE), 0);
+        assertEquals(2.0, getFeature(result, DistillabilityDetector.ANCHOR_PPRE_RATIO), 0);
+    }
+
+    public void testVisibleRatio() {
+        mBody.setInnerHTML(
+                "<div>a</div><div style=\"display: none\">b</div>" +
+                "<div style=\"visibility: hidden\">c</div><div>d</div>");
+        DistillabilityModel model = createModel(0);
+        addStump(model, DistillabilityDetector.VISIBLE_RATIO, 0.9, 1, -1);
+        DistillabilityResult result =
+                new DistillabilityDetector(model).detect(mRoot, "http://example.com/");
+        assertEquals(0.5, getFeature(result, DistillabilityDetector.VISIBLE_RATIO), 1e-9);
+        assertTrue(result.getDistillable());
+    }
+
+    public void testVisibilityUsesBoundingRect() {
+        // The offset size ignores the transform, and rounds the width up to a pixel.
+        mBody.setInnerHTML(
+                "<p style=\"transform: scale(0)\">a</p>" +
+                "<p style=\"width: 0.3px; height: 0; overflow: hidden\">b</p>" +
+                "<p style=\"width: 0; height: 0; overflow: hidden\">c</p>" +
+                "<p>d</p>");
+        DistillabilityResult result =
+                new DistillabilityDetector(createModel(0)).detect(mRoot, "http://example.com/");
+        assertEquals(2.0 / 4, getFeature(result, DistillabilityDetector.VISIBLE_PPRE_RATIO), 1e-9);
+    }
+
+    public void testOpenGraphOnlyInHead() {
+        mBody.setInnerHTML("<meta property=\"og:type\" content=\"article\">");
+        DistillabilityDetector detector = new DistillabilityDetector(createModel(0));
+        DistillabilityResult result = detector.detect(mRoot, "http://example.com/");
+        assertEquals(0.0, getFeature(result, DistillabilityDetector.OPEN_GRAPH), 0);
+
+        mHead.setInnerHTML("<meta property=\"og:type\" content=\"article\">");
+        result = detector.detect(mRoot, "http://example.com/");
+        assertEquals(1.0, getFeature(result, DistillabilityDetector.OPEN_GRAPH), 0);
+    }
+
+    public void testFeatureNames() {
+        assertEquals(DistillabilityDetector.NUM_FEATURES,
+                DistillabilityDetector.FEATURE_NAMES.length);
+        assertEquals(DistillabilityDetector.OPEN_GRAPH,
+                DistillabilityDetector.getFeatureIndex("openGraph"));
+        assertEquals(DistillabilityDetector.VISIBLE_PPRE_RATIO,
+                DistillabilityDetector.getFeatureIndex("visiblePPRERatio"));
+        assertEquals(DistillabilityDetector.MOZ_SCORE_ALL_LINEAR,
+                DistillabilityDetector.getFeatureIndex("mozScoreAllLinear"));
+        assertEquals(DistillabilityDetector.NUM_TEXT_INPUT,
+                DistillabilityDetector.getFeatureIndex("numTextInput"));
+        assertEquals(-1, DistillabilityDetector.getFeatureIndex("innerTextLength"));
+    }
+
+    public void testRejectsInvalidFeatures() {
+        int[] invalidFeatures = { -1, DistillabilityDetector.NUM_FEATURES };
+        for (int feature : invalidFeatures) {
+            DistillabilityModel model = createModel(0);
+            addStump(model, DistillabilityDetector.DOMAIN, 0.5, 1, -1);
+            addStump(model, feature, 0.5, 1, -1);
+            try {
+                new DistillabilityDetector(model);
+                fail("Expected IllegalArgumentException for feature " + feature);
+            } catch (IllegalArgumentException e) {
+            }
+        }
+    }
+
+    public void testScore() {
+        addParagraphs(3, LONG_TEXT);
+        DistillabilityModel model = createModel(0.5);
+        addStump(model, DistillabilityDetector.MOZ_SCORE_ALL_LINEAR, 100, -1, 1);
+        addStump(model, DistillabilityDetector.DOMAIN, 0.5, 0.25, -0.25);
+        DistillabilityResult result =
+                new DistillabilityDetector(model).detect(mRoot, "http://example.com/a");
+        assertEquals(1.25, result.getScore(), 1e-9);
+        assertTrue(result.getDistillable());
+
+        result = new DistillabilityDetector(model).detect(mRoot, "http://example.com/");
+        assertEquals(0.75, result.getScore(), 1e-9);
+        assertTrue(result.getDistillable());
+
+        mBody.setInnerHTML("");
+        result = new DistillabilityDetector(model).detect(mRoot, "http://example.com/");
+        assertEquals(-1.25, result.getScore(), 1e-9);
+        assertFalse(result.getDistillable());
+    }
+
+    public void testStopsOnceDecided() {
+        addParagraphs(100, LONG_TEXT);
+        DistillabilityModel model = createModel(0);
+        addStump(model, DistillabilityDetector.MOZ_SCORE, 10, -1, 1);
+        DistillabilityResult result =
+                new DistillabilityDetector(model).detect(mRoot, "http://example.com/a");
+        assertTrue(result.getDistillable());
+        assertTrue(result.getStoppedEarly());
+        assertTrue(result.getParagraphsVisited() < 100);
+
+        // The visible paragraph ratio can't reach the split once enough paragraphs are hidden.
+        StringBuilder html = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            html.append(i < 50 ? "<p style=\"display: none\">a</p>" : "<p>a</p>");
+        }
+        mBody.setInnerHTML(html.toString());
+        model = createModel(0);
+        addStump(model, DistillabilityDetector.VISIBLE_PPRE_RATIO, 0.75, -1, 1);
+        result = new DistillabilityDetector(model).detect(mRoot, "http://example.com/a");
+        assertFalse(result.getDistillable());
+        assertTrue(result.getStoppedEarly());
+        assertTrue(result.getParagraphsVisited() < 100);
+        addParagraphs(100, LONG_TEXT);
+
+        // Without stumps on the mozScores, nothing needs to be visited.
+        model = createModel(0);
+        addStump(model, DistillabilityDetector.DOMAIN, 0.5, 1, -1);
+        result = new DistillabilityDetector(model).detect(mRoot, "http://example.com/a");
+        assertTrue(result.getDistillable());
+        assertTrue(result.getStoppedEarly());
+        assertEquals(0, result.getParagraphsVisited());
+    }
+
+    public void testVisitsEverythingWhileUndecided() {
+        addParagraphs(20, "a");
+        DistillabilityModel model = createModel(0);
+        addStump(model, DistillabilityDetector.MOZ_SCORE_ALL_LINEAR, 1000, -1, 1);
+        DistillabilityResult result =
+                new DistillabilityDetector(model).detect(mRoot, "http://example.com/a");
+        assertFalse(result.getDistillable());
+        assertFalse(result.getStoppedEarly());
+        assertEquals(20, result.getParagraphsVisited());
+        assertEquals(20.0,
+                getFeature(result, DistillabilityDetector.MOZ_SCORE_ALL_LINEAR), 0);
+    }
+}
@@ -0,0 +1,70 @@
+// Copyright 2016 The Chromium Authors
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.distiller;
+
+import com.google.gwt.dom.client.Element;
+
+public class DistillerContextTest extends DomDistillerJsTestCase {
+    public void testEnterAndExit() {
+        StringUtil.WordCounter wordCounter = StringUtil.sWordCounter;
+        int debugLevel = LogUtil.getDebugLevel();
+
+        DistillerContext context = new DistillerContext();
+        context.enter();
+        try {
+            assertTrue(context.isEntered());
+            assertSame(StringUtil.getDefaultWordCounter(), StringUtil.sWordCounter);
+            assertEquals(LogUtil.DEBUG_LEVEL_NONE, LogUtil.getDebugLevel());
+            assertFalse(ComputedStyleCache.isActive());
+
+            StringUtil.setWordCounter("abc");
+            LogUtil.setDebugLevel(LogUtil.DEBUG_LEVEL_PAGING_INFO);
+            ComputedStyleCache.begin();
+        } finally {
+            context.exit();
+        }
+        assertFalse(context.isEntered());
+        assertSame(wordCounter, StringUtil.sWordCounter);
+        assertEquals(debugLevel, LogUtil.getDebugLevel());
+        assertFalse(ComputedStyleCache.isActive());
+
+        // The context keeps its state until it is entered again.
+        context.enter();
+        try {
+            assertTrue(StringUtil.sWordCounter instanceof StringUtil.FastWordCounter);
+            assertEquals(LogUtil.DEBUG_LEVEL_PAGING_INFO, LogUtil.getDebugLevel());
+            assertTrue(ComputedStyleCache.isActive());
+            ComputedStyleCache.end();
+        } finally {
+            context.exit();
+        }
+    }
+
+    public void testInterleavedContexts() {
+        Element div = TestUtil.createDiv(0);
+        mBody.appendChild(div);
+
+        DistillerContext a = new DistillerContext();
+        DistillerContext b = new DistillerContext();
+
+        a.enter();
+        ComputedStyleCache.begin();
+        ComputedStyleCache.Snapshot style = ComputedStyleCache.get(div);
+        LogUtil.logToConsole("a");
+        a.exit();
+
+        b.enter();
+        assertFalse(ComputedStyleCache.isActive());
+        LogUtil.logToConsole("b");
+        assertEquals("b\n", LogUtil.getAndClearLog());
+        b.exit();
+
+        a.enter();
+        assertSame(style, ComputedStyleCache.get(div));
+        ComputedStyleCache.end();
+        assertEquals("a\n", LogUtil.getAndClearLog());
+        a.exit();
+    }
+}
@@ -0,0 +1,172 @@
+// Copyright 2016 The Chromium Authors
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.distiller;
+
+import org.chromium.distiller.proto.DomDistillerProtos.DomDistillerOptions;
+import org.chromium.distiller.proto.DomDistillerProtos.DomDistillerResult;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.core.client.JsArray;
+import com.google.gwt.dom.client.Element;
+
+public class DomDistillerTest extends DomDistillerJsTestCase {
+    private static final String CONTENT_TEXT = "Lorem Ipsum Lorem Ipsum Lorem Ipsum.";
+    private static final String TITLE_TEXT = "I am the document title";
+
+    private void createPage() {
+        mHead.appendChild(TestUtil.createTitle(TITLE_TEXT));
+        for (int i = 0; i < 3; i++) {
+            Element div = TestUtil.createDiv(i);
+            div.appendChild(TestUtil.createText(CONTENT_TEXT));
+            mBody.appendChild(div);
+        }
+    }
+
+    public void testApplyBatchMatchesApplyWithOptions() {
+        createPage();
+        DomDistillerOptions options = DomDistillerOptions.create();
+        options.setExtractTextOnly(true);
+        DomDistillerResult expected = DomDistiller.applyWithOptions(options);
+
+        JsArray<Element> roots = JsArray.createArray().cast();
+        roots.push(mRoot);
+        roots.push(mRoot);
+        JsArray<DomDistillerOptions> batchOptions = JsArray.createArray().cast();
+        batchOptions.push(options);
+        batchOptions.push(options);
+        JsArray<DomDistillerResult> results = DomDistiller.applyBatch(roots, batchOptions);
+
+        assertEquals(2, results.length());
+        for (int i = 0; i < results.length(); i++) {
+            DomDistillerResult result = results.get(i);
+            assertEquals(expected.getTitle(), result.getTitle());
+            assertEquals(expected.getDistilledContent().getHtml(),
+                    result.getDistilledContent().getHtml());
+            assertEquals(expected.getStatisticsInfo().getWordCount(),
+                    result.getStatisticsInfo().getWordCount());
+        }
+    }
+
+    public void testApplyBatchUsesDefaultOptionsWhenMissing() {
+        createPage();
+        DomDistillerResult expected = DomDistiller.apply();
+
+        JsArray<Element> roots = JsArray.createArray().cast();
+        roots.push(mRoot);
+        roots.push(mRoot);
+        JsArray<DomDistillerOptions> batchOptions = JsArray.createArray().cast();
+        DomDistillerOptions textOnly = DomDistillerOptions.create();
+        textOnly.setExtractTextOnly(true);
+        batchOptions.push(textOnly);
+        JsArray<DomDistillerResult> results = DomDistiller.applyBatch(roots, batchOptions);
+
+        assertEquals(2, results.length());
+        assertFalse(expected.getDistilledContent().getHtml().equals(
+                results.get(0).getDistilledContent().getHtml()));
+        assertEquals(expected.getDistilledContent().getHtml(),
+                results.get(1).getDistilledContent().getHtml());
+
+        results = DomDistiller.applyBatch(roots, null);
+        assertEquals(2, results.length());
+        assertEquals(expected.getDistilledContent().getHtml(),
+                results.get(0).getDistilledContent().getHtml());
+    }
+
+    public void testApplyBatchWithNoRoots() {
+        JsArray<Element> roots = JsArray.createArray().cast();
+        assertEquals(0, DomDistiller.applyBatch(roots, null).length());
+    }
+
+    public void testBudgetTruncatesResult() {
+        createPage();
+        DomDistillerOptions options = DomDistillerOptions.create();
+        options.setExtractTextOnly(true);
+        DomDistillerResult full = DomDistiller.applyWithOptions(options);
+        assertFalse(full.getTruncated());
+
+        options.setMaxNodesVisited(1000);
+        DomDistillerResult result = DomDistiller.applyWithOptions(options);
+        assertFalse(result.getTruncated());
+        assertEquals(full.getDistilledContent().getHtml(),
+                result.getDistilledContent().getHtml());
+
+        // The walk stops before the text of the second div.
+        options.setMaxNodesVisited(6);
+        result = DomDistiller.applyWithOptions(options);
+        assertTrue(result.getTruncated());
+        assertEquals(full.getTitle(), result.getTitle());
+        String html = result.getDistilledContent().getHtml();
+        assertTrue(html, html.length() < full.getDistilledContent().getHtml().length());
+    }
+
+    public void testSlicedDistillationMatchesApplyWithOptions() {
+        createPage();
+        DomDistillerOptions options = DomDistillerOptions.create();
+        DomDistillerResult expected = DomDistiller.applyWithOptions(options);
+
+        DomDistiller.Distillation distillation =
+                new DomDistiller.Distillation(mRoot, options, null, null, 1);
+        DomDistillerResult result = null;
+        while (result == null) {
+            result = distillation.runSlice(0);
+            // Other runs can be done between the slices.
+            DomDistiller.applyWithOptions(options);
+        }
+        assertTrue(distillation.getNumSlices() > 1);
+        assertEquals(expected.getTitle(), result.getTitle());
+        assertEquals(expected.getDistilledContent().getHtml(),
+                result.getDistilledContent().getHtml());
+        assertEquals(expected.getStatisticsInfo().getWordCount(),
+                result.getStatisticsInfo().getWordCount());
+        assertFalse(result.getTruncated());
+    }
+
+    public void testSlicedDistillationStopsWhenDomChanges() {
+        createPage();
+        DomDistillerOptions options = DomDistillerOptions.create();
+        DomDistiller.Distillation distillation =
+                new DomDistiller.Distillation(mRoot, options, null, null, 1);
+        // Only the document element is walked by the first slice, so the head is next.
+        assertNull(distillation.runSlice(0));
+        mHead.removeFromParent();
+        DomDistillerResult result = null;
+        while (result == null) {
+            result = distillation.runSlice(0);
+        }
+        assertTrue(result.getTruncated());
+        String html = result.getDistilledContent().getHtml();
+        assertFalse(html, html.contains(CONTENT_TEXT));
+    }
+
+    public void testApplyIncrementallyMatchesApplyWithOptions() {
+        mHead.appendChild(TestUtil.createTitle(TITLE_TEXT));
+        StringBuilder paragraph = new StringBuilder();
+        for (int i = 0; i < 5; i++) {
+            paragraph.append(CONTENT_TEXT).append(" ");
+        }
+        Element changing = null;
+        for (int i = 0; i < 3; i++) {
+            changing = TestUtil.createParagraph(paragraph.toString());
+            mBody.appendChild(changing);
+        }
+        DomDistillerOptions options = DomDistillerOptions.create();
+        DomDistillerResult result = DomDistiller.applyIncrementally(options, null);
+        assertEquals(DomDistiller.applyWithOptions(options).getDistilledContent().getHtml(),
+                result.getDistilledContent().getHtml());
+        JavaScriptObject observer = TestUtil.observeMutations(mRoot);
+
+        changing.appendChild(TestUtil.createText(" added text"));
+        result = DomDistiller.applyIncrementally(options, TestUtil.takeMutations(observer));
+        String html = result.getDistilledContent().getHtml();
+        assertEquals(DomDistiller.applyWithOptions(options).getDistilledContent().getHtml(), html);
+        assertTrue(html, html.contains("added text"));
+
+        changing.setAttribute("style", "display: none");
+        result = DomDistiller.applyIncrementally(options, TestUtil.takeMutations(observer));
+        html = result.getDistilledContent().getHtml();
+        assertEquals(DomDistiller.applyWithOptions(options).getDistilledContent().getHtml(), html);
+        assertFalse(html, html.contains("added text"));
+    }
+}
@@ -7,6 +7,7 @@ package org.chromium.distiller;
 import com.google.gwt.dom.client.Element;
 import com.google.gwt.dom.client.Node;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
@@ -31,6 +32,11 @@ public class DomWalkerTest extends DomDistillerJsTestCase {
      * Asserts that a node is visited for each entry in data.
      */
     private void doTestForValues(Node topNode, final List<VisitData> data) {
+        doTestForValues(topNode, data, null);
+    }
+
+    private void doTestForValues(Node topNode, final List<VisitData> data,
+            DistillerBudget budget) {
         final Stack<Node> path = new Stack<Node>();
         final Iterator<VisitData> it = data.iterator();
         new DomWalker(new DomWalker.Visitor() {
@@ -54,8 +60,9 @@ public class DomWalkerTest extends DomDistillerJsTestCase {
             public void exit(Node n) {
                 assertTrue(n.equals(path.pop()));
             }
-        }).walk(topNode);
+        }, budget).walk(topNode);
         assertFalse(it.hasNext());
+        assertTrue(path.isEmpty());
     }
 
     public void testTopNodeHasNextSiblingAndParent() {
@@ -120,4 +127,146 @@ public class DomWalkerTest extends DomDistillerJsTestCase {
                 ));
 
     }
+
+    public void testBudget() {
+        Node topNode = TestUtil.createDivTree().get(0);
+        DistillerBudget budget = new DistillerBudget(5, 0);
+        // Every node whose subtree was being walked is exited when the budget runs out.
+        doTestForValues(topNode, Arrays.asList(
+                new VisitData(0, true),
+                new VisitData(1, true),
+                new VisitData(2, true),
+                new VisitData(3, true),
+                new VisitData(4, true)
+                ), budget);
+        assertTrue(budget.isExhausted());
+        assertEquals(5, budget.getNumNodesVisited());
+
+        // An exhausted budget doesn't visit anything.
+        doTestForValues(topNode, Arrays.<VisitData>asList(), budget);
+
+        budget = new DistillerBudget(15, 0);
+        doTestForValues(topNode, Arrays.asList(
+                new VisitData(0, true),
+                new VisitData(1, false),
+                new VisitData(8, true),
+                new VisitData(9, true),
+                new VisitData(10, true),
+                new VisitData(11, true),
+                new VisitData(12, true),
+                new VisitData(13, true),
+                new VisitData(14, true)
+                ), budget);
+        assertFalse(budget.isExhausted());
+    }
+
+    /**
+     * Walks the node tree rooted at topNode, |nodesPerResume| nodes at a time, and returns the
+     * ids of the visited and exited nodes in order. The subtrees of the nodes with ids of the form
+     * 3k + 1 are skipped.
+     */
+    private List<String> recordWalk(Node topNode, int nodesPerResume) {
+        final List<String> events = new ArrayList<String>();
+        DomWalker walker = new DomWalker(new DomWalker.Visitor() {
+            @Override
+            public void skip(Element e) {}
+
+            @Override
+            public boolean visit(Node n) {
+                int id = JavaScript.parseInt(Element.as(n).getId());
+                events.add("visit " + id);
+                return id % 3 != 1;
+            }
+
+            @Override
+            public void exit(Node n) {
+                events.add("exit " + Element.as(n).getId());
+            }
+        });
+        walker.start(topNode);
+        int numResumes = 1;
+        while (!walker.resume(nodesPerResume)) {
+            numResumes++;
+        }
+        events.add("resumes " + numResumes);
+        return events;
+    }
+
+    public void testResume() {
+        Node topNode = TestUtil.createDivTree().get(0);
+        List<String> expected = recordWalk(topNode, Integer.MAX_VALUE);
+        assertEquals("resumes 1", expected.remove(expected.size() - 1));
+        for (int nodesPerResume = 1; nodesPerResume < 4; nodesPerResume++) {
+            List<String> events = recordWalk(topNode, nodesPerResume);
+            String resumes = events.remove(events.size() - 1);
+            assertEquals(expected, events);
+            assertFalse(resumes.equals("resumes 1"));
+        }
+    }
+
+    private static class RecordingVisitor implements DomWalker.Visitor {
+        final List<String> events = new ArrayList<String>();
+
+        @Override
+        public void skip(Element e) {}
+
+        @Override
+        public boolean visit(Node n) {
+            events.add("visit " + Element.as(n).getId());
+            return true;
+        }
+
+        @Override
+        public void exit(Node n) {
+            events.add("exit " + Element.as(n).getId());
+        }
+    }
+
+    public void testResumeAfterDomChange() {
+        // 0 > (1 > (2, 3), 4)
+        Element root = TestUtil.createDiv(0);
+        Element first = TestUtil.createDiv(1);
+        Element second = TestUtil.createDiv(2);
+        root.appendChild(first);
+        first.appendChild(second);
+        first.appendChild(TestUtil.createDiv(3));
+        Element last = TestUtil.createDiv(4);
+        root.appendChild(last);
+
+        // Changes that leave the next node in place don't affect the walk.
+        RecordingVisitor visitor = new RecordingVisitor();
+        DomWalker walker = new DomWalker(visitor);
+        walker.start(root);
+        assertFalse(walker.resume(2));
+        root.removeChild(last);
+        assertTrue(walker.resume(Integer.MAX_VALUE));
+        assertFalse(walker.wasInterrupted());
+        assertEquals(Arrays.asList("visit 0", "visit 1", "visit 2", "exit 2", "visit 3", "exit 3",
+                "exit 1", "exit 0"), visitor.events);
+
+        // The walk stops if the next node was moved, and exits the subtrees it was in.
+        visitor = new RecordingVisitor();
+        walker = new DomWalker(visitor);
+        walker.start(root);
+        assertFalse(walker.resume(2));
+        root.appendChild(second);
+        assertTrue(walker.resume(Integer.MAX_VALUE));
+        assertTrue(walker.wasInterrupted());
+        assertEquals(Arrays.asList("visit 0", "visit 1", "exit 1", "exit 0"), visitor.events);
+
+        // Or removed.
+        visitor = new RecordingVisitor();
+        walker = new DomWalker(visitor);
+        walker.start(root);
+        assertFalse(walker.resume(2));
+        root.removeChild(first);
+        assertTrue(walker.resume(Integer.MAX_VALUE));
+        assertTrue(walker.wasInterrupted());
+        assertEquals(Arrays.asList("visit 0", "visit 1", "exit 1", "exit 0"), visitor.events);
+
+        // A new walk starts over.
+        walker.start(root);
+        assertTrue(walker.resume(Integer.MAX_VALUE));
+        assertFalse(walker.wasInterrupted());
+    }
 }
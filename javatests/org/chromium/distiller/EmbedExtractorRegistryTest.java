@@ -0,0 +1,131 @@
+// Copyright 2016 The Chromium Authors
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.distiller;
+
+import org.chromium.distiller.extractors.embeds.EmbedExtractor;
+import org.chromium.distiller.extractors.embeds.EmbedExtractorRegistry;
+import org.chromium.distiller.extractors.embeds.ImageExtractor;
+import org.chromium.distiller.extractors.embeds.TwitterExtractor;
+import org.chromium.distiller.extractors.embeds.VimeoExtractor;
+import org.chromium.distiller.extractors.embeds.YouTubeExtractor;
+import org.chromium.distiller.proto.DomDistillerProtos.InstrumentationInfo;
+import org.chromium.distiller.proto.DomDistillerProtos.StageInfo;
+import org.chromium.distiller.webdocument.WebElement;
+import org.chromium.distiller.webdocument.WebEmbed;
+
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.Element;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class EmbedExtractorRegistryTest extends DomDistillerJsTestCase {
+    // Extracts the elements with a "data-embed" attribute, and throws for the ones with a
+    // "data-throw" attribute.
+    private static class FakeExtractor implements EmbedExtractor {
+        private final Set<String> tagNames;
+        int calls = 0;
+
+        FakeExtractor(String... tagNames) {
+            this.tagNames = new HashSet<>();
+            Collections.addAll(this.tagNames, tagNames);
+        }
+
+        @Override
+        public Set<String> getRelevantTagNames() {
+            return tagNames;
+        }
+
+        @Override
+        public WebElement extract(Element e) {
+            calls++;
+            if (e.hasAttribute("data-throw")) throw new RuntimeException("FakeExtractor");
+            if (!e.hasAttribute("data-embed")) return null;
+            return new WebEmbed(e, "fake", e.getAttribute("data-embed"), null);
+        }
+    }
+
+    public void testDefaultExtractorsByTagName() {
+        EmbedExtractorRegistry registry = EmbedExtractorRegistry.getDefault();
+        assertSame(registry, EmbedExtractorRegistry.getDefault());
+
+        List<EmbedExtractor> iframe = registry.getExtractors("IFRAME");
+        assertEquals(3, iframe.size());
+        assertTrue(iframe.get(0) instanceof TwitterExtractor);
+        assertTrue(iframe.get(1) instanceof VimeoExtractor);
+        assertTrue(iframe.get(2) instanceof YouTubeExtractor);
+
+        List<EmbedExtractor> img = registry.getExtractors("IMG");
+        assertEquals(1, img.size());
+        assertTrue(img.get(0) instanceof ImageExtractor);
+
+        assertTrue(registry.getExtractors("DIV").isEmpty());
+        assertNull(registry.extract(Document.get().createDivElement()));
+    }
+
+    public void testOnlyRelevantExtractorsRun() {
+        EmbedExtractorRegistry registry = new EmbedExtractorRegistry();
+        FakeExtractor iframe = new FakeExtractor("IFRAME");
+        FakeExtractor iframeAndObject = new FakeExtractor("IFRAME", "OBJECT");
+        registry.register("iframe", iframe);
+        registry.register("iframeAndObject", iframeAndObject);
+
+        Element object = Document.get().createObjectElement();
+        object.setAttribute("data-embed", "1");
+        WebEmbed embed = (WebEmbed) registry.extract(object);
+        assertEquals("1", embed.getId());
+        assertEquals(0, iframe.calls);
+        assertEquals(1, iframeAndObject.calls);
+
+        // The first extractor that extracts the element wins.
+        Element element = TestUtil.createIframe();
+        element.setAttribute("data-embed", "2");
+        embed = (WebEmbed) registry.extract(element);
+        assertEquals("2", embed.getId());
+        assertEquals(1, iframe.calls);
+        assertEquals(1, iframeAndObject.calls);
+
+        assertNull(registry.extract(Document.get().createSpanElement()));
+        assertEquals(1, iframe.calls);
+        assertEquals(1, iframeAndObject.calls);
+    }
+
+    public void testThrowingExtractorIsSkipped() {
+        EmbedExtractorRegistry registry = new EmbedExtractorRegistry();
+        FakeExtractor throwing = new FakeExtractor("IFRAME");
+        FakeExtractor next = new FakeExtractor("IFRAME");
+        registry.register("throwing", throwing);
+        registry.register("next", next);
+
+        Element element = TestUtil.createIframe();
+        element.setAttribute("data-throw", "");
+        assertNull(registry.extract(element));
+        assertEquals(1, throwing.calls);
+        assertEquals(1, next.calls);
+    }
+
+    public void testStages() {
+        EmbedExtractorRegistry registry = new EmbedExtractorRegistry();
+        registry.register("fake", new FakeExtractor("IFRAME"));
+        Element hit = TestUtil.createIframe();
+        hit.setAttribute("data-embed", "1");
+        Element miss = TestUtil.createIframe();
+
+        StageInstrumentation.begin();
+        registry.extract(hit);
+        registry.extract(miss);
+        registry.extract(miss);
+        InstrumentationInfo info = InstrumentationInfo.create();
+        StageInstrumentation.end(info);
+
+        assertEquals(1, info.getStagesCount());
+        StageInfo stage = info.getStages(0);
+        assertEquals("EmbedExtractor: fake", stage.getName());
+        assertEquals(3, stage.getRuns());
+        assertEquals(1, stage.getHits());
+    }
+}
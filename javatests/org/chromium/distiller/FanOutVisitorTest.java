@@ -0,0 +1,124 @@
+// Copyright 2016 The Chromium Authors
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.distiller;
+
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class FanOutVisitorTest extends DomDistillerJsTestCase {
+    /**
+     * Records the visit() and exit() calls it gets, and declines the nodes with the given ids.
+     */
+    private static class RecordingVisitor implements DomWalker.Visitor {
+        final Set<Integer> declined;
+        final List<String> calls = new ArrayList<>();
+
+        RecordingVisitor(Integer... declinedIds) {
+            declined = new HashSet<>(Arrays.asList(declinedIds));
+        }
+
+        @Override
+        public boolean visit(Node n) {
+            int id = getId(n);
+            calls.add("visit " + id);
+            return !declined.contains(id);
+        }
+
+        @Override
+        public void exit(Node n) {
+            calls.add("exit " + getId(n));
+        }
+
+        @Override
+        public void skip(Element e) {}
+
+        private static int getId(Node n) {
+            return JavaScript.parseInt(Element.as(n).getId());
+        }
+    }
+
+    private static List<String> walkAlone(Node root, RecordingVisitor visitor) {
+        new DomWalker(visitor).walk(root);
+        return visitor.calls;
+    }
+
+    public void testEachVisitorSeesItsOwnWalk() {
+        List<Node> nodes = TestUtil.createDivTree();
+        Node root = nodes.get(0);
+
+        List<String> expectedA = walkAlone(root, new RecordingVisitor(2, 9));
+        List<String> expectedB = walkAlone(root, new RecordingVisitor(1, 12));
+        List<String> expectedC = walkAlone(root, new RecordingVisitor());
+
+        RecordingVisitor a = new RecordingVisitor(2, 9);
+        RecordingVisitor b = new RecordingVisitor(1, 12);
+        RecordingVisitor c = new RecordingVisitor();
+        FanOutVisitor fanOut = new FanOutVisitor();
+        fanOut.addVisitor(a);
+        fanOut.addVisitor(b);
+        fanOut.addVisitor(c);
+        new DomWalker(fanOut).walk(root);
+
+        assertEquals(expectedA, a.calls);
+        assertEquals(expectedB, b.calls);
+        assertEquals(expectedC, c.calls);
+    }
+
+    public void testAllVisitorsDecline() {
+        List<Node> nodes = TestUtil.createDivTree();
+        Node root = nodes.get(0);
+
+        List<String> expected = walkAlone(root, new RecordingVisitor(1, 8));
+
+        RecordingVisitor a = new RecordingVisitor(1, 8);
+        RecordingVisitor b = new RecordingVisitor(1, 8);
+        FanOutVisitor fanOut = new FanOutVisitor();
+        fanOut.addVisitor(a);
+        fanOut.addVisitor(b);
+        new DomWalker(fanOut).walk(root);
+
+        assertEquals(expected, a.calls);
+        assertEquals(expected, b.calls);
+    }
+
+    public void testScopedVisitor() {
+        List<Node> nodes = TestUtil.createDivTree();
+        Node root = nodes.get(0);
+        Node scope = nodes.get(8);
+
+        List<String> expectedScoped = walkAlone(scope, new RecordingVisitor(9));
+        List<String> expectedWhole = walkAlone(root, new RecordingVisitor());
+
+        RecordingVisitor scoped = new RecordingVisitor(9);
+        RecordingVisitor whole = new RecordingVisitor();
+        FanOutVisitor fanOut = new FanOutVisitor();
+        fanOut.addVisitor(scoped, scope);
+        fanOut.addVisitor(whole);
+        new DomWalker(fanOut).walk(root);
+
+        assertEquals(expectedScoped, scoped.calls);
+        assertEquals(expectedWhole, whole.calls);
+    }
+
+    public void testScopedVisitorDecliningItsScope() {
+        List<Node> nodes = TestUtil.createDivTree();
+        Node root = nodes.get(0);
+        Node scope = nodes.get(1);
+
+        RecordingVisitor scoped = new RecordingVisitor(1);
+        FanOutVisitor fanOut = new FanOutVisitor();
+        fanOut.addVisitor(scoped, scope);
+        fanOut.addVisitor(new RecordingVisitor(1));
+        new DomWalker(fanOut).walk(root);
+
+        assertEquals(Arrays.asList("visit 1"), scoped.calls);
+    }
+}
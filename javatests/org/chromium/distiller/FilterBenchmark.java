@@ -0,0 +1,260 @@
+// Copyright 2016 The Chromium Authors
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.distiller;
+
+import org.chromium.distiller.document.TextDocument;
+import org.chromium.distiller.extractors.ArticleExtractor;
+import org.chromium.distiller.filters.english.NumWordsRulesClassifier;
+import org.chromium.distiller.filters.heuristics.BlockProximityFusion;
+import org.chromium.distiller.filters.heuristics.KeepLargestBlockFilter;
+import org.chromium.distiller.filters.heuristics.SimilarSiblingContentExpansion;
+
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.Element;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures how long the boilerpipe filters take on TextDocuments, to catch regressions in the
+ * CPU cost of the extraction. Every iteration runs on a fresh document, and only the measured
+ * filter is timed. See JsTestEntry.runBenchmarks().
+ */
+public class FilterBenchmark {
+    private static final String[] WORDS = {
+        "lorem", "ipsum", "dolor", "sit", "amet", "consectetur", "adipiscing", "elit", "sed", "do",
+        "eiusmod", "tempor", "incididunt", "ut", "labore", "et", "dolore", "magna", "aliqua.",
+    };
+
+    /**
+     * Creates the documents a benchmark runs on.
+     */
+    public interface DocumentFactory {
+        TextDocument create();
+    }
+
+    public static class Result {
+        public final String name;
+        public final int numBlocks;
+        public final int iterations;
+        public final double totalTime;
+
+        Result(String name, int numBlocks, int iterations, double totalTime) {
+            this.name = name;
+            this.numBlocks = numBlocks;
+            this.iterations = iterations;
+            this.totalTime = totalTime;
+        }
+
+        public double getTimePerIteration() {
+            return totalTime / iterations;
+        }
+
+        @Override
+        public String toString() {
+            return name + " (" + numBlocks + " blocks): " + getTimePerIteration() + " ms";
+        }
+    }
+
+    private abstract static class Benchmark {
+        final String name;
+
+        Benchmark(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Brings a fresh document into the state the measured step expects. This isn't timed.
+         */
+        void prepare(TextDocument doc) {}
+
+        abstract void run(TextDocument doc);
+    }
+
+    private static List<Benchmark> createBenchmarks() {
+        List<Benchmark> benchmarks = new ArrayList<>();
+        benchmarks.add(new Benchmark("NumWordsRulesClassifier") {
+            @Override
+            void run(TextDocument doc) {
+                NumWordsRulesClassifier.INSTANCE.process(doc);
+            }
+        });
+        benchmarks.add(new Benchmark("SimilarSiblingContentExpansion") {
+            final SimilarSiblingContentExpansion filter =
+                    new SimilarSiblingContentExpansion.Builder()
+                            .allowCrossHeadings()
+                            .maxLinkDensity(0.5)
+                            .maxBlockDistance(10)
+                            .build();
+
+            @Override
+            void prepare(TextDocument doc) {
+                NumWordsRulesClassifier.INSTANCE.process(doc);
+            }
+
+            @Override
+            void run(TextDocument doc) {
+                filter.process(doc);
+            }
+        });
+        benchmarks.add(new Benchmark("BlockProximityFusion") {
+            @Override
+            void prepare(TextDocument doc) {
+                NumWordsRulesClassifier.INSTANCE.process(doc);
+            }
+
+            @Override
+            void run(TextDocument doc) {
+                BlockProximityFusion.PRE_FILTERING.process(doc);
+            }
+        });
+        benchmarks.add(new Benchmark("KeepLargestBlockFilter") {
+            @Override
+            void prepare(TextDocument doc) {
+                NumWordsRulesClassifier.INSTANCE.process(doc);
+                BlockProximityFusion.PRE_FILTERING.process(doc);
+            }
+
+            @Override
+            void run(TextDocument doc) {
+                KeepLargestBlockFilter.INSTANCE_EXPAND_TO_SIBLINGS.process(doc);
+            }
+        });
+        benchmarks.add(new Benchmark("ArticleExtractor") {
+            @Override
+            void run(TextDocument doc) {
+                ArticleExtractor.INSTANCE.process(doc, Collections.<String>emptyList());
+            }
+        });
+        return benchmarks;
+    }
+
+    /**
+     * Runs every benchmark on synthetic documents with |numBlocks| blocks.
+     */
+    public static List<Result> run(final int numBlocks, int iterations) {
+        return run(new DocumentFactory() {
+            @Override
+            public TextDocument create() {
+                return createSyntheticDocument(numBlocks, 0);
+            }
+        }, iterations);
+    }
+
+    /**
+     * Runs every benchmark on documents converted from |html|, e.g. a page from a corpus.
+     */
+    public static List<Result> runOnHtml(final String html, int iterations) {
+        return run(new DocumentFactory() {
+            @Override
+            public TextDocument create() {
+                // The page must be attached for its computed styles to be available.
+                Element div = Document.get().createDivElement();
+                div.setInnerHTML(html);
+                Document.get().getBody().appendChild(div);
+                TextDocument doc = TestTextDocumentBuilder.fromPage(div);
+                div.removeFromParent();
+                return doc;
+            }
+        }, iterations);
+    }
+
+    public static List<Result> run(DocumentFactory factory, int iterations) {
+        List<Result> results = new ArrayList<>();
+        for (Benchmark benchmark : createBenchmarks()) {
+            double totalTime = 0;
+            int numBlocks = 0;
+            for (int i = 0; i < iterations; i++) {
+                TextDocument doc = factory.create();
+                numBlocks = doc.getTextBlocks().size();
+                benchmark.prepare(doc);
+                double start = DomUtil.getTime();
+                benchmark.run(doc);
+                totalTime += DomUtil.getTime() - start;
+            }
+            results.add(new Result(benchmark.name, numBlocks, iterations, totalTime));
+        }
+        return results;
+    }
+
+    /**
+     * Creates a document that looks like a typical article page: navigation links, a title, the
+     * article (with headings, lists and short paragraphs in between), comments and a footer. Each
+     * block is an element of a real page, which is converted like the pages of runOnHtml(), so
+     * that the filters that look at the DOM see the structure they expect. The same |seed| always
+     * gives the same document.
+     */
+    public static TextDocument createSyntheticDocument(int numBlocks, int seed) {
+        Random random = new Random(seed);
+        Element page = Document.get().createDivElement();
+
+        int numNav = numBlocks / 10;
+        int numComments = numBlocks / 5;
+        int numFooter = numBlocks / 10;
+        int numArticle = numBlocks - numNav - numComments - numFooter - 1;
+        Element nav = addElement(page, "UL");
+        for (int i = 0; i < numNav; i++) {
+            addLink(addElement(nav, "LI"), createText(random, 1, 3));
+        }
+        addText(page, "H1", createText(random, 5, 12));
+        Element article = addElement(page, "DIV");
+        for (int i = 0; i < numArticle; i++) {
+            int kind = random.nextInt(10);
+            if (kind == 0) {
+                addText(article, "H2", createText(random, 3, 8));
+            } else if (kind == 1) {
+                addText(addElement(article, "UL"), "LI", createText(random, 5, 20));
+            } else if (kind == 2) {
+                addText(article, "P", createText(random, 2, 10));
+            } else {
+                addText(article, "P", createText(random, 30, 120));
+            }
+        }
+        // The class name makes these blocks STRICTLY_NOT_CONTENT, see ElementAction.
+        Element comments = addElement(page, "DIV");
+        comments.setClassName("comments");
+        for (int i = 0; i < numComments; i++) {
+            addText(comments, "P", createText(random, 5, 40));
+        }
+        Element footer = addElement(page, "DIV");
+        for (int i = 0; i < numFooter; i++) {
+            addLink(addElement(footer, "DIV"), createText(random, 1, 4));
+        }
+
+        // The page must be attached for its computed styles to be available.
+        Document.get().getBody().appendChild(page);
+        TextDocument doc = TestTextDocumentBuilder.fromPage(page);
+        page.removeFromParent();
+        return doc;
+    }
+
+    private static Element addElement(Element parent, String tagName) {
+        Element e = Document.get().createElement(tagName);
+        parent.appendChild(e);
+        return e;
+    }
+
+    private static void addText(Element parent, String tagName, String text) {
+        addElement(parent, tagName).appendChild(Document.get().createTextNode(text));
+    }
+
+    private static void addLink(Element parent, String text) {
+        Element a = addElement(parent, "A");
+        a.setAttribute("href", "#");
+        a.appendChild(Document.get().createTextNode(text));
+    }
+
+    private static String createText(Random random, int minWords, int maxWords) {
+        int numWords = minWords + random.nextInt(maxWords - minWords + 1);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < numWords; i++) {
+            if (i > 0) text.append(' ');
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,66 @@
+// Copyright 2016 The Chromium Authors
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.distiller;
+
+import org.chromium.distiller.document.TextBlock;
+import org.chromium.distiller.document.TextDocument;
+import org.chromium.distiller.extractors.ArticleExtractor;
+import org.chromium.distiller.labels.DefaultLabels;
+
+import java.util.Collections;
+import java.util.List;
+
+public class FilterBenchmarkTest extends DomDistillerJsTestCase {
+    public void testSyntheticDocumentIsDeterministic() {
+        TextDocument a = FilterBenchmark.createSyntheticDocument(100, 1);
+        TextDocument b = FilterBenchmark.createSyntheticDocument(100, 1);
+        assertEquals(100, a.getTextBlocks().size());
+        assertEquals(a.debugString(), b.debugString());
+    }
+
+    public void testSyntheticDocumentStructure() {
+        TextDocument doc = FilterBenchmark.createSyntheticDocument(100, 0);
+        List<TextBlock> blocks = doc.getTextBlocks();
+        // Navigation links first, then the title.
+        assertEquals(1.0, blocks.get(0).getLinkDensity(), 1e-6);
+        assertTrue(blocks.get(0).hasLabel(DefaultLabels.LI));
+        assertTrue(blocks.get(10).hasLabel(DefaultLabels.H1));
+        // The comments and the footer links last.
+        assertTrue(blocks.get(70).hasLabel(DefaultLabels.STRICTLY_NOT_CONTENT));
+        assertEquals(1.0, blocks.get(99).getLinkDensity(), 1e-6);
+        // The blocks are in a document, which the filters that look at the DOM need.
+        assertNotNull(blocks.get(50).getFirstNonWhitespaceTextNode().getParentNode());
+    }
+
+    public void testSyntheticDocumentHasArticle() {
+        TextDocument doc = FilterBenchmark.createSyntheticDocument(100, 0);
+        ArticleExtractor.INSTANCE.process(doc, Collections.<String>emptyList());
+        int numContent = 0;
+        for (TextBlock tb : doc.getTextBlocks()) {
+            if (tb.isContent()) numContent++;
+        }
+        assertTrue(numContent > 0);
+    }
+
+    public void testRun() {
+        List<FilterBenchmark.Result> results = FilterBenchmark.run(50, 2);
+        assertEquals(5, results.size());
+        for (FilterBenchmark.Result result : results) {
+            assertEquals(50, result.numBlocks);
+            assertEquals(2, result.iterations);
+            assertTrue(result.totalTime >= 0);
+        }
+    }
+
+    public void testRunOnHtml() {
+        String html =
+                "<h1>Title</h1>" +
+                "<p>Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod.</p>" +
+                "<p>Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod.</p>";
+        List<FilterBenchmark.Result> results = FilterBenchmark.runOnHtml(html, 1);
+        assertEquals(5, results.size());
+        assertEquals(3, results.get(0).numBlocks);
+    }
+}
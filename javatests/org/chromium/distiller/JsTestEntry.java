@@ -50,6 +50,21 @@ public class JsTestEntry implements EntryPoint {
         return createTestSuiteResults(results, logger);
     }
 
+    /**
+     * Runs FilterBenchmark on synthetic documents of a few sizes.
+     * @return One line per benchmark and size.
+     */
+    @JsExport
+    public static String runBenchmarks(int iterations) {
+        StringBuilder output = new StringBuilder();
+        for (int numBlocks : new int[] {100, 1000}) {
+            for (FilterBenchmark.Result result : FilterBenchmark.run(numBlocks, iterations)) {
+                output.append(result).append("\n");
+            }
+        }
+        return output.toString();
+    }
+
     @JsExport
     public static void printTestNames() {
         JsTestSuiteBuilder builder = GWT.<JsTestSuiteBuilder>create(JsTestSuiteBuilder.class);
@@ -0,0 +1,55 @@
+// Copyright 2016 The Chromium Authors
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.distiller;
+
+import org.chromium.distiller.document.TextBlock;
+import org.chromium.distiller.labels.DefaultLabels;
+import org.chromium.distiller.labels.LabelRegistry;
+
+import java.util.Set;
+
+public class LabelRegistryTest extends DomDistillerJsTestCase {
+    public void testMasks() {
+        int title = LabelRegistry.getMask(DefaultLabels.TITLE);
+        assertEquals(DefaultLabels.TITLE_MASK, title);
+        assertEquals(title, LabelRegistry.getMask(DefaultLabels.TITLE));
+        assertEquals(title, LabelRegistry.findMask(DefaultLabels.TITLE));
+        assertEquals(0, LabelRegistry.findMask("LabelRegistryTest/UNREGISTERED"));
+
+        int heading = LabelRegistry.getMask(DefaultLabels.HEADING);
+        assertEquals(0, title & heading);
+        assertEquals(title | heading,
+                LabelRegistry.getMask(DefaultLabels.TITLE, DefaultLabels.HEADING));
+
+        Set<String> labels = LabelRegistry.getLabels(title | heading);
+        assertEquals(2, labels.size());
+        assertTrue(labels.contains(DefaultLabels.TITLE));
+        assertTrue(labels.contains(DefaultLabels.HEADING));
+        assertTrue(LabelRegistry.getLabels(0).isEmpty());
+    }
+
+    public void testTextBlockLabels() {
+        TestTextBlockBuilder builder = new TestTextBlockBuilder();
+        TextBlock block = builder.createForText("a");
+        block.addLabel(DefaultLabels.LI);
+        TextBlock next = builder.createForText("b");
+        next.addLabels(DefaultLabels.HEADING);
+        assertTrue(block.hasLabel(DefaultLabels.LI));
+        assertFalse(block.hasLabel(DefaultLabels.HEADING));
+        assertFalse(block.hasLabel("LabelRegistryTest/UNREGISTERED"));
+
+        block.mergeNext(next);
+        assertTrue(block.hasAnyLabel(DefaultLabels.HEADING_MASK));
+        assertEquals(DefaultLabels.LI_MASK | DefaultLabels.HEADING_MASK, block.getLabelMask());
+
+        assertTrue(block.removeLabel(DefaultLabels.LI));
+        assertFalse(block.removeLabel(DefaultLabels.LI));
+        block.addLabel(DefaultLabels.TITLE);
+        Set<String> labels = block.getLabels();
+        assertEquals(2, labels.size());
+        assertTrue(labels.contains(DefaultLabels.TITLE));
+        assertTrue(labels.contains(DefaultLabels.HEADING));
+    }
+}
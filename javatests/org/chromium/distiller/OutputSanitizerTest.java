@@ -0,0 +1,122 @@
+// Copyright 2016 The Chromium Authors
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.distiller;
+
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.Element;
+
+public class OutputSanitizerTest extends DomDistillerJsTestCase {
+    private static final String HTML =
+            "<div id=\"a\" style=\"color: red\" class=\"x caption\" onclick=\"f()\">" +
+                "<a href=\"page\" target=\"_blank\" id=\"b\">link</a>" +
+                "<font color=\"red\" class=\"y\">font</font>" +
+                "<table bgcolor=\"red\"><tbody><tr bgcolor=\"red\">" +
+                    "<td bgcolor=\"red\" data-x=\"1\">cell</td>" +
+                "</tr></tbody></table>" +
+                "<img src=\"a.png\" srcset=\"a.png 1x, b.png 2x\" class=\"z\" alt=\"a\" " +
+                    "longdesc=\"d\">" +
+                "<video poster=\"p.png\" src=\"v.mp4\" id=\"c\">" +
+                    "<source src=\"v.webm\"><track src=\"t.vtt\">" +
+                "</video>" +
+                "<p srcset=\"\">empty srcset</p>" +
+            "</div>";
+
+    private Element createTree() {
+        Element div = Document.get().createDivElement();
+        div.setInnerHTML(HTML);
+        return Element.as(div.getFirstChild());
+    }
+
+    public void testMatchesCloneAndProcessList() {
+        mHead.setInnerHTML("<base href=\"http://example.com/\">");
+        Element expected = createTree();
+        DomUtil.stripIds(expected);
+        DomUtil.makeAllLinksAbsolute(expected);
+        DomUtil.stripTargetAttributes(expected);
+        DomUtil.stripFontColorAttributes(expected);
+        DomUtil.stripTableBackgroundColorAttributes(expected);
+        DomUtil.stripStyleAttributes(expected);
+        DomUtil.stripImageElements(expected);
+        DomUtil.stripAllUnsafeAttributes(expected);
+
+        Element actual = createTree();
+        new OutputSanitizer.Builder()
+                .resolveUrls()
+                .stripIds()
+                .stripStyles()
+                .stripTargets()
+                .stripFontColors()
+                .stripTableBackgroundColors()
+                .restrictImageAttributes()
+                .build()
+                .sanitize(actual);
+        String html = actual.getString();
+        assertEquals(expected.getString(), html);
+        assertTrue(html, html.contains("href=\"http://example.com/page\""));
+        assertTrue(html, html.contains("poster=\"http://example.com/p.png\""));
+        assertTrue(html, html.contains("src=\"http://example.com/t.vtt\""));
+        assertTrue(html, html.contains("http://example.com/b.png 2x"));
+        assertTrue(html, html.contains("class=\"x caption\""));
+        assertFalse(html, html.contains("bgcolor="));
+        assertFalse(html, html.contains("longdesc="));
+        assertFalse(html, html.contains("onclick="));
+    }
+
+    public void testMatchesWebTextSanitization() {
+        mHead.setInnerHTML("<base href=\"http://example.com/\">");
+        Element expected = createTree();
+        DomUtil.makeAllLinksAbsolute(expected);
+        DomUtil.stripTargetAttributes(expected);
+        DomUtil.stripIds(expected);
+        DomUtil.stripUnwantedClassNames(expected);
+        DomUtil.stripFontColorAttributes(expected);
+        DomUtil.stripStyleAttributes(expected);
+        DomUtil.stripAllUnsafeAttributes(expected);
+
+        Element actual = createTree();
+        new OutputSanitizer.Builder()
+                .resolveUrls()
+                .stripIds()
+                .stripStyles()
+                .stripTargets()
+                .stripFontColors()
+                .stripUnwantedClassNames()
+                .build()
+                .sanitize(actual);
+        String html = actual.getString();
+        assertEquals(expected.getString(), html);
+        assertTrue(html, html.contains("class=\"caption\""));
+        assertTrue(html, html.contains("bgcolor="));
+        assertTrue(html, html.contains("longdesc="));
+    }
+
+    public void testOnlyUnsafeAttributesByDefault() {
+        Element actual = createTree();
+        new OutputSanitizer.Builder().build().sanitize(actual);
+        String html = actual.getString();
+        assertTrue(html, html.contains("id=\"a\""));
+        assertTrue(html, html.contains("style="));
+        assertTrue(html, html.contains("target="));
+        assertTrue(html, html.contains("href=\"page\""));
+        assertTrue(html, html.contains("srcset=\"\""));
+        assertFalse(html, html.contains("onclick="));
+        assertFalse(html, html.contains("data-x="));
+    }
+
+    public void testResolvesUrlsAgainstOwnerDocument() {
+        mHead.setInnerHTML("<base href=\"http://example.com/\">");
+        Document other = DomUtil.createHTMLDocument(Document.get());
+        other.getHead().setInnerHTML("<base href=\"http://other.com/\">");
+        Element div = other.createDivElement();
+        other.getBody().appendChild(div);
+        div.setInnerHTML("<img src=\"a.png\" srcset=\"a.png 1x, b.png 2x\">");
+
+        new OutputSanitizer.Builder().resolveUrls().build().sanitize(div);
+        String html = div.getInnerHTML();
+        assertTrue(html, html.contains("src=\"http://other.com/a.png\""));
+        assertTrue(html, html.contains("http://other.com/a.png 1x, http://other.com/b.png 2x"));
+        assertFalse(html, html.contains("example.com"));
+    }
+}
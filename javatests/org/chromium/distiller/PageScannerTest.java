@@ -0,0 +1,94 @@
+// Copyright 2016 The Chromium Authors
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.distiller;
+
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.Node;
+
+import java.util.List;
+
+public class PageScannerTest extends DomDistillerJsTestCase {
+    private StringUtil.WordCounter mWordCounter;
+
+    @Override
+    protected void gwtSetUp() throws Exception {
+        super.gwtSetUp();
+        mWordCounter = StringUtil.sWordCounter;
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        StringUtil.sWordCounter = mWordCounter;
+        super.tearDown();
+    }
+
+    private PageScanner scan() {
+        PageScanner scanner = new PageScanner(mRoot);
+        scanner.resetWordCounter();
+        new DomWalker(scanner).walk(mRoot);
+        return scanner;
+    }
+
+    private static void assertSameElements(String selector, List<Element> actual, Element root) {
+        List<Node> expected = TestUtil.nodeListToList(DomUtil.querySelectorAll(root, selector));
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), actual.get(i));
+        }
+    }
+
+    public void testCollectsSameElementsAsQueries() {
+        mRoot.setAttribute("itemscope", "");
+        mHead.setInnerHTML(
+                "<base href=\"http://example.com/a/\">" +
+                "<base href=\"http://example.com/b/\">" +
+                "<meta property=\"og:title\" content=\"title\">" +
+                "<meta name=\"description\" content=\"description\">" +
+                "<link rel=\"author\" href=\"/author\">" +
+                "<link rel=\"stylesheet\" href=\"/style.css\">");
+        mBody.setInnerHTML(
+                "<div itemscope itemtype=\"http://schema.org/Article\">" +
+                    "<h1 itemprop=\"headline\">headline</h1>" +
+                    "<a rel=\"AUTHOR\" href=\"/author\">author</a>" +
+                    "<a href=\"/page/2\">2</a>" +
+                "</div>" +
+                "<meta property=\"og:type\" content=\"article\">" +
+                "<a href=\"/page/3\">3</a>");
+
+        PageScanner scanner = scan();
+        assertSameElements("meta[property]", scanner.getMetaElements(), mRoot);
+        assertSameElements("[ITEMPROP],[ITEMSCOPE]", scanner.getItemElements(), mRoot);
+        assertSameElements("A[rel=author],LINK[rel=author]", scanner.getAuthorLinks(), mRoot);
+        assertSameElements("A", scanner.getAnchors(), mRoot);
+        assertEquals(mHead, scanner.getSingleHeadElement());
+        assertEquals(mRoot.getElementsByTagName("BASE").getItem(0),
+                scanner.getFirstBaseElement());
+    }
+
+    public void testNoBaseElement() {
+        mBody.setInnerHTML("<a href=\"/page/2\">2</a>");
+        assertNull(scan().getFirstBaseElement());
+    }
+
+    public void testSelectsWordCounter() {
+        mBody.setInnerHTML("<p>abc</p><p>def</p>");
+        scan();
+        assertTrue(StringUtil.sWordCounter instanceof StringUtil.FastWordCounter);
+
+        mBody.setInnerHTML("<p>abc</p><p>어</p><p>def</p>");
+        scan();
+        assertTrue(StringUtil.sWordCounter instanceof StringUtil.LetterWordCounter);
+
+        mBody.setInnerHTML("<p>abc</p><p>字</p><p>어</p>");
+        scan();
+        assertTrue(StringUtil.sWordCounter instanceof StringUtil.FullWordCounter);
+
+        // Text outside of the content, e.g. in the title, is also considered.
+        mHead.appendChild(TestUtil.createTitle("字"));
+        mBody.setInnerHTML("<p>abc</p>");
+        scan();
+        assertTrue(StringUtil.sWordCounter instanceof StringUtil.FullWordCounter);
+    }
+}
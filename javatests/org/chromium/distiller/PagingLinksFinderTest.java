@@ -64,6 +64,13 @@ public class PagingLinksFinderTest extends DomDistillerJsTestCase {
             String href = PagingLinksFinder.resolveLinkHref(prev, baseAnchor);
             assertEquals(href, PagingLinksFinder.findPrevious(root, original_url));
         }
+
+        // Both directions find the same links from a shared index.
+        AnchorIndex index = AnchorIndex.create(root, original_url, null);
+        assertEquals(PagingLinksFinder.findNext(root, original_url),
+                PagingLinksFinder.findNext(index, original_url));
+        assertEquals(PagingLinksFinder.findPrevious(root, original_url),
+                PagingLinksFinder.findPrevious(index, original_url));
     }
 
     public void testNoLink() {
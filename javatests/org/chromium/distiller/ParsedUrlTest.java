@@ -66,6 +66,15 @@ public class ParsedUrlTest extends JsTestCase {
         assertEquals(VALID_URL, url.toString());
     }
 
+    public void testGetHrefWithoutHash() {
+        ParsedUrl url = ParsedUrl.create(VALID_URL + "#jumpToFoo");
+        assertEquals(VALID_URL, url.getHrefWithoutHash());
+        // The URL itself doesn't change.
+        assertEquals("#jumpToFoo", url.getHash());
+        assertEquals(VALID_URL, ParsedUrl.create(VALID_URL + "#").getHrefWithoutHash());
+        assertEquals(VALID_URL, ParsedUrl.create(VALID_URL).getHrefWithoutHash());
+    }
+
     public void testReplaceQueryValue() {
         ParsedUrl url = ParsedUrl.create(VALID_URL);
         assertTrue(url != null);
@@ -0,0 +1,119 @@
+// Copyright 2016 The Chromium Authors
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.distiller;
+
+import org.chromium.distiller.proto.DomDistillerProtos.InstrumentationInfo;
+import org.chromium.distiller.proto.DomDistillerProtos.StageInfo;
+
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.Node;
+
+public class StageInstrumentationTest extends DomDistillerJsTestCase {
+    private static final String CONTENT_TEXT = "Lorem Ipsum Lorem Ipsum Lorem Ipsum.";
+
+    private static StageInfo getStage(InstrumentationInfo info, String name) {
+        for (int i = 0; i < info.getStagesCount(); i++) {
+            if (info.getStages(i).getName().equals(name)) return info.getStages(i);
+        }
+        return null;
+    }
+
+    public void testNestedStages() {
+        StageInstrumentation.begin();
+        StageInstrumentation.start("outer");
+        StageInstrumentation.addClonesProduced(1);
+        StageInstrumentation.start("inner");
+        StageInstrumentation.addClonesProduced(2);
+        StageInstrumentation.addBlocksMerged(3);
+        StageInstrumentation.stop();
+        StageInstrumentation.start("inner");
+        StageInstrumentation.addNodesVisited(4);
+        StageInstrumentation.stop();
+        StageInstrumentation.stop();
+        // Outside of any stage.
+        StageInstrumentation.addNodesVisited(5);
+        InstrumentationInfo info = InstrumentationInfo.create();
+        StageInstrumentation.end(info);
+        assertFalse(StageInstrumentation.isActive());
+
+        assertEquals(2, info.getStagesCount());
+        StageInfo outer = info.getStages(0);
+        assertEquals("outer", outer.getName());
+        assertEquals(1, outer.getRuns());
+        assertEquals(1, outer.getClonesProduced());
+        assertEquals(0, outer.getBlocksMerged());
+        assertEquals(0, outer.getNodesVisited());
+
+        StageInfo inner = info.getStages(1);
+        assertEquals("inner", inner.getName());
+        assertEquals(2, inner.getRuns());
+        assertEquals(2, inner.getClonesProduced());
+        assertEquals(3, inner.getBlocksMerged());
+        assertEquals(4, inner.getNodesVisited());
+        assertTrue(outer.getTime() >= inner.getTime());
+    }
+
+    public void testNotRecordingOutsideOfBeginAndEnd() {
+        assertFalse(StageInstrumentation.isActive());
+        StageInstrumentation.start("stage");
+        StageInstrumentation.addNodesVisited(1);
+        StageInstrumentation.stop();
+
+        StageInstrumentation.begin();
+        InstrumentationInfo info = InstrumentationInfo.create();
+        StageInstrumentation.end(info);
+        assertEquals(0, info.getStagesCount());
+    }
+
+    public void testDomWalkerCountsVisitedNodes() {
+        Element div = TestUtil.createDiv(0);
+        div.appendChild(TestUtil.createDiv(1));
+        div.appendChild(TestUtil.createText("a"));
+
+        StageInstrumentation.begin();
+        StageInstrumentation.start("walk");
+        new DomWalker(new DomWalker.Visitor() {
+            @Override
+            public boolean visit(Node n) {
+                return true;
+            }
+
+            @Override
+            public void exit(Node n) {}
+
+            @Override
+            public void skip(Element e) {}
+        }).walk(div);
+        StageInstrumentation.stop();
+        InstrumentationInfo info = InstrumentationInfo.create();
+        StageInstrumentation.end(info);
+        assertEquals(3, getStage(info, "walk").getNodesVisited());
+    }
+
+    public void testContentExtractorStages() {
+        for (int i = 0; i < 3; i++) {
+            Element div = TestUtil.createDiv(i);
+            div.appendChild(TestUtil.createText(CONTENT_TEXT));
+            mBody.appendChild(div);
+        }
+
+        ContentExtractor extractor = new ContentExtractor(mRoot);
+        extractor.extractContent();
+        InstrumentationInfo info = extractor.getInstrumentationInfo();
+        assertFalse(StageInstrumentation.isActive());
+
+        assertTrue(getStage(info, "DomWalker: DomConverter").getNodesVisited() > 0);
+        assertNotNull(getStage(info, "WebDocument.createTextDocumentView"));
+        for (String name : new String[] {"NumWordsRulesClassifier", "KeepLargestBlockFilter",
+                "RelevantElements", "LeadImageFinder", "NestedElementRetainer"}) {
+            StageInfo stage = getStage(info, name);
+            assertNotNull(name, stage);
+            assertEquals(name, 1, stage.getRuns());
+        }
+        StageInfo output = getStage(info, "WebText.generateOutput");
+        assertTrue(output.getRuns() > 0);
+        assertTrue(output.getClonesProduced() >= output.getRuns());
+    }
+}
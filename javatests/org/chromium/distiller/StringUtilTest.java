@@ -10,6 +10,7 @@ import org.chromium.distiller.StringUtil.WordCounter;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 public class StringUtilTest extends JsTestCase {
     public void testFastWordCounter() {
@@ -86,6 +87,55 @@ public class StringUtilTest extends JsTestCase {
         assertEquals(2, counter.count("word 字"));
     }
 
+    // The regexes the word counters used to match, to check that they count the same.
+    private static native int countWithRegExp(
+            String s, boolean includeHangul, boolean countCjk) /*-{
+        var m = includeHangul ? s.match(/(\S*[\w\u00C0-\u1FFF\uAC00-\uD7AF]\S*)/g)
+                              : s.match(/(\S*[\w\u00C0-\u1FFF]\S*)/g);
+        var c = (m ? m.length : 0);
+        if (countCjk) {
+            m = s.match(/([\u3040-\uA4CF])/g);
+            c += Math.ceil((m ? m.length : 0) * 0.55);
+        }
+        return c;
+    }-*/;
+
+    private static void assertSameAsRegExp(String s) {
+        assertEquals(s, countWithRegExp(s, false, false),
+                new StringUtil.FastWordCounter().count(s));
+        assertEquals(s, countWithRegExp(s, true, false),
+                new StringUtil.LetterWordCounter().count(s));
+        assertEquals(s, countWithRegExp(s, true, true),
+                new StringUtil.FullWordCounter().count(s));
+    }
+
+    public void testWordCountersMatchRegExps() {
+        String[] strings = {
+            "", " ", "a", " a ", "a b", "-a-", "- -", "a\u00a0b", "\u1680", "a\u1680b",
+            " \u1680 ", "-\u1680-", "a\u1680\u1680b", "\u1680a \u1680", "\u2000a\u200a",
+            "\ufeffa\u3000b", "어 a 字", "字字 字", "a字b", "\uD83D\uDE00 a", "\u00bf\u00c0",
+            "\u1fff\u2000\u3040\ua4cf\ua4d0\uac00\ud7af\ud7b0",
+        };
+        for (String s : strings) {
+            assertSameAsRegExp(s);
+        }
+
+        // Random strings from characters at the edges of the ranges the counters look at.
+        String alphabet =
+                " \t\n\u000b\u00a0\u1680\u180e\u2000\u200a\u200b\u2028\u202f\u3000" +
+                "\ufeff-_'09azAZ\u00bf\u00c0\u1fff\u2000\u303f\u3040\ua4cf\ua4d0\uabff" +
+                "\uac00\ud7af\ud7b0\ud83d\ude00";
+        Random random = new Random(0);
+        for (int i = 0; i < 500; i++) {
+            StringBuilder s = new StringBuilder();
+            int length = random.nextInt(12);
+            for (int j = 0; j < length; j++) {
+                s.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            assertSameAsRegExp(s.toString());
+        }
+    }
+
     public void testSelectWordCounter() {
         StringUtil.WordCounter counter;
 
@@ -34,6 +34,16 @@ public class TableClassifierTest extends DomDistillerJsTestCase {
         assertEquals(TableClassifier.Reason.INSIDE_EDITABLE_AREA, TableClassifier.sReason);
     }
 
+    public void testInsideEditableAreaFromCaller() {
+        TableElement table = createDefaultTableWithTH();
+        assertEquals(TableClassifier.Type.LAYOUT, TableClassifier.table(table, true));
+        assertEquals(TableClassifier.Reason.INSIDE_EDITABLE_AREA, TableClassifier.sReason);
+        assertEquals(TableClassifier.Type.DATA, TableClassifier.table(table, false));
+        assertEquals(TableClassifier.Reason.CAPTION_THEAD_TFOOT_COLGROUP_COL_TH,
+                     TableClassifier.sReason);
+        assertFalse(TableClassifier.isInsideEditableArea(table));
+    }
+
     public void testRolePresentation() {
         TableElement table = createDefaultTableWithTH();
         table.setAttribute("role", "presentation");
@@ -295,6 +305,11 @@ public class TableClassifierTest extends DomDistillerJsTestCase {
         tr.appendChild(td);
         assertEquals(TableClassifier.Type.DATA, TableClassifier.table(table));
         assertEquals(TableClassifier.Reason.ONLY_HAS_ABBR, TableClassifier.sReason);
+
+        // The <abbr> element has to be the only descendant element of the cell.
+        abbr.appendChild(Document.get().createElement("B"));
+        assertEquals(TableClassifier.Type.LAYOUT, TableClassifier.table(table));
+        assertEquals(TableClassifier.Reason.LESS_EQ_10_CELLS, TableClassifier.sReason);
     }
 
     public void testWideTable() {
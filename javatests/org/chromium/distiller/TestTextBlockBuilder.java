@@ -5,6 +5,7 @@
 package org.chromium.distiller;
 
 import org.chromium.distiller.document.TextBlock;
+import org.chromium.distiller.document.TextBlockStore;
 import org.chromium.distiller.webdocument.TestWebTextBuilder;
 import org.chromium.distiller.webdocument.WebElement;
 import org.chromium.distiller.webdocument.WebText;
@@ -14,16 +15,17 @@ import java.util.ArrayList;
 class TestTextBlockBuilder {
     private ArrayList<WebElement> elements = new ArrayList<WebElement>();
     private TestWebTextBuilder webTextBuilder = new TestWebTextBuilder();
+    private TextBlockStore store = new TextBlockStore(elements, 0);
 
     public TextBlock createForText(String text) {
         WebText wt = webTextBuilder.createForText(text);
         elements.add(wt);
-        return new TextBlock(elements, elements.size() - 1);
+        return store.addBlock(elements.size() - 1);
     }
 
     public TextBlock createForAnchorText(String text) {
         WebText wt = webTextBuilder.createForAnchorText(text);
         elements.add(wt);
-        return new TextBlock(elements, elements.size() - 1);
+        return store.addBlock(elements.size() - 1);
     }
 }
@@ -5,6 +5,7 @@
 package org.chromium.distiller;
 
 import org.chromium.distiller.document.TextBlock;
+import org.chromium.distiller.document.TextBlockStore;
 import org.chromium.distiller.document.TextDocument;
 import org.chromium.distiller.webdocument.DomConverter;
 import org.chromium.distiller.webdocument.TestWebTextBuilder;
@@ -22,10 +23,12 @@ public class TestTextDocumentBuilder {
     private ArrayList<TextBlock> textBlocks;
     private ArrayList<WebElement> elements;
     private TestWebTextBuilder webTextBuilder;
+    private TextBlockStore store;
     public TestTextDocumentBuilder() {
         textBlocks = new ArrayList<>();
         elements = new ArrayList<>();
         webTextBuilder = new TestWebTextBuilder();
+        store = new TextBlockStore(elements, 0);
     }
 
     private TextBlock addBlock(String text, String... labels) {
@@ -34,7 +37,7 @@ public class TestTextDocumentBuilder {
             wt.addLabel(label);
         }
         elements.add(wt);
-        textBlocks.add(new TextBlock(elements, elements.size() - 1));
+        textBlocks.add(store.addBlock(elements.size() - 1));
         return textBlocks.get(textBlocks.size() - 1);
     }
 
@@ -4,6 +4,10 @@
 
 package org.chromium.distiller;
 
+import org.chromium.distiller.webdocument.WebDocumentCache;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.core.client.JsArray;
 import com.google.gwt.dom.client.AnchorElement;
 import com.google.gwt.dom.client.Document;
 import com.google.gwt.dom.client.Element;
@@ -180,4 +184,24 @@ public class TestUtil {
             Collections.swap(list, i-1, Random.nextInt(i));
         }
     }
+
+    /**
+     * Starts observing the changes to the subtree of |root|, as DomDistiller.applyIncrementally()
+     * expects them.
+     * @return The MutationObserver, for takeMutations().
+     */
+    public static native JavaScriptObject observeMutations(Node root) /*-{
+        var observer = new MutationObserver(function() {});
+        observer.observe(root,
+                {childList: true, attributes: true, characterData: true, subtree: true});
+        return observer;
+    }-*/;
+
+    /**
+     * @return The records |observer| collected since the last call, synchronously.
+     */
+    public static native JsArray<WebDocumentCache.MutationRecord> takeMutations(
+            JavaScriptObject observer) /*-{
+        return observer.takeRecords();
+    }-*/;
 }
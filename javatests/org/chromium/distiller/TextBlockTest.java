@@ -0,0 +1,31 @@
+// Copyright 2016 The Chromium Authors
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.distiller;
+
+import org.chromium.distiller.document.TextBlock;
+
+public class TextBlockTest extends DomDistillerJsTestCase {
+    public void testMergedText() {
+        TestTextBlockBuilder builder = new TestTextBlockBuilder();
+        TextBlock block = builder.createForText("one two");
+        assertEquals("one two", block.getText());
+        assertEquals(7, block.getTextLength());
+
+        block.mergeNext(builder.createForText("three"));
+        TextBlock other = builder.createForText("four");
+        other.mergeNext(builder.createForText("five six"));
+        block.mergeNext(other);
+
+        String expected = "one two\nthree\nfour\nfive six";
+        assertEquals(expected.length(), block.getTextLength());
+        assertEquals(expected, block.getText());
+        assertEquals(6, block.getNumWords());
+
+        // The text is joined again after another merge.
+        block.mergeNext(builder.createForText("seven"));
+        assertEquals(expected + "\nseven", block.getText());
+        assertEquals(expected.length() + 6, block.getTextLength());
+    }
+}
@@ -0,0 +1,87 @@
+// Copyright 2016 The Chromium Authors
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.distiller.document;
+
+import org.chromium.distiller.DomDistillerJsTestCase;
+import org.chromium.distiller.labels.DefaultLabels;
+import org.chromium.distiller.webdocument.TestWebTextBuilder;
+import org.chromium.distiller.webdocument.WebElement;
+import org.chromium.distiller.webdocument.WebText;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TextBlockStoreTest extends DomDistillerJsTestCase {
+    private TestWebTextBuilder builder;
+    private List<WebElement> elements;
+
+    @Override
+    protected void gwtSetUp() throws Exception {
+        super.gwtSetUp();
+        builder = new TestWebTextBuilder();
+        elements = new ArrayList<>();
+    }
+
+    private WebText addText(String text, int group) {
+        WebText wt = builder.createForText(text);
+        wt.setGroupNumber(group);
+        elements.add(wt);
+        return wt;
+    }
+
+    public void testAddTextMergesSameGroup() {
+        addText("one two", 0);
+        addText("three", 0).addLabel(DefaultLabels.LI);
+        addText("four", 1);
+        TextBlockStore store = new TextBlockStore(elements, elements.size());
+
+        TextBlock first = store.addText(0);
+        assertNotNull(first);
+        assertNull(store.addText(1));
+        TextBlock second = store.addText(2);
+        assertNotNull(second);
+        assertEquals(2, store.size());
+
+        assertEquals("one two\nthree", first.getText());
+        assertEquals(3, first.getNumWords());
+        assertTrue(first.hasLabel(DefaultLabels.LI));
+        assertEquals(0, ((WebText) elements.get(1)).getLabelMask());
+        assertEquals("four", second.getText());
+        assertEquals(1, second.getNumWords());
+    }
+
+    public void testMergeMovesTextsOfEarlierBlock() {
+        for (int i = 0; i < 4; i++) addText("w" + i, i);
+        TextBlockStore store = new TextBlockStore(elements, elements.size());
+        TextBlock[] blocks = new TextBlock[4];
+        for (int i = 0; i < 4; i++) blocks[i] = store.addText(i);
+
+        // The texts of blocks[0] aren't at the end of the pool when it grows.
+        blocks[2].mergeNext(blocks[3]);
+        blocks[0].mergeNext(blocks[1]);
+        blocks[0].mergeNext(blocks[2]);
+
+        assertEquals("w0\nw1\nw2\nw3", blocks[0].getText());
+        assertEquals(4, blocks[0].getNumWords());
+        assertEquals("w2\nw3", blocks[2].getText());
+    }
+
+    public void testGrowsPastCapacity() {
+        int n = 20;
+        for (int i = 0; i < n; i++) addText("w" + i, i / 2);
+        TextBlockStore store = new TextBlockStore(elements, 1);
+        List<TextBlock> blocks = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            TextBlock block = store.addText(i);
+            if (block != null) blocks.add(block);
+        }
+
+        assertEquals(n / 2, blocks.size());
+        for (int i = 0; i < blocks.size(); i++) {
+            assertEquals("w" + (2 * i) + "\nw" + (2 * i + 1), blocks.get(i).getText());
+            assertEquals(2, blocks.get(i).getNumWords());
+        }
+    }
+}
@@ -10,6 +10,7 @@ import org.chromium.distiller.DomWalker;
 import com.google.gwt.dom.client.Document;
 import com.google.gwt.dom.client.Element;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class DomConverterTest extends DomDistillerJsTestCase {
@@ -159,6 +160,61 @@ public class DomConverterTest extends DomDistillerJsTestCase {
         runTest(html, html);
     }
 
+    public void testDataTableInEditableArea() throws Throwable {
+        String table = "<table role=\"grid\">" +
+                           "<tbody>" +
+                               "<tr>" +
+                                   "<td>row1col1</td>" +
+                                   "<td>row1col2</td>" +
+                               "</tr>" +
+                           "</tbody>" +
+                       "</table>";
+        Element editable = Document.get().createDivElement();
+        mBody.appendChild(editable);
+        editable.setInnerHTML("<div contenteditable=\"true\"><div>" + table + "</div></div>" +
+                "<div>" + table + "</div>");
+
+        FakeWebDocumentBuilder builder = new FakeWebDocumentBuilder();
+        new DomWalker(new DomConverter(builder)).walk(editable);
+        String document = builder.getDocumentString().toLowerCase();
+        // Only the table outside of the editable area is a data table.
+        assertTrue(document, document.endsWith("<div><datatable/></div></div>"));
+        assertEquals(document.indexOf("<datatable/>"), document.lastIndexOf("<datatable/>"));
+
+        // The ancestors of the root of the walk are taken into account too.
+        editable.setAttribute("contenteditable", "true");
+        builder = new FakeWebDocumentBuilder();
+        new DomWalker(new DomConverter(builder)).walk(editable.getLastChild());
+        assertFalse(builder.getDocumentString().contains("<datatable/>"));
+    }
+
+    public void testHiddenElementConsumer() throws Throwable {
+        Element container = Document.get().createDivElement();
+        mBody.appendChild(container);
+        container.setInnerHTML(
+                "<div id=\"a\" style=\"display:none\"><div id=\"b\"></div></div>" +
+                "<div>visible" +
+                    "<span id=\"c\" style=\"visibility:hidden\">hidden</span>" +
+                "</div>");
+
+        final List<Element> hidden = new ArrayList<>();
+        FakeWebDocumentBuilder builder = new FakeWebDocumentBuilder();
+        DomConverter converter = new DomConverter(builder);
+        converter.setHiddenElementConsumer(new DomConverter.HiddenElementConsumer() {
+            @Override
+            public void onHiddenElement(Element e) {
+                hidden.add(e);
+            }
+        });
+        new DomWalker(converter).walk(container);
+
+        // The descendants of hidden elements aren't passed.
+        assertEquals(2, hidden.size());
+        assertEquals("a", hidden.get(0).getId());
+        assertEquals("c", hidden.get(1).getId());
+        assertEquals("<div><div>visible</div></div>", builder.getDocumentString().toLowerCase());
+    }
+
     public void testIgnorableElements() throws Throwable {
         runTest("<head></head>", "");
         runTest("<style></style>", "");
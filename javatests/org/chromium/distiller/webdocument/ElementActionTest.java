@@ -52,8 +52,8 @@ public class ElementActionTest extends DomDistillerJsTestCase {
     }
 
     private boolean hasLabel(ElementAction a, String label) {
-        for (int i = 0; i < a.labels.length(); i++) {
-            if (a.labels.get(i).equals(label)) {
+        for (int i = 0; i < a.getLabelCount(); i++) {
+            if (a.getLabel(i).equals(label)) {
                   return true;
             }
         }
@@ -61,12 +61,12 @@ public class ElementActionTest extends DomDistillerJsTestCase {
     }
 
     public void testLabels() {
-        assertEquals(0, getForHtml("<span></span>").labels.length());
-        assertEquals(0, getForHtml("<div></div>").labels.length());
-        assertEquals(0, getForHtml("<p></p>").labels.length());
+        assertEquals(0, getForHtml("<span></span>").getLabelCount());
+        assertEquals(0, getForHtml("<div></div>").getLabelCount());
+        assertEquals(0, getForHtml("<p></p>").getLabelCount());
 
-        assertEquals(2, getForHtml("<h1></h1>").labels.length());
-        assertEquals(2, getForHtml("<h2></h2>").labels.length());
+        assertEquals(2, getForHtml("<h1></h1>").getLabelCount());
+        assertEquals(2, getForHtml("<h2></h2>").getLabelCount());
         assertTrue(hasLabel(getForHtml("<h1></h1>"),
                     DefaultLabels.H1));
         assertTrue(hasLabel(getForHtml("<h1></h1>"),
@@ -76,12 +76,12 @@ public class ElementActionTest extends DomDistillerJsTestCase {
         assertTrue(hasLabel(getForHtml("<h6></h6>"),
                     DefaultLabels.HEADING));
 
-        assertEquals(1, getForHtml("<li></li>").labels.length());
+        assertEquals(1, getForHtml("<li></li>").getLabelCount());
 
-        assertEquals(1, getForHtml("<nav></nav>").labels.length());
+        assertEquals(1, getForHtml("<nav></nav>").getLabelCount());
         assertTrue(hasLabel(getForHtml("<nav></nav>"),
                     DefaultLabels.STRICTLY_NOT_CONTENT));
-        assertEquals(1, getForHtml("<aside></aside>").labels.length());
+        assertEquals(1, getForHtml("<aside></aside>").getLabelCount());
         assertTrue(hasLabel(getForHtml("<aside></aside>"),
                     DefaultLabels.STRICTLY_NOT_CONTENT));
     }
@@ -128,4 +128,67 @@ public class ElementActionTest extends DomDistillerJsTestCase {
                 "<div class=\"     user-comments                         a          \"></div>"),
                 DefaultLabels.STRICTLY_NOT_CONTENT));
     }
+
+    public void testCache() {
+        Element container = Document.get().createDivElement();
+        mBody.appendChild(container);
+        container.setInnerHTML(
+                "<div class=\"a\"></div>" +
+                "<div class=\"a\"></div>" +
+                "<div class=\"comments\"></div>" +
+                "<div class=\"a\" style=\"display: inline\"></div>" +
+                "<a class=\"a\"></a>" +
+                "<a class=\"a\" href=\"http://example.com\"></a>" +
+                "<span style=\"float: left; display: block\"></span>" +
+                "<span style=\"display: block\"></span>");
+        Element[] e = new Element[container.getChildCount()];
+        for (int i = 0; i < e.length; i++) {
+            e[i] = Element.as(container.getChild(i));
+        }
+
+        ElementAction.Cache cache = new ElementAction.Cache();
+        ElementAction a = cache.get(e[0]);
+        assertSame(a, cache.get(e[1]));
+        assertSame(a, cache.get(e[0]));
+        assertEquals(1, cache.size());
+        assertTrue(a.flush);
+
+        ElementAction comments = cache.get(e[2]);
+        assertNotSame(a, comments);
+        assertTrue(hasLabel(comments, DefaultLabels.STRICTLY_NOT_CONTENT));
+        assertFalse(hasLabel(a, DefaultLabels.STRICTLY_NOT_CONTENT));
+
+        assertFalse(cache.get(e[3]).flush);
+        assertFalse(cache.get(e[4]).isAnchor);
+        assertTrue(cache.get(e[5]).isAnchor);
+        assertFalse(cache.get(e[6]).flush);
+        assertTrue(cache.get(e[7]).flush);
+        assertEquals(e.length - 1, cache.size());
+
+        for (Element element : e) {
+            ElementAction expected = ElementAction.getForElement(element);
+            ElementAction actual = cache.get(element);
+            assertEquals(expected.flush, actual.flush);
+            assertEquals(expected.changesTagLevel, actual.changesTagLevel);
+            assertEquals(expected.isAnchor, actual.isAnchor);
+            assertEquals(expected.labelMask, actual.labelMask);
+        }
+    }
+
+    public void testCacheSignatureSeparatesClassAndId() {
+        Element container = Document.get().createDivElement();
+        mBody.appendChild(container);
+        // Joined with a separator, both would be "x y|z comment|". Only the second one has at
+        // most two classes, so only it is labeled as a comment.
+        container.setInnerHTML(
+                "<div class=\"x y|z comment\"></div>" +
+                "<div class=\"x y\" id=\"z comment|\"></div>");
+        Element first = container.getFirstChildElement();
+        Element second = first.getNextSiblingElement();
+
+        ElementAction.Cache cache = new ElementAction.Cache();
+        assertFalse(hasLabel(cache.get(first), DefaultLabels.STRICTLY_NOT_CONTENT));
+        assertTrue(hasLabel(cache.get(second), DefaultLabels.STRICTLY_NOT_CONTENT));
+        assertEquals(2, cache.size());
+    }
 }
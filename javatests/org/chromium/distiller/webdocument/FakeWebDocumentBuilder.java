@@ -38,6 +38,11 @@ public class FakeWebDocumentBuilder implements WebDocumentBuilderInterface {
     @Override
     public void skipElement(Element element) {}
 
+    @Override
+    public boolean reuseElement(Element element) {
+        return false;
+    }
+
     @Override
     public void startElement(Element element) {
         elements.push(element);
@@ -0,0 +1,75 @@
+// Copyright 2016 The Chromium Authors
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.distiller.webdocument;
+
+import org.chromium.distiller.DomDistillerJsTestCase;
+import org.chromium.distiller.DomUtil;
+import org.chromium.distiller.TreeCloneBuilder;
+
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SanitizingClonerTest extends DomDistillerJsTestCase {
+    private static final String HTML =
+            "<div id=\"a\" style=\"color: red\" class=\"x caption\" onclick=\"f()\">" +
+                "<a href=\"page\" target=\"_blank\" id=\"b\">link</a>" +
+                "<font color=\"red\" class=\"y\">font</font>" +
+                "<span data-x=\"1\">span</span>" +
+            "</div>" +
+            "<p>more</p>";
+
+    private List<Node> getTextNodes() {
+        List<Node> textNodes = new ArrayList<>();
+        for (Node n : DomUtil.getOutputNodes(mBody)) {
+            if (n.getNodeType() == Node.TEXT_NODE) textNodes.add(n);
+        }
+        return textNodes;
+    }
+
+    private static String sanitizeAsBefore(Node clonedRoot) {
+        DomUtil.makeAllLinksAbsolute(clonedRoot);
+        DomUtil.stripTargetAttributes(clonedRoot);
+        DomUtil.stripIds(clonedRoot);
+        DomUtil.stripUnwantedClassNames(clonedRoot);
+        DomUtil.stripFontColorAttributes(clonedRoot);
+        DomUtil.stripStyleAttributes(clonedRoot);
+        DomUtil.stripAllUnsafeAttributes(clonedRoot);
+        return Element.as(clonedRoot).getString();
+    }
+
+    public void testMatchesSanitizingTheOutput() {
+        mHead.setInnerHTML("<base href=\"http://example.com/\">");
+        mBody.setInnerHTML(HTML);
+        List<Node> textNodes = getTextNodes();
+        String expected = sanitizeAsBefore(TreeCloneBuilder.buildTreeClone(textNodes));
+
+        SanitizingCloner cloner = new SanitizingCloner();
+        String html = Element.as(TreeCloneBuilder.buildTreeClone(textNodes, cloner)).getString();
+        assertEquals(expected, html);
+        assertTrue(html, html.contains("href=\"http://example.com/page\""));
+        assertFalse(html, html.contains("id="));
+        assertFalse(html, html.contains("target="));
+        assertFalse(html, html.contains("style="));
+        assertFalse(html, html.contains("onclick="));
+
+        // The templates are reused, and the clones made from them don't share any nodes.
+        Node first = TreeCloneBuilder.buildTreeClone(textNodes.subList(0, 2), cloner);
+        Node second = TreeCloneBuilder.buildTreeClone(textNodes.subList(0, 2), cloner);
+        assertEquals(Element.as(first).getString(), Element.as(second).getString());
+        assertNotSame(first, second);
+    }
+
+    public void testSingleTextNode() {
+        mBody.setInnerHTML(HTML);
+        List<Node> textNodes = getTextNodes();
+        Node clone = TreeCloneBuilder.buildTreeClone(textNodes.subList(0, 1),
+                new SanitizingCloner());
+        assertEquals(Node.TEXT_NODE, clone.getNodeType());
+        assertEquals("link", clone.getNodeValue());
+    }
+}
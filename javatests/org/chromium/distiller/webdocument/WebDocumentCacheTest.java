@@ -0,0 +1,188 @@
+// Copyright 2016 The Chromium Authors
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.distiller.webdocument;
+
+import org.chromium.distiller.ContentExtractor;
+import org.chromium.distiller.DomDistillerJsTestCase;
+import org.chromium.distiller.TestUtil;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.Text;
+
+public class WebDocumentCacheTest extends DomDistillerJsTestCase {
+    private static final String CONTENT_TEXT = "Lorem Ipsum Lorem Ipsum Lorem Ipsum.";
+
+    private Text mChangingText;
+
+    private void createPage() {
+        mHead.appendChild(TestUtil.createTitle("Title"));
+        mBody.setInnerHTML(
+                "<h1>Title</h1>" +
+                "<nav><ul><li><a href=\"/a\">a</a></li><li><a href=\"/b\">b</a></li></ul></nav>" +
+                "<div id=\"content\">" +
+                    "leading text" +
+                    "<p>" + CONTENT_TEXT + " <b>" + CONTENT_TEXT + "</b></p>" +
+                    "<p>" + CONTENT_TEXT + "</p>" +
+                    "<ul><li>" + CONTENT_TEXT + "</li><li>" + CONTENT_TEXT + "</li></ul>" +
+                    "<p id=\"changing\">" + CONTENT_TEXT + "</p>" +
+                "</div>" +
+                "<div>footer <a href=\"/c\">c</a></div>");
+        mChangingText = Text.as(mBody.getOwnerDocument().getElementById("changing")
+                .getFirstChild());
+    }
+
+    private String extract(WebDocumentCache cache) {
+        ContentExtractor extractor = new ContentExtractor(mRoot);
+        if (cache != null) extractor.setWebDocumentCache(cache);
+        return extractor.extractContent();
+    }
+
+    public void testReusesUnchangedPage() {
+        createPage();
+        String expected = extract(null);
+
+        WebDocumentCache cache = new WebDocumentCache();
+        assertEquals(expected, extract(cache));
+        assertEquals(0, cache.getNumReusedElements());
+        assertTrue(cache.size() > 0);
+
+        assertEquals(expected, extract(cache));
+        assertTrue(cache.getNumReusedElements() > 0);
+
+        // Reusing the previous run's elements must leave them valid for the next one.
+        assertEquals(expected, extract(cache));
+        assertTrue(cache.getNumReusedElements() > 0);
+    }
+
+    public void testInvalidatedText() {
+        createPage();
+        WebDocumentCache cache = new WebDocumentCache();
+        extract(cache);
+
+        mChangingText.setData("changed " + CONTENT_TEXT);
+        cache.invalidateNode(mChangingText);
+        String actual = extract(cache);
+        assertTrue(cache.getNumReusedElements() > 0);
+        assertEquals(extract(null), actual);
+        assertTrue(actual.contains("changed " + CONTENT_TEXT));
+    }
+
+    public void testInvalidatedSubtree() {
+        createPage();
+        WebDocumentCache cache = new WebDocumentCache();
+        extract(cache);
+
+        Element content = mBody.getOwnerDocument().getElementById("content");
+        Element p = TestUtil.createDiv(0);
+        p.appendChild(TestUtil.createText("added " + CONTENT_TEXT));
+        content.insertFirst(p);
+        cache.invalidateNode(content);
+        cache.invalidateSubtree(p);
+        String actual = extract(cache);
+        assertEquals(extract(null), actual);
+        assertTrue(actual.contains("added " + CONTENT_TEXT));
+
+        content.setAttribute("class", "comments");
+        cache.invalidateSubtree(content);
+        assertEquals(extract(null), extract(cache));
+    }
+
+    public void testClear() {
+        createPage();
+        WebDocumentCache cache = new WebDocumentCache();
+        extract(cache);
+        cache.clear();
+        assertEquals(0, cache.size());
+
+        assertEquals(extract(null), extract(cache));
+        assertEquals(0, cache.getNumReusedElements());
+    }
+
+    private Element getElementById(String id) {
+        return mBody.getOwnerDocument().getElementById(id);
+    }
+
+    /**
+     * Extracts the page with |cache| again after the changes |observer| recorded, and checks the
+     * result is the same as without the cache.
+     */
+    private String extractAfterMutations(WebDocumentCache cache, JavaScriptObject observer) {
+        cache.invalidate(TestUtil.takeMutations(observer));
+        String actual = extract(cache);
+        assertEquals(extract(null), actual);
+        return actual;
+    }
+
+    public void testInvalidateAttributeMutation() {
+        createPage();
+        WebDocumentCache cache = new WebDocumentCache();
+        String before = extract(cache);
+        JavaScriptObject observer = TestUtil.observeMutations(mRoot);
+
+        getElementById("changing").setAttribute("style", "display: none");
+        String actual = extractAfterMutations(cache, observer);
+        assertFalse(before.equals(actual));
+        assertTrue(cache.getNumReusedElements() > 0);
+    }
+
+    public void testInvalidateChildListMutations() {
+        createPage();
+        WebDocumentCache cache = new WebDocumentCache();
+        extract(cache);
+        JavaScriptObject observer = TestUtil.observeMutations(mRoot);
+
+        Element content = getElementById("content");
+        Element p = TestUtil.createDiv(0);
+        p.appendChild(TestUtil.createText("added " + CONTENT_TEXT));
+        content.insertFirst(p);
+        String actual = extractAfterMutations(cache, observer);
+        assertTrue(actual.contains("added " + CONTENT_TEXT));
+        assertTrue(cache.getNumReusedElements() > 0);
+
+        content.removeChild(p);
+        actual = extractAfterMutations(cache, observer);
+        assertFalse(actual.contains("added " + CONTENT_TEXT));
+    }
+
+    public void testInvalidateAddedStyle() {
+        createPage();
+        WebDocumentCache cache = new WebDocumentCache();
+        extract(cache);
+        JavaScriptObject observer = TestUtil.observeMutations(mRoot);
+
+        Element style = mBody.getOwnerDocument().createStyleElement();
+        style.setInnerHTML("#changing { display: none }");
+        mHead.appendChild(style);
+        cache.invalidate(TestUtil.takeMutations(observer));
+        assertEquals(0, cache.size());
+        String actual = extract(cache);
+        assertEquals(extract(null), actual);
+        assertEquals(0, cache.getNumReusedElements());
+    }
+
+    public void testInvalidateStyleInAddedSubtree() {
+        createPage();
+        WebDocumentCache cache = new WebDocumentCache();
+        String before = extract(cache);
+        JavaScriptObject observer = TestUtil.observeMutations(mRoot);
+
+        Element div = TestUtil.createDiv(0);
+        div.setInnerHTML("<style>#changing { display: none }</style>");
+        mBody.appendChild(div);
+        cache.invalidate(TestUtil.takeMutations(observer));
+        assertEquals(0, cache.size());
+        String actual = extract(cache);
+        assertEquals(extract(null), actual);
+        assertFalse(before.equals(actual));
+
+        // Removing it changes the style sheets back.
+        extract(cache);
+        mBody.removeChild(div);
+        cache.invalidate(TestUtil.takeMutations(observer));
+        assertEquals(0, cache.size());
+        assertEquals(before, extract(cache));
+    }
+}
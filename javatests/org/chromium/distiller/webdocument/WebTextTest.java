@@ -5,10 +5,13 @@
 package org.chromium.distiller.webdocument;
 
 import org.chromium.distiller.DomDistillerJsTestCase;
+import org.chromium.distiller.DomUtil;
 import org.chromium.distiller.TestUtil;
+import org.chromium.distiller.TreeCloneBuilder;
 
 import com.google.gwt.dom.client.Document;
 import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.Node;
 import com.google.gwt.dom.client.Text;
 
 public class WebTextTest extends DomDistillerJsTestCase {
@@ -94,6 +97,59 @@ public class WebTextTest extends DomDistillerJsTestCase {
         assertEquals(want, got);
     }
 
+    private static void addToBuilder(WebTextBuilder builder, Node node) {
+        for (int i = 0; i < node.getChildCount(); i++) {
+            Node child = node.getChild(i);
+            if (child.getNodeType() == Node.TEXT_NODE) {
+                builder.textNode(Text.as(child), 0);
+            } else if (child.getNodeType() == Node.ELEMENT_NODE) {
+                String tagName = Element.as(child).getTagName();
+                if (tagName.equals("BR")) {
+                    builder.lineBreak(child);
+                } else if (tagName.equals("A")) {
+                    builder.enterAnchor();
+                    addToBuilder(builder, child);
+                    builder.exitAnchor();
+                } else {
+                    addToBuilder(builder, child);
+                }
+            }
+        }
+    }
+
+    // The text of the clone the text-only output used to be read from.
+    private static String getTextOfClone(WebText text) {
+        Node clone = TreeCloneBuilder.buildTreeClone(text.getTextNodes());
+        if (clone.getNodeType() != Node.ELEMENT_NODE) {
+            Node parentClone = text.getTextNodes().get(0).getParentElement().cloneNode(false);
+            parentClone.appendChild(clone);
+            clone = parentClone;
+        }
+        return DomUtil.getTextFromTreeForTest(clone);
+    }
+
+    public void testTextOnlyOutputMatchesClone() {
+        String[][] cases = {
+            {"P", "  Some   text\n with <b>bold</b>   and <a href=\"x\">a  link</a>  "},
+            {"P", "Lines <br> split <br><br>\n by <i> breaks </i>"},
+            {"P", "<span>a</span><span> b </span><span>c</span>"},
+            {"P", "single"},
+            {"P", "nbsp&nbsp;&nbsp;kept"},
+            {"PRE", "  pre\n  <b>formatted</b>  "},
+        };
+        for (String[] c : cases) {
+            Element e = Document.get().createElement(c[0]);
+            e.setInnerHTML(c[1]);
+            mBody.appendChild(e);
+
+            WebTextBuilder builder = new WebTextBuilder();
+            addToBuilder(builder, e);
+            WebText text = builder.build(0);
+            assertEquals(c[1], getTextOfClone(text), text.generateOutput(true));
+            mBody.removeChild(e);
+        }
+    }
+
     public void testStripUnsafeAttributes() {
         Element container = Document.get().createDivElement();
         mBody.appendChild(container);
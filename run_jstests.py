@@ -34,6 +34,8 @@ def main(argv):
       action='store_true', help='Disable the console log output.')
   parser.add_argument('--shuffle', type=int, help='Set to 1 to run test cases in random order.')
   parser.add_argument('--no_sandbox', type=int, help='Set to 1 to add --no-sandbox option to Chrome.')
+  parser.add_argument('--benchmark', type=int,
+      help='Run the filter benchmarks with this many iterations instead of the tests.')
   options = parser.parse_args(argv)
 
   params = {}
@@ -65,6 +67,15 @@ def main(argv):
     chrome_options.add_argument("--no-sandbox")
 
   driver = webdriver.Chrome(chrome_options=chrome_options)
+  if options.benchmark:
+    driver.get("file://" + test_html)
+    while not driver.execute_script(image_loaded):
+      time.sleep(0.1)
+    print driver.execute_script(
+        "return org.chromium.distiller.JsTestEntry.runBenchmarks(%d)" % options.benchmark)
+    driver.quit()
+    return 0
+
   for i in range(options.repeat):
     driver.get("file://" + test_html)
     while not driver.execute_script(image_loaded):